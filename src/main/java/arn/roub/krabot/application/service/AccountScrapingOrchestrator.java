@@ -0,0 +1,121 @@
+package arn.roub.krabot.application.service;
+
+import arn.roub.krabot.domain.model.Account;
+import arn.roub.krabot.domain.model.Kramail;
+import arn.roub.krabot.domain.model.ScrapingResult;
+import arn.roub.krabot.domain.port.out.KralandScrapingPort;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Orchestrateur du scraping de tous les comptes Kraland configurés pour un tick.
+ * <p>
+ * Chaque compte est scrapé sur un thread virtuel après un décalage aléatoire (jitter) qui étale les connexions
+ * sur le début du tick ; le nombre de comptes scrapés en même temps est borné par {@code concurrency}.
+ * Les résultats sont fusionnés : un compte en échec rend le résultat partiel, l'échec de tous les comptes
+ * est propagé. Avec un seul compte, le port est appelé directement.
+ */
+public class AccountScrapingOrchestrator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AccountScrapingOrchestrator.class);
+
+    private final KralandScrapingPort kralandScrapingPort;
+    private final List<Account> accounts;
+    private final Semaphore permits;
+    private final Duration maxJitter;
+
+    public AccountScrapingOrchestrator(
+            KralandScrapingPort kralandScrapingPort,
+            List<Account> accounts,
+            int concurrency,
+            Duration maxJitter
+    ) {
+        if (accounts.isEmpty()) {
+            throw new IllegalArgumentException("At least one Kraland account is required");
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Account concurrency must be >= 1");
+        }
+        this.kralandScrapingPort = kralandScrapingPort;
+        this.accounts = List.copyOf(accounts);
+        this.permits = new Semaphore(concurrency, true);
+        this.maxJitter = maxJitter;
+    }
+
+    /**
+     * @return le compte principal (premier compte configuré)
+     */
+    public Account primaryAccount() {
+        return accounts.getFirst();
+    }
+
+    /**
+     * Scrape tous les comptes et fusionne leurs résultats.
+     */
+    public ScrapingResult scrapeAll() {
+        if (accounts.size() == 1) {
+            return kralandScrapingPort.scrape(accounts.getFirst());
+        }
+
+        List<Future<ScrapingResult>> futures = new ArrayList<>(accounts.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Account account : accounts) {
+                futures.add(executor.submit(() -> scrapeWithJitter(account)));
+            }
+        }
+
+        List<Kramail> kramails = new ArrayList<>();
+        List<String> failedAccounts = new ArrayList<>();
+        boolean hasNotification = false;
+        int failedCount = 0;
+        RuntimeException lastFailure = null;
+
+        for (int i = 0; i < accounts.size(); i++) {
+            Account account = accounts.get(i);
+            try {
+                ScrapingResult result = futures.get(i).get();
+                kramails.addAll(result.kramails());
+                failedAccounts.addAll(result.failedAccounts());
+                hasNotification |= result.hasNotification();
+            } catch (ExecutionException e) {
+                LOGGER.warn("Kraland account '{}' failed to scrape: {}", account.username(), e.getCause().getMessage());
+                failedAccounts.add(account.username());
+                failedCount++;
+                lastFailure = e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while scraping Kraland accounts", e);
+            }
+        }
+
+        if (failedCount == accounts.size()) {
+            throw lastFailure;
+        }
+
+        LOGGER.info("Scraped {} Kraland accounts: {} unread kramails, {} failures",
+                accounts.size(), kramails.size(), failedAccounts.size());
+        return new ScrapingResult(kramails, hasNotification, failedAccounts);
+    }
+
+    private ScrapingResult scrapeWithJitter(Account account) throws InterruptedException {
+        if (!maxJitter.isZero()) {
+            Thread.sleep(Duration.ofMillis(ThreadLocalRandom.current().nextLong(maxJitter.toMillis() + 1)));
+        }
+        permits.acquire();
+        try {
+            return kralandScrapingPort.scrape(account);
+        } finally {
+            permits.release();
+        }
+    }
+}
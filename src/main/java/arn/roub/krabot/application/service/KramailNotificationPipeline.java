@@ -0,0 +1,228 @@
+package arn.roub.krabot.application.service;
+
+import arn.roub.krabot.domain.model.Kramail;
+import arn.roub.krabot.domain.model.KramailId;
+import arn.roub.krabot.domain.port.out.NotificationPort;
+import arn.roub.krabot.domain.port.out.StateRepositoryPort;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * File de notification des kramails, qui découple le tick de scraping de la latence de Discord.
+ * <p>
+ * Le tick publie les kramails à notifier dans une file bornée ; un thread virtuel dédié les envoie au
+ * {@link NotificationPort} et ne marque un kramail comme notifié qu'une fois l'envoi réussi. Un envoi en échec
+ * (Discord indisponible ou rate limit) laisse le kramail non marqué : le tick suivant le republie.
+ * <p>
+ * Contre-pression : si la file est pleine, la publication attend au plus {@code offerTimeout} qu'une place se
+ * libère, puis le kramail est refusé et attend lui aussi le tick suivant. Un kramail déjà en file ou en cours
+ * d'envoi n'est pas publié une seconde fois.
+ * <p>
+ * Avec une fenêtre de regroupement ({@code batchWindow} positive), le thread d'envoi attend cette durée après le
+ * premier kramail reçu et envoie tous les kramails arrivés entre-temps (au plus {@value #MAX_BATCH_SIZE}) en un
+ * minimum de messages ; seuls les kramails effectivement envoyés sont marqués. Sans fenêtre, les kramails déjà en
+ * file au moment de l'envoi sont regroupés de la même façon, sans attendre.
+ * <p>
+ * La notification générale (badge de la cloche) passe aussi par la pipeline, sur son propre thread virtuel :
+ * elle n'est marquée envoyée qu'une fois l'envoi réussi, et n'est pas republiée tant qu'un envoi est en cours.
+ */
+public class KramailNotificationPipeline implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KramailNotificationPipeline.class);
+    private static final Duration SHUTDOWN_GRACE = Duration.ofSeconds(5);
+    static final int MAX_BATCH_SIZE = 50;
+
+    private final NotificationPort notificationPort;
+    private final StateRepositoryPort stateRepositoryPort;
+    private final BlockingQueue<Kramail> queue;
+    private final Duration offerTimeout;
+    private final Duration batchWindow;
+    private final Set<KramailId> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean generalNotificationPending = new AtomicBoolean();
+
+    private Thread consumer;
+    private volatile Thread generalNotifier;
+
+    public KramailNotificationPipeline(
+            NotificationPort notificationPort,
+            StateRepositoryPort stateRepositoryPort,
+            int capacity,
+            Duration offerTimeout,
+            Duration batchWindow
+    ) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Notification queue capacity must be >= 1");
+        }
+        this.notificationPort = notificationPort;
+        this.stateRepositoryPort = stateRepositoryPort;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.offerTimeout = offerTimeout;
+        this.batchWindow = batchWindow;
+    }
+
+    /**
+     * Démarre le thread d'envoi.
+     */
+    public synchronized void start() {
+        if (consumer == null) {
+            consumer = Thread.ofVirtual().name("kramail-notifier").start(this::consume);
+        }
+    }
+
+    /**
+     * Publie un kramail à notifier.
+     *
+     * @return false si la file est restée pleine pendant {@code offerTimeout} : le kramail n'est pas publié
+     */
+    public boolean publish(Kramail kramail) {
+        if (!pending.add(kramail.id())) {
+            return true;
+        }
+        // Le tick a pu lire l'état juste avant que le thread d'envoi marque ce kramail puis le retire de pending
+        if (stateRepositoryPort.isKramailAlreadyNotified(kramail.id())) {
+            pending.remove(kramail.id());
+            return true;
+        }
+        boolean accepted;
+        try {
+            accepted = queue.offer(kramail, offerTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        }
+        if (!accepted) {
+            pending.remove(kramail.id());
+            LOGGER.warn("Notification queue full, kramail {} deferred to the next tick", kramail.id().value());
+        }
+        return accepted;
+    }
+
+    /**
+     * Publie la notification générale. Sans effet si elle est déjà en cours d'envoi ; un échec la laisse non
+     * marquée, le tick suivant la republie.
+     */
+    public void publishGeneralNotification() {
+        if (!generalNotificationPending.compareAndSet(false, true)) {
+            return;
+        }
+        generalNotifier = Thread.ofVirtual().name("general-notifier").start(() -> {
+            try {
+                notificationPort.sendGeneralNotification();
+                stateRepositoryPort.markGeneralNotificationAsSent();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Failed to deliver general notification, retrying next tick: {}", e.getMessage());
+            } finally {
+                generalNotificationPending.set(false);
+            }
+        });
+    }
+
+    /**
+     * @return le nombre de kramails en file ou en cours d'envoi
+     */
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Arrête le thread d'envoi après l'envoi en cours ; les kramails restés en file ne sont pas marqués.
+     */
+    @Override
+    public synchronized void close() {
+        Thread notifier = generalNotifier;
+        if (notifier != null) {
+            try {
+                notifier.join(SHUTDOWN_GRACE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (consumer == null) {
+            return;
+        }
+        consumer.interrupt();
+        try {
+            consumer.join(SHUTDOWN_GRACE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            LOGGER.info("Notification pipeline stopped with {} kramail(s) not sent", queue.size());
+        }
+        consumer = null;
+    }
+
+    private void consume() {
+        List<Kramail> batch = new ArrayList<>();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                collect(batch);
+            } catch (InterruptedException e) {
+                return;
+            }
+            deliver(batch);
+            batch.clear();
+        }
+    }
+
+    private void collect(List<Kramail> batch) throws InterruptedException {
+        if (!batchWindow.isPositive()) {
+            queue.drainTo(batch, MAX_BATCH_SIZE - batch.size());
+            return;
+        }
+        long deadline = System.nanoTime() + batchWindow.toNanos();
+        while (batch.size() < MAX_BATCH_SIZE) {
+            Kramail next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void deliver(List<Kramail> batch) {
+        if (batch.size() == 1) {
+            deliver(batch.getFirst());
+            return;
+        }
+        int delivered = 0;
+        try {
+            delivered = notificationPort.sendKramailNotifications(batch);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to deliver kramail notifications: {}", e.getMessage());
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            if (i < delivered) {
+                stateRepositoryPort.markKramailAsNotified(batch.get(i).id());
+            }
+            pending.remove(batch.get(i).id());
+        }
+        if (delivered < batch.size()) {
+            LOGGER.warn("{} of {} kramail notifications not delivered, retrying next tick",
+                    batch.size() - delivered, batch.size());
+        }
+    }
+
+    private void deliver(Kramail kramail) {
+        try {
+            notificationPort.sendKramailNotification(kramail);
+            stateRepositoryPort.markKramailAsNotified(kramail.id());
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to deliver kramail {} notification, retrying next tick: {}",
+                    kramail.id().value(), e.getMessage());
+        } finally {
+            pending.remove(kramail.id());
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package arn.roub.krabot.application.service;
+
+import arn.roub.krabot.domain.port.out.KralandScrapingPort;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Couche de résilience partagée par les use cases qui appellent le {@link KralandScrapingPort}.
+ * <p>
+ * Une opération en échec est retentée avec un backoff exponentiel à jitter complet (délai tiré entre 0 et
+ * {@code baseDelay * 2^tentative}, plafonné à {@code maxDelay}). Après {@code failureThreshold} opérations
+ * en échec consécutives, le circuit s'ouvre : pendant {@code openDuration}, les opérations sont ignorées sans
+ * requête ni erreur. Ensuite, une seule requête légère ({@link KralandScrapingPort#isReachable()}) sonde Kraland
+ * et referme le circuit si le site répond ; sinon le circuit reste ouvert pour une nouvelle période.
+ */
+public class ScrapingCircuitBreaker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScrapingCircuitBreaker.class);
+    private static final long CLOSED = 0;
+
+    private final KralandScrapingPort kralandScrapingPort;
+    private final int maxAttempts;
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final Clock clock;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openUntilMillis = new AtomicLong(CLOSED);
+    private final AtomicBoolean probing = new AtomicBoolean();
+
+    public ScrapingCircuitBreaker(
+            KralandScrapingPort kralandScrapingPort,
+            int maxAttempts,
+            Duration baseDelay,
+            Duration maxDelay,
+            int failureThreshold,
+            Duration openDuration,
+            Clock clock
+    ) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Max attempts must be >= 1");
+        }
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("Failure threshold must be >= 1");
+        }
+        this.kralandScrapingPort = kralandScrapingPort;
+        this.maxAttempts = maxAttempts;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.clock = clock;
+    }
+
+    /**
+     * Exécute l'opération avec retries, si le circuit le permet.
+     *
+     * @return le résultat de l'opération, ou vide si le circuit est ouvert et que l'opération a été ignorée
+     * @throws RuntimeException la dernière erreur, si toutes les tentatives ont échoué
+     */
+    public <T> Optional<T> execute(Supplier<T> operation) {
+        if (!allowRequest()) {
+            return Optional.empty();
+        }
+        try {
+            T result = retryWithBackoff(operation);
+            consecutiveFailures.set(0);
+            return Optional.of(result);
+        } catch (RuntimeException e) {
+            onFailure();
+            throw e;
+        }
+    }
+
+    /**
+     * @return true si le circuit est ouvert (opérations ignorées)
+     */
+    public boolean isOpen() {
+        return openUntilMillis.get() != CLOSED;
+    }
+
+    private boolean allowRequest() {
+        long openUntil = openUntilMillis.get();
+        if (openUntil == CLOSED) {
+            return true;
+        }
+        if (clock.millis() < openUntil) {
+            LOGGER.debug("Kraland circuit open until {}, skipping", openUntil);
+            return false;
+        }
+        if (!probing.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            if (probe()) {
+                LOGGER.info("Kraland is reachable again, closing circuit");
+                // Un nouvel échec rouvre immédiatement le circuit
+                consecutiveFailures.set(failureThreshold - 1);
+                openUntilMillis.set(CLOSED);
+                return true;
+            }
+            LOGGER.info("Kraland still unreachable, keeping circuit open for {}", openDuration);
+            openUntilMillis.set(clock.millis() + openDuration.toMillis());
+            return false;
+        } finally {
+            probing.set(false);
+        }
+    }
+
+    private boolean probe() {
+        try {
+            return kralandScrapingPort.isReachable();
+        } catch (RuntimeException e) {
+            LOGGER.debug("Kraland probe failed: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void onFailure() {
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold && openUntilMillis.get() == CLOSED) {
+            LOGGER.warn("{} consecutive Kraland failures, opening circuit for {}", failureThreshold, openDuration);
+            openUntilMillis.set(clock.millis() + openDuration.toMillis());
+        }
+    }
+
+    private <T> T retryWithBackoff(Supplier<T> operation) {
+        for (int attempt = 0; true; attempt++) {
+            try {
+                return operation.get();
+            } catch (RuntimeException ex) {
+                LOGGER.warn("Attempt {} failed: {}", attempt + 1, ex.getMessage());
+                if (attempt == maxAttempts - 1) {
+                    throw ex;
+                }
+                if (!sleep(backoffDelay(attempt))) {
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    private Duration backoffDelay(int attempt) {
+        long ceiling = Math.min(maxDelay.toMillis(), baseDelay.toMillis() << Math.min(attempt, 20));
+        return ceiling <= 0 ? Duration.ZERO : Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    private static boolean sleep(Duration delay) {
+        if (delay.isZero()) {
+            return true;
+        }
+        try {
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -1,18 +1,19 @@
 package arn.roub.krabot.application.usecase;
 
-import arn.roub.krabot.domain.model.Account;
+import arn.roub.krabot.application.service.AccountScrapingOrchestrator;
+import arn.roub.krabot.application.service.KramailNotificationPipeline;
+import arn.roub.krabot.application.service.ScrapingCircuitBreaker;
 import arn.roub.krabot.domain.model.Kramail;
 import arn.roub.krabot.domain.model.KramailId;
 import arn.roub.krabot.domain.model.ScrapingResult;
 import arn.roub.krabot.domain.port.in.CheckKramailsUseCase;
-import arn.roub.krabot.domain.port.out.KralandScrapingPort;
-import arn.roub.krabot.domain.port.out.NotificationPort;
 import arn.roub.krabot.domain.port.out.StateRepositoryPort;
 import arn.roub.krabot.domain.service.NotificationDomainService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 /**
@@ -21,38 +22,44 @@ import java.util.Set;
 public class CheckKramailsUseCaseImpl implements CheckKramailsUseCase {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CheckKramailsUseCaseImpl.class);
-    private static final int MAX_RETRIES = 3;
 
-    private final KralandScrapingPort kralandScrapingPort;
-    private final NotificationPort notificationPort;
+    private final AccountScrapingOrchestrator accountScrapingOrchestrator;
+    private final ScrapingCircuitBreaker scrapingCircuitBreaker;
+    private final KramailNotificationPipeline kramailNotificationPipeline;
     private final StateRepositoryPort stateRepositoryPort;
     private final NotificationDomainService notificationDomainService;
-    private final Account account;
 
     public CheckKramailsUseCaseImpl(
-            KralandScrapingPort kralandScrapingPort,
-            NotificationPort notificationPort,
+            AccountScrapingOrchestrator accountScrapingOrchestrator,
+            ScrapingCircuitBreaker scrapingCircuitBreaker,
+            KramailNotificationPipeline kramailNotificationPipeline,
             StateRepositoryPort stateRepositoryPort,
-            NotificationDomainService notificationDomainService,
-            Account account
+            NotificationDomainService notificationDomainService
     ) {
-        this.kralandScrapingPort = kralandScrapingPort;
-        this.notificationPort = notificationPort;
+        this.accountScrapingOrchestrator = accountScrapingOrchestrator;
+        this.scrapingCircuitBreaker = scrapingCircuitBreaker;
+        this.kramailNotificationPipeline = kramailNotificationPipeline;
         this.stateRepositoryPort = stateRepositoryPort;
         this.notificationDomainService = notificationDomainService;
-        this.account = account;
     }
 
+    /**
+     * Seul le scraping est retenté ; si le circuit Kraland est ouvert, le tick est ignoré sans erreur.
+     * Les kramails et la notification générale sont publiés dans la {@link KramailNotificationPipeline} :
+     * le tick n'attend pas Discord, et un envoi lent ou en échec n'empêche ni la publication des kramails
+     * ni la mise à jour de l'état.
+     */
     @Override
     public void execute() {
-        retryOnFailure(this::checkAndNotify);
-    }
-
-    private void checkAndNotify() {
-        ScrapingResult result = kralandScrapingPort.scrape(account);
+        Optional<ScrapingResult> scraped = scrapingCircuitBreaker.execute(accountScrapingOrchestrator::scrapeAll);
+        if (scraped.isEmpty()) {
+            LOGGER.debug("Kraland circuit is open, kramail check skipped");
+            return;
+        }
+        ScrapingResult result = scraped.get();
 
-        processGeneralNotification(result);
         processKramailNotifications(result);
+        processGeneralNotification(result);
         updateState(result);
     }
 
@@ -62,8 +69,7 @@ public class CheckKramailsUseCaseImpl implements CheckKramailsUseCase {
                     result,
                     stateRepositoryPort.isGeneralNotificationAlreadySent()
             )) {
-                notificationPort.sendGeneralNotification();
-                stateRepositoryPort.markGeneralNotificationAsSent();
+                kramailNotificationPipeline.publishGeneralNotification();
             }
             stateRepositoryPort.updateNotificationFlag(true);
         } else {
@@ -73,39 +79,34 @@ public class CheckKramailsUseCaseImpl implements CheckKramailsUseCase {
     }
 
     private void processKramailNotifications(ScrapingResult result) {
+        if (result.isPartial()) {
+            LOGGER.warn("Partial scraping result, accounts not scraped this tick: {}", result.failedAccounts());
+        }
+
         if (result.hasKramails()) {
             List<Kramail> kramailsToNotify = notificationDomainService.findKramailsToNotify(
                     result,
                     stateRepositoryPort::isKramailAlreadyNotified
             );
 
-            for (Kramail kramail : kramailsToNotify) {
-                notificationPort.sendKramailNotification(kramail);
-                stateRepositoryPort.markKramailAsNotified(kramail.id());
-            }
+            kramailsToNotify.forEach(kramailNotificationPipeline::publish);
 
-            Set<KramailId> currentIds = notificationDomainService.extractKramailIds(result);
-            stateRepositoryPort.cleanupOldKramails(currentIds);
+            cleanupOldKramails(result, notificationDomainService.extractKramailIds(result));
         } else {
-            stateRepositoryPort.cleanupOldKramails(Set.of());
+            cleanupOldKramails(result, Set.of());
         }
     }
 
-    private void updateState(ScrapingResult result) {
-        stateRepositoryPort.updateKramailCount(result.kramails().size());
+    private void cleanupOldKramails(ScrapingResult result, Set<KramailId> currentIds) {
+        // Les kramails des personnages non lus ce tick sont absents du résultat : les nettoyer
+        // provoquerait une nouvelle notification au tick suivant.
+        if (result.isPartial()) {
+            return;
+        }
+        stateRepositoryPort.cleanupOldKramails(currentIds);
     }
 
-    private void retryOnFailure(Runnable operation) {
-        for (int attempt = 0; true; attempt++) {
-            try {
-                operation.run();
-                return;
-            } catch (RuntimeException ex) {
-                LOGGER.warn("Attempt {} failed: {}", attempt + 1, ex.getMessage());
-                if (attempt == MAX_RETRIES - 1) {
-                    throw ex;
-                }
-            }
-        }
+    private void updateState(ScrapingResult result) {
+        stateRepositoryPort.updateKramailCount(result.kramails().size());
     }
 }
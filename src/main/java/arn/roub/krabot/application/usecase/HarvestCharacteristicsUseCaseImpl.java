@@ -0,0 +1,43 @@
+package arn.roub.krabot.application.usecase;
+
+import arn.roub.krabot.application.service.ScrapingCircuitBreaker;
+import arn.roub.krabot.domain.model.Account;
+import arn.roub.krabot.domain.port.in.HarvestCharacteristicsUseCase;
+import arn.roub.krabot.domain.port.out.KralandScrapingPort;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implémentation du relevé des caractéristiques : la page plateau est récupérée sous la protection du
+ * circuit breaker, l'extraction et l'enregistrement se font ensuite en arrière-plan.
+ */
+public class HarvestCharacteristicsUseCaseImpl implements HarvestCharacteristicsUseCase {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HarvestCharacteristicsUseCaseImpl.class);
+
+    private final KralandScrapingPort kralandScrapingPort;
+    private final ScrapingCircuitBreaker scrapingCircuitBreaker;
+    private final Account account;
+
+    public HarvestCharacteristicsUseCaseImpl(
+            KralandScrapingPort kralandScrapingPort,
+            ScrapingCircuitBreaker scrapingCircuitBreaker,
+            Account account
+    ) {
+        this.kralandScrapingPort = kralandScrapingPort;
+        this.scrapingCircuitBreaker = scrapingCircuitBreaker;
+        this.account = account;
+    }
+
+    @Override
+    public void execute() {
+        boolean fetched = scrapingCircuitBreaker.execute(() -> {
+            kralandScrapingPort.refreshCharacteristics(account);
+            return true;
+        }).isPresent();
+
+        if (!fetched) {
+            LOGGER.info("Kraland circuit is open, characteristics refresh skipped");
+        }
+    }
+}
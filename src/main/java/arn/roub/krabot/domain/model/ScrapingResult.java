@@ -4,14 +4,23 @@ import java.util.List;
 
 /**
  * Value Object représentant le résultat d'un scraping Kraland.
+ * <p>
+ * {@code failedAccounts} liste les personnages dont la page kramail n'a pas pu être lue pendant le tick :
+ * le résultat est alors partiel et ne contient que les kramails des personnages lus avec succès.
  */
 public record ScrapingResult(
         List<Kramail> kramails,
-        boolean hasNotification
+        boolean hasNotification,
+        List<String> failedAccounts
 ) {
 
     public ScrapingResult {
         kramails = kramails != null ? List.copyOf(kramails) : List.of();
+        failedAccounts = failedAccounts != null ? List.copyOf(failedAccounts) : List.of();
+    }
+
+    public ScrapingResult(List<Kramail> kramails, boolean hasNotification) {
+        this(kramails, hasNotification, List.of());
     }
 
     public static ScrapingResult empty() {
@@ -21,4 +30,11 @@ public record ScrapingResult(
     public boolean hasKramails() {
         return !kramails.isEmpty();
     }
+
+    /**
+     * @return true si au moins un personnage n'a pas pu être scrapé
+     */
+    public boolean isPartial() {
+        return !failedAccounts.isEmpty();
+    }
 }
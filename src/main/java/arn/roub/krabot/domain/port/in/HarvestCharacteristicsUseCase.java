@@ -0,0 +1,12 @@
+package arn.roub.krabot.domain.port.in;
+
+/**
+ * Port primaire pour le relevé périodique des caractéristiques du personnage.
+ */
+public interface HarvestCharacteristicsUseCase {
+
+    /**
+     * Récupère la page plateau du compte surveillé et en enregistre les caractéristiques.
+     */
+    void execute();
+}
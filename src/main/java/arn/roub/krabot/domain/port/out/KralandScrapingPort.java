@@ -23,4 +23,19 @@ public interface KralandScrapingPort {
      * @return true si l'ordre a été passé, false si l'action n'était pas disponible (déjà dormi aujourd'hui)
      */
     boolean sleepIfAvailable(Account account);
+
+    /**
+     * Récupère la page plateau pour en relever les caractéristiques du personnage (nom, identifiant, PP).
+     * L'extraction et l'enregistrement se font en arrière-plan, après le retour de la méthode.
+     *
+     * @param account les credentials du compte Kraland
+     */
+    void refreshCharacteristics(Account account);
+
+    /**
+     * Vérifie par une requête légère, sans authentification, que Kraland répond.
+     *
+     * @return true si le site est joignable
+     */
+    boolean isReachable();
 }
@@ -3,6 +3,8 @@ package arn.roub.krabot.domain.port.out;
 import arn.roub.krabot.domain.model.Kramail;
 import arn.roub.krabot.domain.model.ReleaseVersion;
 
+import java.util.List;
+
 /**
  * Port secondaire pour l'envoi de notifications.
  */
@@ -25,6 +27,15 @@ public interface NotificationPort {
      */
     void sendKramailNotification(Kramail kramail);
 
+    /**
+     * Envoie les notifications de plusieurs kramails en regroupant les messages, dans l'ordre de la liste.
+     * L'envoi s'arrête au premier échec.
+     *
+     * @param kramails les kramails à notifier
+     * @return le nombre de kramails notifiés, en tête de liste
+     */
+    int sendKramailNotifications(List<Kramail> kramails);
+
     /**
      * Envoie une notification générale (report).
      */
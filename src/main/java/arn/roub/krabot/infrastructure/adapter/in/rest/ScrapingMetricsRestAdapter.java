@@ -0,0 +1,77 @@
+package arn.roub.krabot.infrastructure.adapter.in.rest;
+
+import arn.roub.krabot.infrastructure.adapter.out.scraping.KralandContentDecoder;
+import arn.roub.krabot.infrastructure.adapter.out.scraping.KralandPageCache;
+import arn.roub.krabot.infrastructure.adapter.out.scraping.KralandRateLimiter;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * Adapter REST pour exposer les compteurs du scraping Kraland.
+ */
+@Path("krabot/metrics")
+@ApplicationScoped
+public class ScrapingMetricsRestAdapter {
+
+    private final KralandPageCache pageCache;
+    private final KralandRateLimiter rateLimiter;
+    private final KralandContentDecoder contentDecoder;
+
+    public ScrapingMetricsRestAdapter(KralandPageCache pageCache, KralandRateLimiter rateLimiter,
+                                      KralandContentDecoder contentDecoder) {
+        this.pageCache = pageCache;
+        this.rateLimiter = rateLimiter;
+        this.contentDecoder = contentDecoder;
+    }
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getMetrics() {
+        return Response.ok(new ScrapingMetricsDto(
+                pageCache.hits(),
+                pageCache.misses(),
+                rateLimiter.tokensAvailable(),
+                rateLimiter.acquiredCount(),
+                rateLimiter.queuedCount(),
+                rateLimiter.totalWaitMillis(),
+                rateLimiter.maxWaitMillis(),
+                contentDecoder.responses(),
+                contentDecoder.compressedResponses(),
+                contentDecoder.wireBytes(),
+                contentDecoder.decodedBytes()
+        )).build();
+    }
+
+    /**
+     * DTO pour l'API REST.
+     *
+     * @param pageCacheHits            pages de personnages inchangées dont le parsing a été évité
+     * @param pageCacheMisses          pages de personnages parsées
+     * @param rateLimitTokensAvailable jetons disponibles immédiatement dans le limiteur de débit
+     * @param rateLimitRequests        requêtes passées par le limiteur de débit
+     * @param rateLimitQueuedRequests  requêtes qui ont dû attendre un jeton
+     * @param rateLimitWaitMillisTotal temps d'attente cumulé des requêtes en file
+     * @param rateLimitWaitMillisMax   plus long temps d'attente observé
+     * @param responses                réponses Kraland reçues
+     * @param compressedResponses      réponses reçues compressées (gzip ou deflate)
+     * @param wireBytes                octets de corps reçus du réseau
+     * @param decodedBytes             octets de corps après décompression
+     */
+    public record ScrapingMetricsDto(
+            long pageCacheHits,
+            long pageCacheMisses,
+            int rateLimitTokensAvailable,
+            long rateLimitRequests,
+            long rateLimitQueuedRequests,
+            long rateLimitWaitMillisTotal,
+            long rateLimitWaitMillisMax,
+            long responses,
+            long compressedResponses,
+            long wireBytes,
+            long decodedBytes
+    ) {}
+}
@@ -0,0 +1,33 @@
+package arn.roub.krabot.infrastructure.adapter.in.scheduler;
+
+import arn.roub.krabot.domain.port.in.HarvestCharacteristicsUseCase;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scheduler du relevé des caractéristiques du personnage sur la page plateau, à basse fréquence.
+ * Désactivé par défaut ({@code off}) : la page plateau récupérée par le rappel de sommeil suffit alors.
+ */
+@ApplicationScoped
+public class CharacteristicsHarvestScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CharacteristicsHarvestScheduler.class);
+
+    private final HarvestCharacteristicsUseCase harvestCharacteristicsUseCase;
+
+    public CharacteristicsHarvestScheduler(HarvestCharacteristicsUseCase harvestCharacteristicsUseCase) {
+        this.harvestCharacteristicsUseCase = harvestCharacteristicsUseCase;
+    }
+
+    @Scheduled(every = "${scheduler.characteristics.every}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    public void execute() {
+        try {
+            harvestCharacteristicsUseCase.execute();
+        } catch (RuntimeException e) {
+            // Relevé de confort : un échec attend le prochain passage sans message Discord
+            LOGGER.warn("Error during characteristics refresh: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package arn.roub.krabot.infrastructure.adapter.out.notification;
+
+import arn.roub.krabot.shared.exception.RateLimitException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * File d'envoi bornée de tous les messages du webhook Discord.
+ * <p>
+ * Un thread virtuel dédié envoie les messages un par un : il attend le budget du rate limit, puis réclame le
+ * message par CAS juste avant de le poster. Un message refusé par Discord (429) redevient en attente et repart dès
+ * que le délai indiqué est écoulé : aucun message n'est perdu au rate limit.
+ * <p>
+ * Le résultat d'un message ne peut être {@link CompletableFuture#cancel annulé} que tant que le message n'est pas
+ * en cours d'envoi : une fois la requête partie, {@code cancel} échoue et l'appelant doit attendre l'issue réelle.
+ * Un message retiré ne peut donc jamais avoir été publié.
+ * <p>
+ * Les messages dont l'appelant attend l'envoi ({@link #submit}) passent avant les messages sans attente
+ * ({@link #submitLater} : démarrage, release, erreur), chaque catégorie dans son ordre de soumission. Les messages
+ * sans attente sont au plus {@value #MAX_BACKGROUND} en file : un message identique à un message en attente y est
+ * fusionné, et au-delà le plus ancien est abandonné. Une panne prolongée de Discord ne peut ainsi ni faire grossir
+ * la file sans limite, ni retarder les kramails derrière des messages d'erreur.
+ */
+public class DiscordDeliveryQueue implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiscordDeliveryQueue.class);
+    static final int MAX_BACKGROUND = 5;
+
+    private final DiscordWebhookClient webhookClient;
+    private final int capacity;
+    private final BlockingQueue<Delivery> queue = new PriorityBlockingQueue<>(11,
+            Comparator.comparing(Delivery::background).thenComparingLong(Delivery::sequence));
+    private final Deque<Delivery> background = new ArrayDeque<>();
+    private final Object submitLock = new Object();
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private long sequence;
+    private Thread sender;
+
+    public DiscordDeliveryQueue(DiscordWebhookClient webhookClient, int capacity) {
+        this.webhookClient = webhookClient;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Démarre le thread d'envoi.
+     */
+    public synchronized void start() {
+        if (sender == null) {
+            sender = Thread.ofVirtual().name("discord-sender").start(this::run);
+        }
+    }
+
+    /**
+     * Ajoute à la file un message dont l'appelant attend l'envoi. Si la file est pleine, le plus ancien message
+     * sans attente est abandonné pour lui faire place.
+     *
+     * @return le résultat de l'envoi, complété une fois le message accepté par Discord, ou en échec par une
+     *         {@link RateLimitException} si la file est pleine de messages attendus
+     */
+    public CompletableFuture<Void> submit(String content) {
+        synchronized (submitLock) {
+            Delivery delivery = new Delivery(content, false, sequence++);
+            if (!enqueue(delivery) && !(dropOldestBackground() && enqueue(delivery))) {
+                delivery.failed(new RateLimitException("Discord delivery queue full"));
+            }
+            return delivery;
+        }
+    }
+
+    /**
+     * Ajoute à la file un message dont personne n'attend l'envoi. Un message identique déjà en attente est
+     * réutilisé ; au-delà de {@value #MAX_BACKGROUND} messages sans attente, ou si la file est pleine, le plus
+     * ancien est abandonné.
+     *
+     * @return le résultat de l'envoi, annulé si le message est abandonné
+     */
+    public CompletableFuture<Void> submitLater(String content) {
+        synchronized (submitLock) {
+            background.removeIf(delivery -> !delivery.isPending());
+            for (Delivery queued : background) {
+                if (queued.content().equals(content)) {
+                    LOGGER.debug("Discord message already queued, merged");
+                    return queued;
+                }
+            }
+            if (background.size() >= MAX_BACKGROUND) {
+                dropOldestBackground();
+            }
+            Delivery delivery = new Delivery(content, true, sequence++);
+            if (!enqueue(delivery) && !(dropOldestBackground() && enqueue(delivery))) {
+                LOGGER.warn("Discord delivery queue full, message dropped");
+                delivery.cancel(false);
+                return delivery;
+            }
+            background.addLast(delivery);
+            return delivery;
+        }
+    }
+
+    /**
+     * @return le nombre de messages en file ou en cours d'envoi
+     */
+    public int pendingCount() {
+        return outstanding.get();
+    }
+
+    private boolean enqueue(Delivery delivery) {
+        if (queue.size() >= capacity) {
+            return false;
+        }
+        outstanding.incrementAndGet();
+        queue.add(delivery);
+        return true;
+    }
+
+    private boolean dropOldestBackground() {
+        Delivery oldest;
+        while ((oldest = background.pollFirst()) != null) {
+            if (oldest.cancel(false)) {
+                if (queue.remove(oldest)) {
+                    outstanding.decrementAndGet();
+                }
+                LOGGER.warn("Too many Discord messages queued, oldest background message dropped");
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Laisse au plus {@code grace} aux messages en file pour partir, puis arrête le thread d'envoi.
+     */
+    public void close(Duration grace) {
+        long deadline = System.nanoTime() + grace.toNanos();
+        try {
+            while (outstanding.get() > 0 && System.nanoTime() - deadline < 0) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (outstanding.get() > 0) {
+            LOGGER.warn("Discord delivery queue stopped with {} message(s) not sent", outstanding.get());
+        }
+        close();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (sender != null) {
+            sender.interrupt();
+            sender = null;
+        }
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Delivery delivery;
+            try {
+                delivery = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                deliver(delivery);
+            } catch (InterruptedException e) {
+                delivery.cancel(false);
+                return;
+            } finally {
+                outstanding.decrementAndGet();
+            }
+        }
+    }
+
+    private void deliver(Delivery delivery) throws InterruptedException {
+        while (delivery.isPending()) {
+            webhookClient.acquire();
+            if (!delivery.claim()) {
+                // Retiré pendant l'attente du budget : jamais envoyé
+                return;
+            }
+            try {
+                webhookClient.post(delivery.content());
+                delivery.sent();
+            } catch (RateLimitException e) {
+                // Refusé par Discord, donc non publié : le message peut de nouveau être retiré, et le limiteur est
+                // bloqué pour le délai indiqué, que le prochain essai attendra
+                LOGGER.debug("Discord message rate limited, sending again: {}", e.getMessage());
+                delivery.release();
+            } catch (RuntimeException e) {
+                delivery.failed(e);
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    private enum DeliveryState { PENDING, SENDING, DONE }
+
+    /**
+     * Message en file et résultat de son envoi. Son état n'avance que par CAS : l'expéditeur le réclame
+     * ({@code PENDING -> SENDING}) juste avant de le poster, et {@link #cancel} n'aboutit que depuis {@code PENDING}.
+     */
+    private static final class Delivery extends CompletableFuture<Void> {
+
+        private final String content;
+        private final boolean background;
+        private final long sequence;
+        private final AtomicReference<DeliveryState> state = new AtomicReference<>(DeliveryState.PENDING);
+
+        Delivery(String content, boolean background, long sequence) {
+            this.content = content;
+            this.background = background;
+            this.sequence = sequence;
+        }
+
+        String content() {
+            return content;
+        }
+
+        boolean background() {
+            return background;
+        }
+
+        long sequence() {
+            return sequence;
+        }
+
+        boolean isPending() {
+            return state.get() == DeliveryState.PENDING;
+        }
+
+        boolean claim() {
+            return state.compareAndSet(DeliveryState.PENDING, DeliveryState.SENDING);
+        }
+
+        void release() {
+            state.compareAndSet(DeliveryState.SENDING, DeliveryState.PENDING);
+        }
+
+        void sent() {
+            state.set(DeliveryState.DONE);
+            complete(null);
+        }
+
+        void failed(Throwable error) {
+            state.set(DeliveryState.DONE);
+            completeExceptionally(error);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return state.compareAndSet(DeliveryState.PENDING, DeliveryState.DONE) && super.cancel(mayInterruptIfRunning);
+        }
+    }
+}
@@ -3,12 +3,33 @@ package arn.roub.krabot.infrastructure.adapter.out.notification;
 import arn.roub.krabot.domain.model.Kramail;
 import arn.roub.krabot.domain.model.ReleaseVersion;
 import arn.roub.krabot.domain.port.out.NotificationPort;
+import arn.roub.krabot.shared.exception.NotificationException;
 import arn.roub.krabot.shared.exception.RateLimitException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 /**
  * Adapter Discord pour l'envoi de notifications.
+ * <p>
+ * Les notifications de plusieurs kramails sont regroupées, une ligne par kramail, dans des messages d'au plus
+ * {@value #MAX_CONTENT_LENGTH} caractères (limite Discord du champ {@code content}) : un appel au webhook au lieu
+ * d'un par kramail.
+ * <p>
+ * Tous les messages passent par la {@link DiscordDeliveryQueue}, qui les retient tant que le rate limit l'exige.
+ * Les messages de démarrage, de release et d'erreur sont envoyés sans attendre, et peuvent être fusionnés ou
+ * abandonnés si la file déborde ; les autres attendent leur envoi
+ * au plus {@code sendTimeout}, au-delà duquel le message est retiré de la file et une {@link RateLimitException}
+ * est levée. Un message déjà en cours d'envoi ne peut plus être retiré : son issue réelle est alors attendue, pour
+ * qu'un kramail publié ne soit jamais signalé comme non envoyé.
  */
 public class DiscordNotificationAdapter implements NotificationPort {
 
@@ -16,9 +37,11 @@ public class DiscordNotificationAdapter implements NotificationPort {
     private static final String PLACEHOLDER_TITLE = "*title*";
     private static final String PLACEHOLDER_ORIGINATOR = "*originator*";
     private static final String PLACEHOLDER_RECIPIENT = "*recipient*";
+    static final int MAX_CONTENT_LENGTH = 2000;
     private static final String GITHUB_RELEASE_URL = "https://github.com/arnaudroubinet/krabotnotif/releases/latest";
 
-    private final DiscordWebhookClient webhookClient;
+    private final DiscordDeliveryQueue deliveryQueue;
+    private final Duration sendTimeout;
     private final String startupMessage;
     private final String shutdownMessage;
     private final String kramailTemplate;
@@ -27,7 +50,8 @@ public class DiscordNotificationAdapter implements NotificationPort {
     private final String errorPrefix;
 
     public DiscordNotificationAdapter(
-            DiscordWebhookClient webhookClient,
+            DiscordDeliveryQueue deliveryQueue,
+            Duration sendTimeout,
             String startupMessage,
             String shutdownMessage,
             String kramailTemplate,
@@ -35,7 +59,8 @@ public class DiscordNotificationAdapter implements NotificationPort {
             String releaseTemplate,
             String errorPrefix
     ) {
-        this.webhookClient = webhookClient;
+        this.deliveryQueue = deliveryQueue;
+        this.sendTimeout = sendTimeout;
         this.startupMessage = startupMessage;
         this.shutdownMessage = shutdownMessage;
         this.kramailTemplate = kramailTemplate;
@@ -46,59 +71,132 @@ public class DiscordNotificationAdapter implements NotificationPort {
 
     @Override
     public void sendStartupNotification() {
-        sendSafely(startupMessage, "startup");
+        sendLater(startupMessage, "startup");
     }
 
     @Override
     public void sendShutdownNotification() {
-        sendSafely(shutdownMessage, "shutdown");
+        try {
+            send(shutdownMessage, "shutdown");
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to send shutdown notification: {}", e.getMessage());
+        }
     }
 
     @Override
     public void sendKramailNotification(Kramail kramail) {
-        String message = kramailTemplate
-                .replace(PLACEHOLDER_TITLE, kramail.title())
-                .replace(PLACEHOLDER_ORIGINATOR, kramail.originator())
-                .replace(PLACEHOLDER_RECIPIENT, kramail.recipient());
+        send(render(kramail), "kramail");
+    }
 
-        sendWithRetry(message, "kramail");
+    @Override
+    public int sendKramailNotifications(List<Kramail> kramails) {
+        // Un message à la fois : un message suivant un échec ne doit pas partir, sans quoi ses kramails seraient
+        // publiés sans être comptés comme envoyés
+        int delivered = 0;
+        for (Batch batch : batches(kramails)) {
+            try {
+                await(deliveryQueue.submit(batch.content()), "kramail batch");
+            } catch (RuntimeException e) {
+                LOGGER.warn("Failed to send batch of {} kramail notifications: {}", batch.size(), e.getMessage());
+                return delivered;
+            }
+            delivered += batch.size();
+        }
+        LOGGER.debug("Sent {} kramail notifications", delivered);
+        return delivered;
     }
 
     @Override
     public void sendGeneralNotification() {
-        sendWithRetry(notificationMessage, "general notification");
+        send(notificationMessage, "general notification");
     }
 
     @Override
     public void sendReleaseNotification(ReleaseVersion version) {
         String message = releaseTemplate + ": " + GITHUB_RELEASE_URL;
-        sendSafely(message, "release");
+        sendLater(message, "release");
     }
 
     @Override
     public void sendErrorNotification(String message) {
         String fullMessage = errorPrefix + " " + message;
-        sendSafely(fullMessage, "error");
+        sendLater(fullMessage, "error");
     }
 
-    private void sendWithRetry(String message, String type) {
-        try {
-            webhookClient.send(message);
-            LOGGER.debug("Sent {} notification", type);
-        } catch (RateLimitException e) {
-            LOGGER.warn("Rate limited while sending {} notification, will retry later", type);
-            throw e;
+    private String render(Kramail kramail) {
+        return kramailTemplate
+                .replace(PLACEHOLDER_TITLE, kramail.title())
+                .replace(PLACEHOLDER_ORIGINATOR, kramail.originator())
+                .replace(PLACEHOLDER_RECIPIENT, kramail.recipient());
+    }
+
+    private List<Batch> batches(List<Kramail> kramails) {
+        List<Batch> batches = new ArrayList<>();
+        StringBuilder content = new StringBuilder(MAX_CONTENT_LENGTH);
+        int size = 0;
+        for (Kramail kramail : kramails) {
+            String line = render(kramail);
+            if (line.length() > MAX_CONTENT_LENGTH) {
+                line = line.substring(0, MAX_CONTENT_LENGTH - 1) + "…";
+            }
+            if (size > 0 && content.length() + 1 + line.length() > MAX_CONTENT_LENGTH) {
+                batches.add(new Batch(content.toString(), size));
+                content.setLength(0);
+                size = 0;
+            }
+            if (size > 0) {
+                content.append('\n');
+            }
+            content.append(line);
+            size++;
+        }
+        if (size > 0) {
+            batches.add(new Batch(content.toString(), size));
         }
+        return batches;
     }
 
-    private void sendSafely(String message, String type) {
+    private void send(String message, String type) {
+        await(deliveryQueue.submit(message), type);
+        LOGGER.debug("Sent {} notification", type);
+    }
+
+    private void sendLater(String message, String type) {
+        deliveryQueue.submitLater(message).whenComplete((sent, error) -> {
+            if (error instanceof CancellationException) {
+                LOGGER.debug("Dropped {} notification", type);
+            } else if (error != null) {
+                LOGGER.error("Failed to send {} notification: {}", type, error.getMessage());
+            } else {
+                LOGGER.debug("Sent {} notification", type);
+            }
+        });
+    }
+
+    private void await(CompletableFuture<Void> result, String type) {
         try {
-            webhookClient.send(message);
-            LOGGER.debug("Sent {} notification", type);
-        } catch (RateLimitException e) {
-            LOGGER.warn("Rate limited while sending {} notification", type);
-        } catch (Exception e) {
-            LOGGER.error("Failed to send {} notification: {}", type, e.getMessage());
+            while (true) {
+                try {
+                    result.get(sendTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                    return;
+                } catch (TimeoutException e) {
+                    if (result.cancel(false)) {
+                        LOGGER.warn("Rate limited while sending {} notification, will retry later", type);
+                        throw new RateLimitException("Discord " + type + " notification not sent within " + sendTimeout);
+                    }
+                    LOGGER.debug("Discord {} notification already being sent, waiting for its outcome", type);
+                }
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause
+                    ? cause
+                    : new NotificationException("Failed to send Discord notification", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(false);
+            throw new NotificationException("Interrupted while sending Discord notification", e);
         }
     }
+
+    private record Batch(String content, int size) {}
 }
@@ -0,0 +1,121 @@
+package arn.roub.krabot.infrastructure.adapter.out.notification;
+
+import arn.roub.krabot.shared.exception.NotificationException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodeur du corps JSON d'un message du webhook Discord.
+ * <p>
+ * Les champs constants ({@code username}, {@code avatar_url}, {@code tts}) sont sérialisés une seule fois en un
+ * préfixe d'octets ; chaque message n'alloue qu'un tableau à la taille exacte du corps, dans lequel le contenu est
+ * échappé et encodé en UTF-8 directement, sans map, arbre Jackson ni chaîne intermédiaire.
+ */
+public class DiscordPayloadEncoder {
+
+    private static final byte[] SUFFIX = "\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final byte[] prefix;
+
+    public DiscordPayloadEncoder(String username, String avatarUrl) {
+        ObjectMapper objectMapper = new ObjectMapper();
+        try {
+            this.prefix = ("{\"username\":" + objectMapper.writeValueAsString(username)
+                    + ",\"avatar_url\":" + objectMapper.writeValueAsString(avatarUrl)
+                    + ",\"tts\":false,\"content\":\"").getBytes(StandardCharsets.UTF_8);
+        } catch (JsonProcessingException e) {
+            throw new NotificationException("Failed to serialize Discord webhook identity", e);
+        }
+    }
+
+    /**
+     * @param content le contenu du message
+     * @return le corps JSON du message, en UTF-8
+     */
+    public byte[] encode(String content) {
+        byte[] payload = new byte[prefix.length + escapedLength(content) + SUFFIX.length];
+        System.arraycopy(prefix, 0, payload, 0, prefix.length);
+        int position = writeEscaped(content, payload, prefix.length);
+        System.arraycopy(SUFFIX, 0, payload, position, SUFFIX.length);
+        return payload;
+    }
+
+    private static int escapedLength(String content) {
+        int length = 0;
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c < 0x80) {
+                length += c == '"' || c == '\\' ? 2 : c < 0x20 ? (shortEscape(c) != 0 ? 2 : 6) : 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < content.length()
+                    && Character.isLowSurrogate(content.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static int writeEscaped(String content, byte[] out, int position) {
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    out[position++] = '\\';
+                    out[position++] = (byte) c;
+                } else if (c < 0x20) {
+                    char escape = shortEscape(c);
+                    out[position++] = '\\';
+                    if (escape != 0) {
+                        out[position++] = (byte) escape;
+                    } else {
+                        out[position++] = 'u';
+                        out[position++] = '0';
+                        out[position++] = '0';
+                        out[position++] = HEX[c >> 4];
+                        out[position++] = HEX[c & 0xF];
+                    }
+                } else {
+                    out[position++] = (byte) c;
+                }
+            } else if (c < 0x800) {
+                out[position++] = (byte) (0xC0 | (c >> 6));
+                out[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < content.length()
+                    && Character.isLowSurrogate(content.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, content.charAt(++i));
+                out[position++] = (byte) (0xF0 | (codePoint >> 18));
+                out[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                out[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                out[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Surrogate isolé : remplacé comme le fait String.getBytes(UTF_8)
+                out[position++] = '?';
+            } else {
+                out[position++] = (byte) (0xE0 | (c >> 12));
+                out[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                out[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return position;
+    }
+
+    private static char shortEscape(char c) {
+        return switch (c) {
+            case '\b' -> 'b';
+            case '\f' -> 'f';
+            case '\n' -> 'n';
+            case '\r' -> 'r';
+            case '\t' -> 't';
+            default -> 0;
+        };
+    }
+}
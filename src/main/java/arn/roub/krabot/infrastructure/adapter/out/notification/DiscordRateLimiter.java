@@ -0,0 +1,174 @@
+package arn.roub.krabot.infrastructure.adapter.out.notification;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Budget d'envoi du webhook Discord, tenu à jour à partir des en-têtes de rate limit de chaque réponse.
+ * <p>
+ * Discord annonce pour le bucket du webhook ({@code x-ratelimit-bucket}) le nombre de requêtes restantes
+ * ({@code x-ratelimit-remaining}) et le délai avant renouvellement ({@code x-ratelimit-reset-after}, à défaut
+ * l'instant {@code x-ratelimit-reset}). Une réponse 429 donne le délai à respecter dans le champ
+ * {@code retry_after} de son corps, à défaut dans l'en-tête {@code Retry-After}.
+ * <p>
+ * L'état tient dans un seul {@link AtomicReference} mis à jour par CAS. Chaque envoi réserve une requête du
+ * budget ; si le budget est épuisé, il attend exactement son renouvellement au lieu d'envoyer une requête que
+ * Discord refuserait. Tant qu'aucune réponse n'a annoncé de budget, ou une fois le délai annoncé écoulé, les
+ * envois passent sans attendre.
+ */
+public class DiscordRateLimiter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiscordRateLimiter.class);
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final String X_RATE_LIMIT_BUCKET = "x-ratelimit-bucket";
+    private static final String X_RATE_LIMIT_REMAINING = "x-ratelimit-remaining";
+    private static final String X_RATE_LIMIT_RESET_AFTER = "x-ratelimit-reset-after";
+    private static final String X_RATE_LIMIT_RESET = "x-ratelimit-reset";
+    private static final String RETRY_AFTER = "retry-after";
+    private static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds(1);
+
+    private final LongSupplier nanoClock;
+    private final AtomicReference<Bucket> bucket;
+
+    public DiscordRateLimiter() {
+        this(System::nanoTime);
+    }
+
+    DiscordRateLimiter(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.bucket = new AtomicReference<>(new Bucket(null, 0, nanoClock.getAsLong()));
+    }
+
+    /**
+     * Attend qu'une requête soit disponible dans le budget du webhook, puis la réserve.
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        while ((waitNanos = reserve()) > 0) {
+            LOGGER.debug("Discord rate limit budget exhausted, waiting {} ms", TimeUnit.NANOSECONDS.toMillis(waitNanos));
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Variante non bloquante de {@link #acquire()}.
+     *
+     * @return complété une fois la requête réservée
+     */
+    public CompletableFuture<Void> acquireAsync() {
+        long waitNanos = reserve();
+        if (waitNanos <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS))
+                .thenCompose(ignored -> acquireAsync());
+    }
+
+    /**
+     * Réserve une requête du budget, si le budget le permet.
+     *
+     * @return 0 si la requête est réservée, sinon le délai avant renouvellement du budget, en nanosecondes
+     */
+    long reserve() {
+        while (true) {
+            long now = nanoClock.getAsLong();
+            Bucket current = bucket.get();
+            if (now - current.resetAt() >= 0) {
+                return 0;
+            }
+            if (current.remaining() <= 0) {
+                return current.resetAt() - now;
+            }
+            if (bucket.compareAndSet(current, current.consume())) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Met à jour le budget à partir des en-têtes d'une réponse du webhook.
+     *
+     * @param headers accès aux en-têtes de la réponse, par nom en minuscules
+     */
+    public void update(Function<String, Optional<String>> headers) {
+        Optional<Integer> remaining = parse(headers.apply(X_RATE_LIMIT_REMAINING), Integer::valueOf);
+        Optional<Duration> resetAfter = parse(headers.apply(X_RATE_LIMIT_RESET_AFTER), DiscordRateLimiter::seconds)
+                .or(() -> parse(headers.apply(X_RATE_LIMIT_RESET), DiscordRateLimiter::untilEpochSeconds));
+        if (remaining.isEmpty() || resetAfter.isEmpty()) {
+            return;
+        }
+        String id = headers.apply(X_RATE_LIMIT_BUCKET).orElse(null);
+        bucket.set(new Bucket(id, remaining.get(), nanoClock.getAsLong() + resetAfter.get().toNanos()));
+        if (remaining.get() <= 0) {
+            LOGGER.debug("Discord bucket {} exhausted, renewed in {}", id, resetAfter.get());
+        }
+    }
+
+    /**
+     * Bloque les envois après une réponse 429, pour le délai indiqué par Discord.
+     *
+     * @param headers accès aux en-têtes de la réponse, par nom en minuscules
+     * @param body    corps JSON de la réponse, éventuellement vide
+     * @return le délai à respecter
+     */
+    public Duration onTooManyRequests(Function<String, Optional<String>> headers, String body) {
+        Duration retryAfter = retryAfter(body)
+                .or(() -> parse(headers.apply(RETRY_AFTER), DiscordRateLimiter::seconds))
+                .orElse(DEFAULT_RETRY_AFTER);
+        long until = nanoClock.getAsLong() + retryAfter.toNanos();
+        bucket.updateAndGet(current -> new Bucket(current.id(), 0,
+                until - current.resetAt() > 0 ? until : current.resetAt()));
+        LOGGER.warn("Discord webhook rate limited, retrying in {}", retryAfter);
+        return retryAfter;
+    }
+
+    private static Optional<Duration> retryAfter(String body) {
+        if (body == null || body.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            JsonNode retryAfter = OBJECT_MAPPER.readTree(body).path("retry_after");
+            return retryAfter.isNumber() ? Optional.of(seconds(retryAfter.asDouble())) : Optional.empty();
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
+
+    private static <T> Optional<T> parse(Optional<String> value, Function<String, T> parser) {
+        try {
+            return value.map(String::trim).map(parser);
+        } catch (RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Duration seconds(String value) {
+        return seconds(Double.parseDouble(value));
+    }
+
+    private static Duration seconds(double value) {
+        return Duration.ofNanos((long) (Math.max(0, value) * TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    private static Duration untilEpochSeconds(String value) {
+        long resetMillis = (long) (Double.parseDouble(value) * 1000);
+        return Duration.ofMillis(Math.max(0, resetMillis - System.currentTimeMillis()));
+    }
+
+    private record Bucket(String id, int remaining, long resetAt) {
+
+        Bucket consume() {
+            return new Bucket(id, remaining - 1, resetAt);
+        }
+    }
+}
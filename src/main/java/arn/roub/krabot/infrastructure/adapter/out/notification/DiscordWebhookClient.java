@@ -2,131 +2,162 @@ package arn.roub.krabot.infrastructure.adapter.out.notification;
 
 import arn.roub.krabot.shared.exception.NotificationException;
 import arn.roub.krabot.shared.exception.RateLimitException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.net.ssl.HttpsURLConnection;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.IOException;
+import java.net.ProxySelector;
 import java.net.URI;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.time.Instant;
-import java.time.OffsetDateTime;
-import java.time.ZoneId;
-import java.time.ZoneOffset;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
 
 /**
  * Client HTTP pour envoyer des messages via Discord Webhook.
+ * <p>
+ * Tous les envois passent par un même {@link HttpClient} de longue durée (HTTP/2 si Discord le propose) : la
+ * connexion TLS vers discord.com est réutilisée d'un message à l'autre au lieu d'être renégociée à chaque envoi.
+ * Le corps de chaque message est produit par le {@link DiscordPayloadEncoder}. Chaque envoi attend d'abord une
+ * requête disponible dans le budget du {@link DiscordRateLimiter}, que les en-têtes de chaque réponse tiennent à
+ * jour : le client n'envoie jamais une requête qu'il sait refusée.
  */
 public class DiscordWebhookClient {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DiscordWebhookClient.class);
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
-    private static final String X_RATE_LIMIT_REMAINING = "x-ratelimit-remaining";
-    private static final String X_RATE_LIMIT_RESET = "x-ratelimit-reset";
-
-    private final String webhookUrl;
-    private final String username;
-    private final String avatarUrl;
-    private OffsetDateTime resetAfter;
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(5);
+
+    private final URI webhookUri;
+    private final DiscordPayloadEncoder payloadEncoder;
+    private final DiscordRateLimiter rateLimiter;
+    private final HttpClient httpClient;
+
+    public DiscordWebhookClient(String webhookUrl, String username, String avatarUrl, DiscordRateLimiter rateLimiter) {
+        this(webhookUrl, username, avatarUrl, rateLimiter, HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .proxy(ProxySelector.getDefault())
+                .version(HttpClient.Version.HTTP_2)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build());
+    }
 
-    public DiscordWebhookClient(String webhookUrl, String username, String avatarUrl) {
-        this.webhookUrl = webhookUrl;
-        this.username = username;
-        this.avatarUrl = avatarUrl;
+    DiscordWebhookClient(String webhookUrl, String username, String avatarUrl, DiscordRateLimiter rateLimiter,
+                         HttpClient httpClient) {
+        this.webhookUri = URI.create(webhookUrl);
+        this.payloadEncoder = new DiscordPayloadEncoder(username, avatarUrl);
+        this.rateLimiter = rateLimiter;
+        this.httpClient = httpClient;
     }
 
     /**
-     * Envoie un message via le webhook Discord.
+     * Envoie un message via le webhook Discord, après avoir attendu le budget du rate limit si nécessaire.
      *
      * @param content le contenu du message
-     * @throws RateLimitException si le rate limit est atteint
+     * @throws RateLimitException si Discord refuse tout de même le message (429) ; le budget est alors bloqué
+     *                            pour le délai indiqué et le message peut être renvoyé
      * @throws NotificationException si l'envoi échoue
      */
     public void send(String content) {
-        checkRateLimit();
-
-        if (content == null || content.isBlank()) {
-            throw new IllegalArgumentException("Content must not be null or blank");
-        }
-
-        HttpsURLConnection connection = null;
         try {
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("content", content);
-            payload.put("username", username);
-            payload.put("avatar_url", avatarUrl);
-            payload.put("tts", false);
-
-            URL url = URI.create(webhookUrl).toURL();
-            connection = (HttpsURLConnection) url.openConnection();
-            connection.addRequestProperty("Content-Type", "application/json; charset=UTF-8");
-            connection.addRequestProperty("User-Agent", "Krabot Webhook");
-            connection.setDoOutput(true);
-            connection.setRequestMethod("POST");
-
-            try (OutputStream stream = connection.getOutputStream()) {
-                stream.write(OBJECT_MAPPER.writeValueAsString(payload).getBytes(StandardCharsets.UTF_8));
-                stream.flush();
-            }
-
-            int responseCode = connection.getResponseCode();
-            handleRateLimitHeaders(connection);
-
-            if (responseCode != 200 && responseCode != 204) {
-                LOGGER.warn("Discord webhook returned status: {}", responseCode);
-            }
-
-            consumeResponse(connection, responseCode);
-
-        } catch (RateLimitException e) {
-            throw e;
-        } catch (Exception e) {
-            throw new NotificationException("Failed to send Discord notification", e);
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
-            }
+            acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NotificationException("Interrupted while sending Discord notification", e);
         }
+        post(content);
+    }
+
+    /**
+     * Attend qu'une requête soit disponible dans le budget du rate limit, puis la réserve pour le prochain
+     * {@link #post(String)}.
+     */
+    public void acquire() throws InterruptedException {
+        rateLimiter.acquire();
     }
 
-    private void checkRateLimit() {
-        if (resetAfter != null && resetAfter.isAfter(OffsetDateTime.now())) {
-            LOGGER.warn("Discord rate limit active until {}", resetAfter);
-            throw new RateLimitException("Rate limit active until " + resetAfter);
+    /**
+     * Envoie un message via le webhook Discord, sans attendre le budget du rate limit : l'appelant l'a réservé
+     * par {@link #acquire()}.
+     *
+     * @param content le contenu du message
+     * @throws RateLimitException si Discord refuse le message (429) ; il n'a alors pas été publié
+     * @throws NotificationException si l'envoi échoue
+     */
+    public void post(String content) {
+        HttpRequest request = request(content);
+        try {
+            handle(httpClient.send(request, HttpResponse.BodyHandlers.ofString()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NotificationException("Interrupted while sending Discord notification", e);
+        } catch (IOException e) {
+            throw new NotificationException("Failed to send Discord notification", e);
         }
-        resetAfter = null;
     }
 
-    private void handleRateLimitHeaders(HttpsURLConnection connection) {
-        Optional.ofNullable(connection.getHeaderField(X_RATE_LIMIT_REMAINING))
-                .map(Long::valueOf)
-                .ifPresent(remaining -> {
-                    if (remaining <= 0) {
-                        String resetHeader = connection.getHeaderField(X_RATE_LIMIT_RESET);
-                        if (resetHeader != null) {
-                            resetAfter = OffsetDateTime.ofInstant(
-                                    Instant.ofEpochSecond(Long.parseLong(resetHeader)),
-                                    ZoneId.systemDefault()
-                            );
-                            LOGGER.warn("Rate limit will be reset after: {}", resetAfter);
-                        }
+    /**
+     * Envoie un message sans bloquer l'appelant, y compris pendant l'attente du budget du rate limit.
+     *
+     * @param content le contenu du message
+     * @return complété une fois le message accepté ; en échec avec les mêmes exceptions que {@link #send(String)}
+     */
+    public CompletableFuture<Void> sendAsync(String content) {
+        HttpRequest request = request(content);
+        return rateLimiter.acquireAsync()
+                .thenCompose(ignored -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()))
+                .handle((response, error) -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                        throw cause instanceof RuntimeException runtime
+                                ? runtime
+                                : new NotificationException("Failed to send Discord notification", cause);
                     }
+                    handle(response);
+                    return null;
                 });
     }
 
-    private void consumeResponse(HttpsURLConnection connection, int responseCode) throws Exception {
-        try (InputStream stream = (responseCode >= 200 && responseCode < 300)
-                ? connection.getInputStream()
-                : connection.getErrorStream()) {
-            if (stream != null) {
-                stream.transferTo(OutputStream.nullOutputStream());
-            }
+    /**
+     * Sonde le webhook par une requête HEAD, sur la connexion partagée.
+     *
+     * @return le code HTTP de la réponse
+     */
+    public int probe() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(webhookUri)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .timeout(PROBE_TIMEOUT)
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private HttpRequest request(String content) {
+        if (content == null || content.isBlank()) {
+            throw new IllegalArgumentException("Content must not be null or blank");
+        }
+        return HttpRequest.newBuilder(webhookUri)
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json; charset=UTF-8")
+                .header("User-Agent", "Krabot Webhook")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(payloadEncoder.encode(content)))
+                .build();
+    }
+
+    private void handle(HttpResponse<String> response) {
+        rateLimiter.update(response.headers()::firstValue);
+
+        int responseCode = response.statusCode();
+        if (responseCode == TOO_MANY_REQUESTS) {
+            Duration retryAfter = rateLimiter.onTooManyRequests(response.headers()::firstValue, response.body());
+            throw new RateLimitException("Discord rate limit, retry after " + retryAfter);
+        }
+        if (responseCode != 200 && responseCode != 204) {
+            LOGGER.warn("Discord webhook returned status: {}", responseCode);
         }
     }
 }
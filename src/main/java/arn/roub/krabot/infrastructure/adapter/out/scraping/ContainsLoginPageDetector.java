@@ -0,0 +1,16 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+/**
+ * Détection historique : recherche de trois libellés du formulaire de connexion dans tout le corps.
+ * Trois parcours complets par page, et un faux positif dès qu'un titre de kramail contient l'un des libellés.
+ */
+public class ContainsLoginPageDetector implements LoginPageDetector {
+
+    @Override
+    public boolean isLoginPage(CharSequence page) {
+        String html = page.toString();
+        return html.contains("Identifiant")
+                || html.contains("S'identifier")
+                || html.contains("c[1]");
+    }
+}
@@ -0,0 +1,89 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import arn.roub.krabot.domain.model.Characteristic;
+import arn.roub.krabot.domain.port.out.CharacteristicsPort;
+import arn.roub.krabot.infrastructure.config.KralandConfig;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Relevé des caractéristiques du personnage sur les pages plateau téléchargées par le bot, enregistrées
+ * directement dans le {@link CharacteristicsPort} sous la clé API configurée, sans passer par le userscript.
+ * <p>
+ * Le parsing et l'enregistrement tournent sur un thread dédié : le thread de scraping qui a téléchargé la
+ * page ne fait que la confier, il n'attend ni le DOM ni l'extraction. La page est reparsée sur ce thread
+ * plutôt que partagée, un {@link org.jsoup.nodes.Document} n'étant pas fait pour être lu par deux threads.
+ */
+@ApplicationScoped
+public class KralandCharacteristicsHarvester {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KralandCharacteristicsHarvester.class);
+
+    private final KralandCharacteristicsParser parser = new KralandCharacteristicsParser();
+    private final CharacteristicsPort characteristicsPort;
+    private final String namespace;
+    private final Executor executor;
+
+    public KralandCharacteristicsHarvester(KralandConfig kralandConfig, CharacteristicsPort characteristicsPort) {
+        this(kralandConfig.characteristics().namespace().map(String::trim).filter(s -> !s.isEmpty()).orElse(null),
+                characteristicsPort,
+                Executors.newSingleThreadExecutor(Thread.ofVirtual().name("kraland-characteristics").factory()));
+    }
+
+    KralandCharacteristicsHarvester(String namespace, CharacteristicsPort characteristicsPort, Executor executor) {
+        this.namespace = namespace;
+        this.characteristicsPort = characteristicsPort;
+        this.executor = executor;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * @return true si une clé API est configurée pour enregistrer les caractéristiques
+     */
+    public boolean isEnabled() {
+        return namespace != null;
+    }
+
+    /**
+     * Confie une page plateau au relevé ; rend la main immédiatement.
+     */
+    public void harvest(String plateauHtml) {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            executor.execute(() -> extractAndSave(plateauHtml));
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Characteristics harvester is shut down, plateau page ignored");
+        }
+    }
+
+    private void extractAndSave(String plateauHtml) {
+        try {
+            Optional<Characteristic> characteristic = parser.parse(plateauHtml);
+            if (characteristic.isEmpty()) {
+                LOGGER.debug("No characteristics found in plateau page");
+                return;
+            }
+            characteristicsPort.save(namespace, characteristic.get());
+            LOGGER.debug("Characteristics of player {} refreshed (PP: {})",
+                    characteristic.get().playerId(), characteristic.get().pp());
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to extract characteristics from plateau page: {}", e.getMessage());
+        }
+    }
+}
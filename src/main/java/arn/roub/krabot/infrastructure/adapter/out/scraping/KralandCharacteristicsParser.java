@@ -1,60 +1,178 @@
 package arn.roub.krabot.infrastructure.adapter.out.scraping;
 
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
+import arn.roub.krabot.domain.model.Characteristic;
 import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.NodeFilter;
 
+import java.util.Locale;
 import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+/**
+ * Extraction des caractéristiques du personnage (nom, identifiant joueur, PP) depuis la page plateau,
+ * selon les mêmes règles que le userscript {@code krabot-characteristics.user.js} :
+ * <ul>
+ *     <li>nom : texte de {@code #col-left .list-group .list-group-item.active}, sans la croix de fermeture ;</li>
+ *     <li>identifiant : dernier nombre du lien {@code .dashboard a[href*="communaute/membres"]} ;</li>
+ *     <li>PP : infobulle "Puissance Politique" d'un lien ({@code data-original-title} ou {@code title}), à défaut
+ *     la jauge compacte mobile libellée PP.</li>
+ * </ul>
+ * Les trois valeurs sont relevées en un seul parcours du DOM, qui s'arrête dès qu'elles sont toutes connues ;
+ * chaque élément n'est examiné qu'une fois et les expressions régulières sont compilées une seule fois.
+ */
 public class KralandCharacteristicsParser {
 
+    private static final Pattern PP_TOOLTIP = Pattern.compile(
+            "Puissance\\s+Politique[\\s:\\u00A0\\-\\u2011\\u2013\\u2014]*([0-9]{1,5})", Pattern.CASE_INSENSITIVE);
+    private static final String PP_TOOLTIP_MARKER = "Puissance Politique";
+    private static final String MEMBER_LINK = "communaute/membres";
+
+    public Optional<Characteristic> parse(String html) {
+        return parse(ParsedKralandPage.parse(html));
+    }
+
+    /**
+     * @return les caractéristiques du personnage, ou vide si le nom, l'identifiant ou les PP sont introuvables
+     */
+    public Optional<Characteristic> parse(ParsedKralandPage page) {
+        Scan scan = new Scan();
+        page.document().filter(scan);
+
+        Integer pp = scan.tooltipPp != null ? scan.tooltipPp : scan.gaugePp;
+        if (scan.name == null || scan.name.isEmpty() || scan.playerId == null || pp == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new Characteristic(scan.playerId, scan.name, pp));
+    }
+
     /**
-     * Extracts the character name from the HTML.
+     * Parcours en profondeur : les sélecteurs descendants sont suivis par des compteurs d'ancêtres
+     * incrémentés à l'entrée d'un élément et décrémentés à sa sortie.
      */
-    public Optional<String> extractName(String html) {
-        Document doc = Jsoup.parse(html);
-        Element container = doc.selectFirst("div.col-md-3.sidebar, #content, .container");
-        if (container == null) return Optional.empty();
-        String own = container.ownText();
-        for (String line : own.split("\\n")) {
-            String s = line.trim();
-            if (!s.isEmpty() && s.matches("[A-Za-zÀ-ÖØ-öø-ÿ].*\\s.*") && s.length() < 100) {
-                return Optional.of(s);
+    private static final class Scan implements NodeFilter {
+
+        private int colLeftDepth;
+        private int colLeftListGroupDepth;
+        private int dashboardDepth;
+        private boolean gaugeLabelSeen;
+
+        private String name;
+        private String playerId;
+        private Integer tooltipPp;
+        private Integer gaugePp;
+
+        @Override
+        public FilterResult head(Node node, int depth) {
+            if (!(node instanceof Element element)) {
+                return FilterResult.CONTINUE;
+            }
+            if ("col-left".equals(element.id())) {
+                colLeftDepth++;
+            }
+            if (colLeftDepth > 0 && element.hasClass("list-group")) {
+                colLeftListGroupDepth++;
+            }
+            if (element.hasClass("dashboard")) {
+                dashboardDepth++;
+            }
+
+            if (name == null && colLeftListGroupDepth > 0
+                    && element.hasClass("list-group-item") && element.hasClass("active")) {
+                name = element.text().replace("×", "").trim();
+            }
+            if (element.nameIs("a")) {
+                visitLink(element);
+            }
+            if (!gaugeLabelSeen && tooltipPp == null && element.hasClass("mobile-gauge-compact-label")) {
+                visitGaugeLabel(element);
+            }
+
+            return name != null && playerId != null && tooltipPp != null ? FilterResult.STOP : FilterResult.CONTINUE;
+        }
+
+        @Override
+        public FilterResult tail(Node node, int depth) {
+            if (node instanceof Element element) {
+                if (element.hasClass("dashboard")) {
+                    dashboardDepth--;
+                }
+                if (colLeftDepth > 0 && element.hasClass("list-group")) {
+                    colLeftListGroupDepth--;
+                }
+                if ("col-left".equals(element.id())) {
+                    colLeftDepth--;
+                }
+            }
+            return FilterResult.CONTINUE;
+        }
+
+        private void visitLink(Element link) {
+            if (playerId == null && dashboardDepth > 0) {
+                String href = link.attr("href");
+                if (href.contains(MEMBER_LINK)) {
+                    playerId = lastNumber(href);
+                }
+            }
+            if (tooltipPp == null) {
+                String tooltip = link.attr("data-original-title");
+                if (!tooltip.contains(PP_TOOLTIP_MARKER)) {
+                    tooltip = link.attr("title");
+                }
+                if (tooltip.contains(PP_TOOLTIP_MARKER)) {
+                    Matcher matcher = PP_TOOLTIP.matcher(tooltip);
+                    if (matcher.find()) {
+                        tooltipPp = Integer.parseInt(matcher.group(1));
+                    }
+                }
             }
         }
-        for (Element child : container.children()) {
-            String s = child.ownText().trim();
-            if (!s.isEmpty() && s.matches("[A-Za-zÀ-ÖØ-öø-ÿ].*\\s.*") && s.length() < 100) {
-                return Optional.of(s);
+
+        /**
+         * Seul le premier libellé PP est pris en compte ; sa valeur est dans le deuxième élément suivant.
+         */
+        private void visitGaugeLabel(Element label) {
+            String text = label.text().trim().toUpperCase(Locale.ROOT);
+            if (!text.startsWith("PP") && !text.contains("PUISSANCE")) {
+                return;
+            }
+            gaugeLabelSeen = true;
+            Element bar = label.nextElementSibling();
+            Element value = bar != null ? bar.nextElementSibling() : null;
+            if (value != null && value.hasClass("mobile-gauge-compact-value")) {
+                String digits = digitsOf(value.text());
+                if (!digits.isEmpty() && digits.length() <= 9) {
+                    gaugePp = Integer.parseInt(digits);
+                }
             }
         }
-        return Optional.empty();
     }
 
-    public Optional<String> extractPlayerId(String html) {
-        Document doc = Jsoup.parse(html);
-        Elements anchors = doc.select("a[href*=\"/communaute/membres/\"]");
-        for (Element a : anchors) {
-            String href = a.attr("href");
-            if (href.isEmpty() || href.contains("/edit")) continue;
-            href.replaceAll(".*/", "");
-            java.util.regex.Matcher matcher = java.util.regex.Pattern.compile("-(\\\\d+)$").matcher(href);
-            if (matcher.find()) return Optional.of(matcher.group(1));
-        }
-        return Optional.empty();
+    private static String lastNumber(String value) {
+        int end = value.length();
+        while (end > 0 && !isAsciiDigit(value.charAt(end - 1))) {
+            end--;
+        }
+        int start = end;
+        while (start > 0 && isAsciiDigit(value.charAt(start - 1))) {
+            start--;
+        }
+        return start < end ? value.substring(start, end) : null;
     }
 
-    public Optional<Integer> extractPP(String html) {
-        Document doc = Jsoup.parse(html);
-        Elements elems = doc.getAllElements();
-        for (Element e : elems) {
-            String text = e.text();
-            if (text.matches(".*\\bPP\\b.*")) {
-                java.util.regex.Matcher m = java.util.regex.Pattern.compile("PP\\\\D*(\\\\d+)").matcher(text);
-                if (m.find()) return Optional.of(Integer.parseInt(m.group(1)));
+    private static String digitsOf(String value) {
+        StringBuilder digits = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (isAsciiDigit(c)) {
+                digits.append(c);
             }
         }
-        return Optional.empty();
+        return digits.toString();
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
     }
 }
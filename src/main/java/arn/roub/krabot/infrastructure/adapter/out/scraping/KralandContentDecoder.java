@@ -0,0 +1,363 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Décodage gzip/deflate des réponses de kraland.org, que {@link HttpClient} ne sait pas faire seul.
+ * <p>
+ * {@link #decoding(HttpResponse.BodyHandler)} intercale un {@link HttpResponse.BodySubscriber} qui décompresse
+ * chaque morceau reçu du réseau et le transmet aussitôt au subscriber d'origine (chaîne, octets ou flux lu par
+ * le parser). Le corps compressé n'est jamais accumulé : seuls l'état de l'{@link Inflater} et les morceaux
+ * décompressés en transit sont en mémoire. Le subscriber d'origine voit une réponse sans
+ * {@code Content-Encoding} ni {@code Content-Length}.
+ * <p>
+ * Les octets reçus et les octets décodés sont comptés pour mesurer le gain de la compression.
+ */
+@ApplicationScoped
+public class KralandContentDecoder {
+
+    /**
+     * Valeur de l'en-tête {@code Accept-Encoding} des requêtes vers Kraland.
+     */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private final LongAdder wireBytes = new LongAdder();
+    private final LongAdder decodedBytes = new LongAdder();
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder compressedResponses = new LongAdder();
+
+    private enum Encoding { IDENTITY, GZIP, DEFLATE }
+
+    /**
+     * Enveloppe un {@link HttpResponse.BodyHandler} pour qu'il reçoive le corps décompressé.
+     */
+    public <T> HttpResponse.BodyHandler<T> decoding(HttpResponse.BodyHandler<T> bodyHandler) {
+        return responseInfo -> {
+            Encoding encoding = encodingOf(responseInfo.headers());
+            responses.increment();
+            if (encoding == Encoding.IDENTITY) {
+                return new DecodingSubscriber<>(encoding, bodyHandler.apply(responseInfo));
+            }
+            compressedResponses.increment();
+            return new DecodingSubscriber<>(encoding, bodyHandler.apply(new DecodedResponseInfo(responseInfo)));
+        };
+    }
+
+    /**
+     * @return les octets de corps reçus du réseau
+     */
+    public long wireBytes() {
+        return wireBytes.sum();
+    }
+
+    /**
+     * @return les octets de corps après décompression
+     */
+    public long decodedBytes() {
+        return decodedBytes.sum();
+    }
+
+    /**
+     * @return le nombre de réponses reçues
+     */
+    public long responses() {
+        return responses.sum();
+    }
+
+    /**
+     * @return le nombre de réponses reçues compressées
+     */
+    public long compressedResponses() {
+        return compressedResponses.sum();
+    }
+
+    private static Encoding encodingOf(HttpHeaders headers) {
+        String value = headers.firstValue("Content-Encoding").orElse("").trim().toLowerCase(Locale.ROOT);
+        return switch (value) {
+            case "gzip", "x-gzip" -> Encoding.GZIP;
+            case "deflate" -> Encoding.DEFLATE;
+            default -> Encoding.IDENTITY;
+        };
+    }
+
+    /**
+     * Longueur de l'en-tête gzip (RFC 1952) contenu dans {@code bytes}, ou -1 s'il n'est pas encore complet.
+     */
+    static int gzipHeaderLength(byte[] bytes, int length) throws ZipException {
+        if (length < 10) {
+            return -1;
+        }
+        if ((bytes[0] & 0xff) != 0x1f || (bytes[1] & 0xff) != 0x8b || bytes[2] != 8) {
+            throw new ZipException("Not in gzip format");
+        }
+        int flags = bytes[3] & 0xff;
+        int position = 10;
+        if ((flags & 0x04) != 0) {
+            if (length < position + 2) {
+                return -1;
+            }
+            position += 2 + ((bytes[position] & 0xff) | (bytes[position + 1] & 0xff) << 8);
+        }
+        for (int flag : new int[]{0x08, 0x10}) {
+            if ((flags & flag) != 0) {
+                while (position < length && bytes[position] != 0) {
+                    position++;
+                }
+                if (position >= length) {
+                    return -1;
+                }
+                position++;
+            }
+        }
+        if ((flags & 0x02) != 0) {
+            position += 2;
+        }
+        return position <= length ? position : -1;
+    }
+
+    /**
+     * Réponse vue par le subscriber d'origine : le corps qu'il reçoit n'est plus compressé.
+     */
+    private record DecodedResponseInfo(HttpResponse.ResponseInfo delegate) implements HttpResponse.ResponseInfo {
+
+        @Override
+        public int statusCode() {
+            return delegate.statusCode();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return HttpHeaders.of(delegate.headers().map(), (name, value) ->
+                    !"Content-Encoding".equalsIgnoreCase(name) && !"Content-Length".equalsIgnoreCase(name));
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return delegate.version();
+        }
+    }
+
+    /**
+     * Décompresse au fil de l'eau. Chaque lot reçu du réseau donne au plus un lot transmis en aval, ce qui
+     * permet de réutiliser telle quelle la {@link Flow.Subscription} amont ; un lot qui ne produit rien
+     * (en-tête gzip, début de bloc deflate) est compensé par une nouvelle demande amont.
+     * Les signaux amont étant séquentiels, l'état n'a pas besoin de synchronisation.
+     */
+    private final class DecodingSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+
+        private enum State { HEADER, BODY, TRAILER, DONE }
+
+        private final Encoding encoding;
+        private final HttpResponse.BodySubscriber<T> downstream;
+        private final CRC32 crc = new CRC32();
+        private byte[] pending = new byte[16];
+        private int pendingLength;
+        private State state = State.HEADER;
+        private Inflater inflater;
+        /** Tampon de décompression réutilisé d'un lot à l'autre ; seule la partie remplie est copiée en aval */
+        private byte[] scratch;
+        private long inflatedSize;
+        private Flow.Subscription subscription;
+        private boolean failed;
+
+        private DecodingSubscriber(Encoding encoding, HttpResponse.BodySubscriber<T> downstream) {
+            this.encoding = encoding;
+            this.downstream = downstream;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return downstream.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            downstream.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (failed) {
+                return;
+            }
+            for (ByteBuffer item : items) {
+                wireBytes.add(item.remaining());
+            }
+            if (encoding == Encoding.IDENTITY) {
+                for (ByteBuffer item : items) {
+                    decodedBytes.add(item.remaining());
+                }
+                downstream.onNext(items);
+                return;
+            }
+
+            List<ByteBuffer> decoded = new ArrayList<>();
+            try {
+                for (ByteBuffer item : items) {
+                    decode(item, decoded);
+                }
+            } catch (IOException | DataFormatException e) {
+                failed = true;
+                subscription.cancel();
+                release();
+                downstream.onError(e instanceof IOException io ? io : new ZipException(e.getMessage()));
+                return;
+            }
+
+            if (decoded.isEmpty()) {
+                subscription.request(1);
+            } else {
+                downstream.onNext(decoded);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (failed) {
+                return;
+            }
+            release();
+            downstream.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (failed) {
+                return;
+            }
+            release();
+            boolean empty = state == State.HEADER && pendingLength == 0;
+            if (encoding != Encoding.IDENTITY && state != State.DONE && !empty) {
+                downstream.onError(new EOFException("Truncated " + encoding.name().toLowerCase(Locale.ROOT) + " body"));
+                return;
+            }
+            downstream.onComplete();
+        }
+
+        private void decode(ByteBuffer input, List<ByteBuffer> output) throws IOException, DataFormatException {
+            while (input.hasRemaining()) {
+                switch (state) {
+                    case HEADER -> readHeader(input, output);
+                    case BODY -> inflate(input, output);
+                    case TRAILER -> readTrailer(input);
+                    // Données après la fin du flux (membres gzip concaténés, bourrage) : ignorées
+                    case DONE -> input.position(input.limit());
+                }
+            }
+        }
+
+        private void readHeader(ByteBuffer input, List<ByteBuffer> output) throws IOException, DataFormatException {
+            append(input.get());
+            if (encoding == Encoding.GZIP) {
+                if (gzipHeaderLength(pending, pendingLength) < 0) {
+                    return;
+                }
+                inflater = new Inflater(true);
+                pendingLength = 0;
+                state = State.BODY;
+                return;
+            }
+            if (pendingLength < 2) {
+                return;
+            }
+            // "deflate" désigne normalement un flux zlib, mais certains serveurs envoient du deflate brut
+            int header = (pending[0] & 0xff) << 8 | (pending[1] & 0xff);
+            boolean zlib = (pending[0] & 0x0f) == 8 && header % 31 == 0;
+            inflater = new Inflater(!zlib);
+            state = State.BODY;
+            ByteBuffer prefix = ByteBuffer.wrap(pending, 0, pendingLength);
+            pendingLength = 0;
+            inflate(prefix, output);
+        }
+
+        private void inflate(ByteBuffer input, List<ByteBuffer> output) throws IOException, DataFormatException {
+            // L'Inflater avance la position de input au fur et à mesure de sa consommation
+            inflater.setInput(input);
+            if (scratch == null) {
+                scratch = new byte[CHUNK_SIZE];
+            }
+            while (true) {
+                int length = inflater.inflate(scratch);
+                if (length > 0) {
+                    // L'aval peut garder les tampons reçus jusqu'à la fin du corps (ofByteArray, ofInputStream) :
+                    // le tampon de travail ne peut pas lui être transmis
+                    output.add(ByteBuffer.wrap(Arrays.copyOf(scratch, length)));
+                    decodedBytes.add(length);
+                    inflatedSize += length;
+                    crc.update(scratch, 0, length);
+                }
+                if (inflater.finished()) {
+                    state = encoding == Encoding.GZIP ? State.TRAILER : State.DONE;
+                    return;
+                }
+                if (length == 0) {
+                    if (inflater.needsDictionary()) {
+                        throw new ZipException("Preset dictionary not supported");
+                    }
+                    if (inflater.needsInput()) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void readTrailer(ByteBuffer input) throws ZipException {
+            append(input.get());
+            if (pendingLength < 8) {
+                return;
+            }
+            long expectedCrc = littleEndianInt(0);
+            long expectedSize = littleEndianInt(4);
+            if (expectedCrc != crc.getValue()) {
+                throw new ZipException("Corrupt gzip trailer (CRC mismatch)");
+            }
+            if (expectedSize != (inflatedSize & 0xffffffffL)) {
+                throw new ZipException("Corrupt gzip trailer (size mismatch)");
+            }
+            pendingLength = 0;
+            state = State.DONE;
+        }
+
+        private void append(byte value) {
+            if (pendingLength == pending.length) {
+                pending = Arrays.copyOf(pending, pending.length * 2);
+            }
+            pending[pendingLength++] = value;
+        }
+
+        private long littleEndianInt(int offset) {
+            return (pending[offset] & 0xffL)
+                    | (pending[offset + 1] & 0xffL) << 8
+                    | (pending[offset + 2] & 0xffL) << 16
+                    | (pending[offset + 3] & 0xffL) << 24;
+        }
+
+        private void release() {
+            if (inflater != null) {
+                inflater.end();
+                inflater = null;
+            }
+        }
+    }
+}
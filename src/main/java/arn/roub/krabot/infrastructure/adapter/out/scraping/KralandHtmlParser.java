@@ -2,10 +2,11 @@ package arn.roub.krabot.infrastructure.adapter.out.scraping;
 
 import arn.roub.krabot.domain.model.Kramail;
 import arn.roub.krabot.domain.model.KramailId;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -13,18 +14,39 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * Parser HTML pour extraire les données de Kraland.
+ * Les extractions travaillent sur une {@link ParsedKralandPage} afin qu'une réponse ne soit parsée qu'une fois ;
+ * les variantes prenant une {@code String} parsent la page à chaque appel.
+ * <p>
+ * Les sélecteurs CSS sont compilés une seule fois en {@link Evaluator} ; les cellules d'une ligne de kramail sont
+ * parcourues à la main, sans sélecteur, pour qu'une ligne n'alloue rien d'autre que son {@link Kramail}.
  */
 public class KralandHtmlParser {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(KralandHtmlParser.class);
 
+    private static final String SLEEP_BUTTON_CLASS = ".alert11";
+    private static final String KRALAND_BASE_URL = "http://www.kraland.org/";
+
+    private static final Evaluator BELL_ICON = QueryParser.parse("i.fa.fa-bell");
+    private static final Evaluator DANGER_BADGE = QueryParser.parse("span.badge.badge-danger");
+    private static final Evaluator SIDEBAR_KRAMAIL_LINK = QueryParser.parse("div[class*=list-group] a[href*=kramail/]");
+    private static final Evaluator BADGE = QueryParser.parse("span.badge");
+    private static final Evaluator H1 = QueryParser.parse("h1");
+    private static final Evaluator KRAMAIL_ROW = QueryParser.parse("table tbody tr");
+    private static final Evaluator KRAMAIL_TABLE_BODY = QueryParser.parse("table tbody");
+    private static final Evaluator ACTIVE_PAGE = QueryParser.parse("ul.pagination li.active");
+    private static final Evaluator SLEEP_LINK = QueryParser.parse("a:contains(Dormir)");
+    private static final Evaluator ORDER_FORM = QueryParser.parse("form[name=post_msg]");
+    private static final Evaluator HIDDEN_INPUT = QueryParser.parse("input[type=hidden]");
+    private static final Evaluator AJAX_TARGET = QueryParser.parse("[id^=ajax-]");
+
     /**
      * Capture le param et le token de l'appel updateAjax('ajax-order', param, token) déclenché
      * par le clic sur le bouton "Dormir" (classe alert11). Le "\.alert11\"" ancre la sélection
@@ -34,18 +56,41 @@ public class KralandHtmlParser {
             "\\.alert11\"[\\s\\S]*?updateAjax\\(\\s*'ajax-order'\\s*,\\s*'([^']+)'\\s*,\\s*'([^']+)'\\s*\\)"
     );
 
+    /**
+     * Capture la cible, le param et le token de chaque appel updateAjax(cible, param, token).
+     */
+    private static final Pattern AJAX_TRIGGER_PATTERN = Pattern.compile(
+            "updateAjax\\(\\s*'([^']+)'\\s*,\\s*'([^']+)'\\s*,\\s*'([^']+)'\\s*\\)"
+    );
+
+    private final String baseUrl;
+
+    public KralandHtmlParser() {
+        this(KRALAND_BASE_URL);
+    }
+
+    /**
+     * @param baseUrl URL de base, terminée par {@code /}, qui préfixe les liens relatifs des pages
+     */
+    public KralandHtmlParser(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
     /**
      * Vérifie si la page contient une notification (report).
      * Une notification est présente si le badge contient le caractère "!".
      */
     public boolean hasNotification(String html) {
-        Document doc = Jsoup.parse(html);
-        Elements bellIcons = doc.select("i.fa.fa-bell");
+        return hasNotification(ParsedKralandPage.parse(html));
+    }
+
+    public boolean hasNotification(ParsedKralandPage page) {
+        Elements bellIcons = page.document().select(BELL_ICON);
 
         for (Element bellIcon : bellIcons) {
             Element parent = bellIcon.parent();
             if (parent != null) {
-                Elements badges = parent.select("span.badge.badge-danger");
+                Elements badges = parent.select(DANGER_BADGE);
                 for (Element badge : badges) {
                     String badgeText = badge.text().trim();
                     LOGGER.debug("Found notification badge with text: '{}'", badgeText);
@@ -62,22 +107,17 @@ public class KralandHtmlParser {
     }
 
     /**
-     * Vérifie si la page nécessite une authentification.
+     * Extrait les informations de comptes depuis la sidebar, avec le compteur de kramails non lus de chaque
+     * personnage : un badge vide vaut 0, un badge absent ou illisible donne {@link AccountInfo#UNKNOWN_UNREAD}.
      */
-    public boolean requiresAuthentication(String html) {
-        return html.contains("Identifiant")
-                || html.contains("S'identifier")
-                || html.contains("c[1]");
+    public List<AccountInfo> extractAccounts(String html) {
+        return extractAccounts(ParsedKralandPage.parse(html));
     }
 
-    /**
-     * Extrait les informations de comptes depuis la sidebar.
-     */
-    public List<AccountInfo> extractAccounts(String html) {
-        Document doc = Jsoup.parse(html);
+    public List<AccountInfo> extractAccounts(ParsedKralandPage page) {
         List<AccountInfo> accounts = new ArrayList<>();
 
-        Elements accountLinks = doc.select("div[class*=list-group]").select("a[href*=kramail/]");
+        Elements accountLinks = page.document().select(SIDEBAR_KRAMAIL_LINK);
 
         for (Element link : accountLinks) {
             String href = link.attr("href");
@@ -86,64 +126,262 @@ public class KralandHtmlParser {
             }
 
             String accountName = link.ownText().trim();
-            String fullUrl = href.startsWith("http") ? href : "http://www.kraland.org/" + href;
+            String fullUrl = href.startsWith("http") ? href : baseUrl + href;
+            int unreadCount = parseUnreadBadge(link.selectFirst(BADGE));
 
-            accounts.add(new AccountInfo(accountName, fullUrl));
-            LOGGER.debug("Found account: {} at {}", accountName, fullUrl);
+            accounts.add(new AccountInfo(accountName, fullUrl, unreadCount));
+            LOGGER.debug("Found account: {} at {} ({} unread)", accountName, fullUrl, unreadCount);
         }
 
         return accounts;
     }
 
+    private int parseUnreadBadge(Element badge) {
+        if (badge == null) {
+            return AccountInfo.UNKNOWN_UNREAD;
+        }
+        String text = badge.text().trim();
+        if (text.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            return AccountInfo.UNKNOWN_UNREAD;
+        }
+    }
+
     /**
      * Parse les kramails depuis une page de compte.
      */
     public List<Kramail> parseKramails(String html) {
-        Document doc = Jsoup.parse(html);
+        return parseKramails(ParsedKralandPage.parse(html));
+    }
+
+    public List<Kramail> parseKramails(ParsedKralandPage page) {
+        Document doc = page.document();
         List<Kramail> kramails = new ArrayList<>();
 
-        Elements h1Elements = doc.select("h1");
-        if (h1Elements.isEmpty()) {
+        Element h1 = doc.selectFirst(H1);
+        if (h1 == null) {
             LOGGER.warn("No h1 found, cannot determine recipient");
             return kramails;
         }
 
-        String recipient = Objects.requireNonNull(h1Elements.first()).ownText().trim();
+        String recipient = h1.ownText().trim();
+
+        for (Element row : doc.select(KRAMAIL_ROW)) {
+            Kramail kramail = kramailOf(row, recipient);
+            if (kramail != null) {
+                kramails.add(kramail);
+            }
+        }
+
+        return kramails;
+    }
 
-        Elements rows = doc.select("table tbody tr");
+    /**
+     * Parse une ligne du tableau des kramails.
+     *
+     * @return le kramail si la ligne correspond à un kramail non lu, vide sinon
+     */
+    Optional<Kramail> parseKramailRow(Element row, String recipient) {
+        return Optional.ofNullable(kramailOf(row, recipient));
+    }
 
-        for (Element row : rows) {
-            Elements cells = row.select("td");
-            if (cells.size() < 4) {
+    /**
+     * Lecture incrémentale du tableau des kramails, dans l'ordre de la page : les non lus étant en tête, la lecture
+     * s'arrête à la première ligne lue ou au premier kramail déjà connu, sans examiner le reste du tableau.
+     * Seules les lignes du premier tableau de la page sont lues.
+     *
+     * @param known les kramails déjà connus, dont la suite du tableau n'a pas besoin d'être relue
+     */
+    public KramailScan scanKramails(ParsedKralandPage page, Predicate<KramailId> known) {
+        Document doc = page.document();
+        List<Kramail> kramails = new ArrayList<>();
+
+        Element h1 = doc.selectFirst(H1);
+        if (h1 == null) {
+            LOGGER.warn("No h1 found, cannot determine recipient");
+            return new KramailScan(kramails, null, null);
+        }
+        String recipient = h1.ownText().trim();
+
+        Element tableBody = doc.selectFirst(KRAMAIL_TABLE_BODY);
+        Element row = tableBody != null ? tableBody.firstElementChild() : null;
+        for (; row != null; row = row.nextElementSibling()) {
+            Kramail kramail = row.nameIs("tr") ? kramailOf(row, recipient) : null;
+            if (kramail == null) {
+                if (row.nameIs("tr") && isReadRow(row)) {
+                    return new KramailScan(kramails, null, null);
+                }
                 continue;
             }
+            if (known.test(kramail.id())) {
+                return new KramailScan(kramails, kramail.id(), null);
+            }
+            kramails.add(kramail);
+        }
 
-            // Only process UNREAD kramails (those with <strong>)
-            Elements strongLink = cells.get(1).select("strong a");
-            if (strongLink.isEmpty()) {
-                continue;
+        // Toutes les lignes de la page sont non lues : la suite peut se trouver sur la page suivante
+        return new KramailScan(kramails, null, kramails.isEmpty() ? null : nextPageUrl(doc));
+    }
+
+    /**
+     * Lien de la page suivante dans une pagination Bootstrap ({@code ul.pagination}), ou null s'il n'y en a pas.
+     */
+    private String nextPageUrl(Document doc) {
+        return nextPageUrlAfter(doc.selectFirst(ACTIVE_PAGE));
+    }
+
+    /**
+     * Lien de la page suivante d'une pagination Bootstrap déjà isolée, ou null s'il n'y en a pas.
+     *
+     * @param pagination l'élément {@code ul.pagination}
+     */
+    String nextPageUrl(Element pagination) {
+        for (Element item = pagination.firstElementChild(); item != null; item = item.nextElementSibling()) {
+            if (item.nameIs("li") && item.hasClass("active")) {
+                return nextPageUrlAfter(item);
             }
+        }
+        return null;
+    }
 
-            String id = cells.get(0).select("input[type=checkbox]").attr("value");
-            String title = cells.get(1).select("span.invisible").text();
-            String originator = cells.get(2).select("a").text();
+    private String nextPageUrlAfter(Element activePage) {
+        Element nextPage = activePage != null ? activePage.nextElementSibling() : null;
+        Element link = nextPage != null ? firstDescendant(nextPage, "a") : null;
+        if (link == null || link.attr("href").isEmpty() || link.attr("href").startsWith("#")) {
+            return null;
+        }
+        String href = link.attr("href");
+        return href.startsWith("http") ? href : baseUrl + href;
+    }
 
-            if (!id.isEmpty() && !title.isEmpty()) {
-                kramails.add(new Kramail(new KramailId(id), title, originator, recipient));
-                LOGGER.debug("Found unread kramail: id={}, title={}, from={}, to={}",
-                        id, title, originator, recipient);
+    /**
+     * Équivalent de {@code row.select("td")}, {@code cells.get(1).select("strong a")},
+     * {@code cells.get(0).select("input[type=checkbox]").attr("value")}, {@code cells.get(1).select("span.invisible").text()}
+     * et {@code cells.get(2).select("a").text()}, en parcourant directement les descendants de la ligne.
+     */
+    private Kramail kramailOf(Element row, String recipient) {
+        Element checkboxCell = null;
+        Element subjectCell = null;
+        Element originatorCell = null;
+        int cellCount = 0;
+        for (Element element = nextElement(row, row); element != null && cellCount < 4; element = nextElement(element, row)) {
+            if (element.nameIs("td")) {
+                switch (cellCount++) {
+                    case 0 -> checkboxCell = element;
+                    case 1 -> subjectCell = element;
+                    case 2 -> originatorCell = element;
+                    default -> { }
+                }
             }
         }
+        if (cellCount < 4) {
+            return null;
+        }
 
-        return kramails;
+        // Only process UNREAD kramails (those with <strong>)
+        if (!hasStrongLink(subjectCell)) {
+            return null;
+        }
+
+        String id = checkboxValue(checkboxCell);
+        String title = joinedText(subjectCell, "span", "invisible");
+        String originator = joinedText(originatorCell, "a", null);
+
+        if (id.isEmpty() || title.isEmpty()) {
+            return null;
+        }
+
+        LOGGER.debug("Found unread kramail: id={}, title={}, from={}, to={}", id, title, originator, recipient);
+        return new Kramail(new KramailId(id), title, originator, recipient);
+    }
+
+    /**
+     * Ligne de kramail complète (au moins quatre cellules) dont le sujet n'est pas en gras : un kramail déjà lu.
+     */
+    static boolean isReadRow(Element row) {
+        Element subjectCell = null;
+        int cellCount = 0;
+        for (Element element = nextElement(row, row); element != null && cellCount < 4; element = nextElement(element, row)) {
+            if (element.nameIs("td") && cellCount++ == 1) {
+                subjectCell = element;
+            }
+        }
+        return cellCount >= 4 && !hasStrongLink(subjectCell);
+    }
+
+    private static boolean hasStrongLink(Element cell) {
+        for (Element element = nextElement(cell, cell); element != null; element = nextElement(element, cell)) {
+            if (element.nameIs("strong") && firstDescendant(element, "a") != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String checkboxValue(Element cell) {
+        for (Element element = nextElement(cell, cell); element != null; element = nextElement(element, cell)) {
+            if (element.nameIs("input") && "checkbox".equalsIgnoreCase(element.attr("type").trim())
+                    && element.hasAttr("value")) {
+                return element.attr("value");
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Texte des descendants correspondants, joints par une espace comme {@link Elements#text()}.
+     */
+    private static String joinedText(Element root, String tagName, String className) {
+        String text = "";
+        for (Element element = nextElement(root, root); element != null; element = nextElement(element, root)) {
+            if (element.nameIs(tagName) && (className == null || element.hasClass(className))) {
+                text = text.isEmpty() ? element.text() : text + " " + element.text();
+            }
+        }
+        return text;
+    }
+
+    private static Element firstDescendant(Element root, String tagName) {
+        for (Element element = nextElement(root, root); element != null; element = nextElement(element, root)) {
+            if (element.nameIs(tagName)) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Élément suivant de {@code current} dans un parcours en profondeur des descendants de {@code root}.
+     */
+    private static Element nextElement(Element current, Element root) {
+        Element child = current.firstElementChild();
+        if (child != null) {
+            return child;
+        }
+        Element element = current;
+        while (element != root) {
+            Element sibling = element.nextElementSibling();
+            if (sibling != null) {
+                return sibling;
+            }
+            element = element.parent();
+        }
+        return null;
     }
 
     /**
      * Vérifie si le bouton "Dormir" est disponible (a la classe btn-primary).
      */
     public boolean isSleepButtonAvailable(String html) {
-        Document doc = Jsoup.parse(html);
-        Elements sleepLinks = doc.select("a:contains(Dormir)");
+        return isSleepButtonAvailable(ParsedKralandPage.parse(html));
+    }
+
+    public boolean isSleepButtonAvailable(ParsedKralandPage page) {
+        Elements sleepLinks = page.document().select(SLEEP_LINK);
 
         LOGGER.info("Found {} links containing 'Dormir'", sleepLinks.size());
 
@@ -166,21 +404,96 @@ public class KralandHtmlParser {
      * (avec ses champs anti-triche générés côté serveur).
      */
     public Optional<AjaxOrderTrigger> findSleepAjaxTrigger(String html) {
-        Matcher matcher = SLEEP_AJAX_TRIGGER_PATTERN.matcher(html);
-        if (matcher.find()) {
-            return Optional.of(new AjaxOrderTrigger(matcher.group(1), matcher.group(2)));
+        return findSleepAjaxTrigger(ParsedKralandPage.parse(html));
+    }
+
+    /**
+     * La recherche est bornée au contenu des balises {@code <script>} mentionnant la classe alert11,
+     * au lieu de parcourir le HTML complet de la page plateau.
+     */
+    public Optional<AjaxOrderTrigger> findSleepAjaxTrigger(ParsedKralandPage page) {
+        for (Element script : page.document().getElementsByTag("script")) {
+            String data = script.data();
+            if (!data.contains(SLEEP_BUTTON_CLASS)) {
+                continue;
+            }
+            Matcher matcher = SLEEP_AJAX_TRIGGER_PATTERN.matcher(data);
+            if (matcher.find()) {
+                return Optional.of(new AjaxOrderTrigger(matcher.group(1), matcher.group(2)));
+            }
         }
         LOGGER.warn("Sleep AJAX trigger not found in plateau page");
         return Optional.empty();
     }
 
+    /**
+     * Cherche dans la page kramail le plus petit fragment AJAX qui expose à la fois la cloche des notifications et
+     * les compteurs de kramails de la sidebar : un élément {@code ajax-*} rafraîchi par un appel
+     * updateAjax(cible, param, token). Les candidats sont évalués directement sur leur sous-arbre du document déjà
+     * parsé, sans sérialisation ni nouveau parsing ; parmi des candidats imbriqués, le plus profond l'emporte.
+     *
+     * @return le param et le token de l'appel, ou vide si aucun fragment de la page ne suffit
+     */
+    public Optional<AjaxOrderTrigger> findCountersAjaxTrigger(ParsedKralandPage page) {
+        Element fragment = null;
+        for (Element target : page.document().select(AJAX_TARGET)) {
+            // select() rend les éléments dans l'ordre du document : un candidat imbriqué suit son parent
+            if ((fragment == null || isDescendant(target, fragment)) && exposesCounters(target)) {
+                fragment = target;
+            }
+        }
+        if (fragment == null) {
+            return Optional.empty();
+        }
+
+        String target = fragment.id();
+        for (Element script : page.document().getElementsByTag("script")) {
+            String data = script.data();
+            if (!data.contains(target)) {
+                continue;
+            }
+            Matcher matcher = AJAX_TRIGGER_PATTERN.matcher(data);
+            while (matcher.find()) {
+                if (matcher.group(1).equals(target)) {
+                    return Optional.of(new AjaxOrderTrigger(matcher.group(2), matcher.group(3)));
+                }
+            }
+        }
+        LOGGER.debug("Counters fragment '{}' found but no updateAjax call refreshes it", target);
+        return Optional.empty();
+    }
+
+    private boolean exposesCounters(Element target) {
+        if (target.selectFirst(BELL_ICON) == null) {
+            return false;
+        }
+        for (Element link : target.select(SIDEBAR_KRAMAIL_LINK)) {
+            if (!link.attr("href").contains("post/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isDescendant(Element element, Element ancestor) {
+        for (Element parent = element.parent(); parent != null; parent = parent.parent()) {
+            if (parent == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Extrait les champs cachés du formulaire de confirmation d'ordre (post_msg)
      * depuis le fragment HTML renvoyé par l'appel AJAX.
      */
     public Map<String, String> extractOrderFormFields(String html) {
-        Document doc = Jsoup.parse(html);
-        Element form = doc.selectFirst("form[name=post_msg]");
+        return extractOrderFormFields(ParsedKralandPage.parse(html));
+    }
+
+    public Map<String, String> extractOrderFormFields(ParsedKralandPage page) {
+        Element form = page.document().selectFirst(ORDER_FORM);
         Map<String, String> fields = new LinkedHashMap<>();
 
         if (form == null) {
@@ -188,7 +501,7 @@ public class KralandHtmlParser {
             return fields;
         }
 
-        for (Element input : form.select("input[type=hidden]")) {
+        for (Element input : form.select(HIDDEN_INPUT)) {
             fields.put(input.attr("name"), input.attr("value"));
         }
 
@@ -196,12 +509,27 @@ public class KralandHtmlParser {
     }
 
     /**
-     * Param et token de l'appel updateAjax('ajax-order', param, token).
+     * Résultat d'une lecture incrémentale du tableau des kramails.
+     *
+     * @param kramails    les kramails non lus trouvés avant l'arrêt de la lecture
+     * @param knownId     le kramail déjà connu sur lequel la lecture s'est arrêtée, ou null
+     * @param nextPageUrl la page suivante à lire lorsque toutes les lignes de la page étaient non lues, ou null
+     */
+    public record KramailScan(List<Kramail> kramails, KramailId knownId, String nextPageUrl) {}
+
+    /**
+     * Param et token d'un appel updateAjax(cible, param, token) : l'ordre "Dormir" ('ajax-order') ou le fragment
+     * des compteurs.
      */
     public record AjaxOrderTrigger(String param, String token) {}
 
     /**
      * Information d'un compte Kraland.
+     *
+     * @param unreadCount le nombre de kramails non lus affiché dans la sidebar, ou {@link #UNKNOWN_UNREAD}
      */
-    public record AccountInfo(String name, String url) {}
+    public record AccountInfo(String name, String url, int unreadCount) {
+
+        public static final int UNKNOWN_UNREAD = -1;
+    }
 }
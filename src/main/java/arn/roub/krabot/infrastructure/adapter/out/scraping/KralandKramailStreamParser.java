@@ -0,0 +1,257 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import arn.roub.krabot.domain.model.Kramail;
+import arn.roub.krabot.domain.model.KramailId;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Extraction en flux des kramails non lus d'une page de personnage.
+ * <p>
+ * Contrairement à {@link KralandHtmlParser#parseKramails(ParsedKralandPage)}, le DOM complet n'est jamais construit :
+ * chaque élément est examiné dès sa fermeture puis détaché de l'arbre, et la lecture s'arrête à la fermeture
+ * du tableau des kramails. Seules les lignes en cours de construction restent en mémoire.
+ * <p>
+ * {@link #scan} est l'équivalent en flux de {@link KralandHtmlParser#scanKramails} : la lecture, et le
+ * téléchargement, s'arrêtent dès la première ligne lue ou le premier kramail connu, si bien que son coût suit le
+ * nombre de nouveaux kramails et non la taille de la boîte.
+ */
+public class KralandKramailStreamParser {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KralandKramailStreamParser.class);
+    private static final String LOGIN_FIELD_NAME = "c[1]";
+
+    private final KralandHtmlParser parser;
+
+    public KralandKramailStreamParser(KralandHtmlParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Lit la page depuis le flux et extrait les kramails non lus.
+     * Le flux est fermé à la fin de l'extraction, y compris lorsqu'elle s'arrête avant la fin du document.
+     *
+     * @param reader  le corps de la réponse
+     * @param baseUri l'URL de la page
+     */
+    public StreamedKramails parse(Reader reader, String baseUri) throws IOException {
+        try (StreamParser streamParser = new StreamParser(Parser.htmlParser()).parse(reader, baseUri)) {
+            String recipient = null;
+            List<Element> pendingRows = new ArrayList<>();
+            List<Kramail> kramails = new ArrayList<>();
+            boolean listingSeen = false;
+
+            Iterator<Element> elements = streamParser.iterator();
+            while (elements.hasNext()) {
+                Element element = elements.next();
+
+                switch (element.normalName()) {
+                    case "h1" -> {
+                        if (recipient == null) {
+                            recipient = element.ownText().trim();
+                            for (Element row : pendingRows) {
+                                parser.parseKramailRow(row, recipient).ifPresent(kramails::add);
+                            }
+                            pendingRows.clear();
+                        }
+                    }
+                    case "input" -> {
+                        if (LOGIN_FIELD_NAME.equals(element.attr("name"))) {
+                            streamParser.stop();
+                            return new StreamedKramails(List.of(), true);
+                        }
+                    }
+                    case "tr" -> {
+                        if (isListingRow(element)) {
+                            listingSeen |= element.childrenSize() >= 4;
+                            if (recipient == null) {
+                                pendingRows.add(element);
+                                continue;
+                            }
+                            parser.parseKramailRow(element, recipient).ifPresent(kramails::add);
+                        }
+                    }
+                    case "table" -> {
+                        if (listingSeen) {
+                            streamParser.stop();
+                        }
+                    }
+                    default -> {
+                        // Rien à extraire
+                    }
+                }
+                // Les cellules restent attachées à leur ligne tant que celle-ci n'est pas fermée
+                if (!isInsideRow(element)) {
+                    element.remove();
+                }
+            }
+
+            if (recipient == null) {
+                LOGGER.warn("No h1 found, cannot determine recipient");
+                return new StreamedKramails(List.of(), false);
+            }
+            return new StreamedKramails(kramails, false);
+        }
+    }
+
+    /**
+     * Lecture incrémentale en flux du premier tableau de kramails, avec la même sémantique que
+     * {@link KralandHtmlParser#scanKramails} : arrêt à la première ligne lue ou au premier kramail connu ; si toutes
+     * les lignes sont non lues, la lecture se poursuit jusqu'à la pagination pour en extraire la page suivante.
+     * Le flux est fermé dès que le résultat est connu.
+     *
+     * @param reader  le corps de la réponse
+     * @param baseUri l'URL de la page
+     * @param known   les kramails déjà connus, dont la suite du tableau n'a pas besoin d'être lue
+     */
+    public StreamedScan scan(Reader reader, String baseUri, Predicate<KramailId> known) throws IOException {
+        try (StreamParser streamParser = new StreamParser(Parser.htmlParser()).parse(reader, baseUri)) {
+            String recipient = null;
+            List<Element> pendingRows = new ArrayList<>();
+            List<Kramail> kramails = new ArrayList<>();
+            Element tableBody = null;
+            boolean tableDone = false;
+
+            Iterator<Element> elements = streamParser.iterator();
+            while (elements.hasNext()) {
+                Element element = elements.next();
+
+                switch (element.normalName()) {
+                    case "h1" -> {
+                        if (recipient == null) {
+                            recipient = element.ownText().trim();
+                            for (Element row : pendingRows) {
+                                Optional<KralandHtmlParser.KramailScan> stop = scanRow(row, recipient, known, kramails);
+                                if (stop.isPresent()) {
+                                    streamParser.stop();
+                                    return new StreamedScan(stop.get(), false);
+                                }
+                            }
+                            pendingRows.clear();
+                            if (tableDone && kramails.isEmpty()) {
+                                streamParser.stop();
+                                return new StreamedScan(new KralandHtmlParser.KramailScan(kramails, null, null), false);
+                            }
+                        }
+                    }
+                    case "input" -> {
+                        if (LOGIN_FIELD_NAME.equals(element.attr("name"))) {
+                            streamParser.stop();
+                            return new StreamedScan(new KralandHtmlParser.KramailScan(List.of(), null, null), true);
+                        }
+                    }
+                    case "tr" -> {
+                        if (tableBody == null && isListingRow(element)) {
+                            tableBody = element.parent();
+                        }
+                        if (!tableDone && tableBody != null && element.parent() == tableBody) {
+                            if (recipient == null) {
+                                pendingRows.add(element);
+                                continue;
+                            }
+                            Optional<KralandHtmlParser.KramailScan> stop = scanRow(element, recipient, known, kramails);
+                            if (stop.isPresent()) {
+                                streamParser.stop();
+                                return new StreamedScan(stop.get(), false);
+                            }
+                        }
+                    }
+                    case "tbody" -> {
+                        if (element == tableBody) {
+                            tableDone = true;
+                            if (recipient != null && kramails.isEmpty()) {
+                                streamParser.stop();
+                                return new StreamedScan(new KralandHtmlParser.KramailScan(kramails, null, null), false);
+                            }
+                        }
+                    }
+                    case "ul" -> {
+                        if (tableDone && recipient != null && element.hasClass("pagination")) {
+                            // Toutes les lignes sont non lues : la suite peut se trouver sur la page suivante
+                            streamParser.stop();
+                            return new StreamedScan(
+                                    new KralandHtmlParser.KramailScan(kramails, null, parser.nextPageUrl(element)), false);
+                        }
+                    }
+                    default -> {
+                        // Rien à extraire
+                    }
+                }
+                // Les cellules restent attachées à leur ligne, et les pages à leur pagination, jusqu'à leur fermeture
+                if (!isInsideRowOrPagination(element)) {
+                    element.remove();
+                }
+            }
+
+            if (recipient == null) {
+                LOGGER.warn("No h1 found, cannot determine recipient");
+                return new StreamedScan(new KralandHtmlParser.KramailScan(List.of(), null, null), false);
+            }
+            return new StreamedScan(new KralandHtmlParser.KramailScan(kramails, null, null), false);
+        }
+    }
+
+    /**
+     * @return le résultat de la lecture si elle s'arrête sur cette ligne, vide si elle continue
+     */
+    private Optional<KralandHtmlParser.KramailScan> scanRow(Element row, String recipient, Predicate<KramailId> known,
+                                                            List<Kramail> kramails) {
+        Optional<Kramail> kramail = parser.parseKramailRow(row, recipient);
+        if (kramail.isEmpty()) {
+            return KralandHtmlParser.isReadRow(row)
+                    ? Optional.of(new KralandHtmlParser.KramailScan(kramails, null, null))
+                    : Optional.empty();
+        }
+        if (known.test(kramail.get().id())) {
+            return Optional.of(new KralandHtmlParser.KramailScan(kramails, kramail.get().id(), null));
+        }
+        kramails.add(kramail.get());
+        return Optional.empty();
+    }
+
+    private static boolean isInsideRowOrPagination(Element element) {
+        for (Element ancestor = element.parent(); ancestor != null; ancestor = ancestor.parent()) {
+            if (ancestor.nameIs("tr") || ancestor.nameIs("ul") && ancestor.hasClass("pagination")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isInsideRow(Element element) {
+        Element parent = element.parent();
+        return parent != null && parent.closest("tr") != null;
+    }
+
+    private boolean isListingRow(Element row) {
+        Element parent = row.parent();
+        return parent != null && "tbody".equals(parent.normalName()) && parent.closest("table") != null;
+    }
+
+    /**
+     * Résultat d'une extraction en flux.
+     *
+     * @param kramails               les kramails non lus trouvés
+     * @param requiresAuthentication true si le flux était la page de connexion
+     */
+    public record StreamedKramails(List<Kramail> kramails, boolean requiresAuthentication) {}
+
+    /**
+     * Résultat d'une lecture incrémentale en flux.
+     *
+     * @param scan                   les kramails lus avant l'arrêt et la raison de l'arrêt
+     * @param requiresAuthentication true si le flux était la page de connexion
+     */
+    public record StreamedScan(KralandHtmlParser.KramailScan scan, boolean requiresAuthentication) {}
+}
@@ -0,0 +1,198 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Corps d'une réponse Kraland tel que reçu, réparti dans des blocs de taille fixe, avec le jeu de caractères
+ * détecté par {@link KralandPageBodyHandler}.
+ * <p>
+ * Le corps n'est jamais recopié dans un tableau ou une {@link String} : jsoup le lit par {@link #inputStream()},
+ * le pré-filtre et l'empreinte du cache parcourent directement les blocs, et la détection de la page de connexion
+ * lit {@link #asciiView()}. Les blocs viennent d'un pool : {@link #close()} les y rend, le corps n'est alors plus
+ * lisible.
+ */
+public final class KralandPageBody implements AutoCloseable {
+
+    private final List<ByteBuffer> chunks;
+    private final int chunkSize;
+    private final int length;
+    private final Charset charset;
+    private final Consumer<ByteBuffer> release;
+    private boolean closed;
+
+    KralandPageBody(List<ByteBuffer> chunks, int chunkSize, int length, Charset charset, Consumer<ByteBuffer> release) {
+        this.chunks = chunks;
+        this.chunkSize = chunkSize;
+        this.length = length;
+        this.charset = charset;
+        this.release = release;
+    }
+
+    /**
+     * Corps hors pool, en un seul bloc.
+     */
+    public static KralandPageBody of(byte[] bytes, Charset charset) {
+        return new KralandPageBody(List.of(ByteBuffer.wrap(bytes)), Math.max(1, bytes.length), bytes.length,
+                charset, buffer -> { });
+    }
+
+    public static KralandPageBody of(String html) {
+        return of(html.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return la taille du corps en octets
+     */
+    public int length() {
+        return length;
+    }
+
+    public Charset charset() {
+        return charset;
+    }
+
+    public InputStream inputStream() {
+        ensureOpen();
+        return new ChunkInputStream();
+    }
+
+    public Reader reader() {
+        return new InputStreamReader(inputStream(), charset);
+    }
+
+    /**
+     * Décode le corps entier ; à réserver aux usages qui doivent garder la page au-delà de {@link #close()}.
+     */
+    public String text() {
+        try (InputStream in = inputStream()) {
+            return new String(in.readAllBytes(), charset);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Vue du corps où chaque octet est un caractère (ISO-8859-1). Pour un jeu de caractères compatible ASCII
+     * (UTF-8, ISO-8859-x, windows-125x), les balises, noms et valeurs d'attributs ASCII s'y lisent à l'identique ;
+     * les octets non ASCII donnent des caractères au-delà de 0x7F qui ne peuvent pas les imiter.
+     */
+    public CharSequence asciiView() {
+        ensureOpen();
+        return new AsciiView(0, length);
+    }
+
+    int chunkCount() {
+        ensureOpen();
+        return chunks.size();
+    }
+
+    byte[] chunkArray(int index) {
+        return chunks.get(index).array();
+    }
+
+    int chunkLength(int index) {
+        return index < chunks.size() - 1 ? chunkSize : length - index * chunkSize;
+    }
+
+    /**
+     * Rend les blocs au pool. Sans effet si le corps est déjà fermé.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        chunks.forEach(release);
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Page body already released");
+        }
+    }
+
+    private byte byteAt(int index) {
+        return chunks.get(index / chunkSize).array()[index % chunkSize];
+    }
+
+    private final class ChunkInputStream extends InputStream {
+
+        private int position;
+
+        @Override
+        public int read() {
+            return position < length ? byteAt(position++) & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) {
+            if (count == 0) {
+                return 0;
+            }
+            if (position >= length) {
+                return -1;
+            }
+            int chunkOffset = position % chunkSize;
+            int copied = Math.min(count, Math.min(chunkSize - chunkOffset, length - position));
+            System.arraycopy(chunks.get(position / chunkSize).array(), chunkOffset, buffer, offset, copied);
+            position += copied;
+            return copied;
+        }
+
+        @Override
+        public int available() {
+            return length - position;
+        }
+    }
+
+    private final class AsciiView implements CharSequence {
+
+        private final int start;
+        private final int end;
+
+        private AsciiView(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || start + index >= end) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return (char) (byteAt(start + index) & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            if (from < 0 || to > length() || from > to) {
+                throw new IndexOutOfBoundsException("[" + from + ", " + to + ")");
+            }
+            return new AsciiView(start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(length());
+            for (int i = start; i < end; i++) {
+                text.append((char) (byteAt(i) & 0xff));
+            }
+            return text.toString();
+        }
+    }
+}
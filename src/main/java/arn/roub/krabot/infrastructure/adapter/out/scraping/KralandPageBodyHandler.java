@@ -0,0 +1,290 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.OptionalLong;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * {@link HttpResponse.BodyHandler} des pages Kraland : le corps est recopié au fil de l'eau dans des blocs de
+ * {@value #CHUNK_SIZE} octets pris dans un pool, sans tableau ni {@link String} intermédiaire, et rendu sous forme
+ * de {@link KralandPageBody}.
+ * <p>
+ * La taille du corps est bornée : une réponse annoncée plus grande par son {@code Content-Length} est refusée
+ * avant toute lecture, et une réponse qui dépasse la limite en cours de lecture (corps sans longueur, réponse
+ * compressée) est interrompue aussitôt ; {@link java.net.http.HttpClient#send} lève alors une {@link IOException}.
+ * La même limite s'applique aux pages lues en flux ({@link #streaming()}).
+ * <p>
+ * Le jeu de caractères est celui du {@code Content-Type}, à défaut celui d'une balise meta dans le premier
+ * kilo-octet du corps, à défaut UTF-8.
+ */
+public class KralandPageBodyHandler implements HttpResponse.BodyHandler<KralandPageBody> {
+
+    static final int CHUNK_SIZE = 16 * 1024;
+    private static final int MAX_POOLED_CHUNKS = 64;
+    private static final int META_PRESCAN_BYTES = 1024;
+    private static final byte[] CHARSET_MARKER = "charset=".getBytes(StandardCharsets.US_ASCII);
+
+    private final BlockingQueue<ByteBuffer> pool = new ArrayBlockingQueue<>(MAX_POOLED_CHUNKS);
+    private final long maxBodySize;
+
+    public KralandPageBodyHandler(long maxBodySize) {
+        if (maxBodySize < 1) {
+            throw new IllegalArgumentException("Max body size must be >= 1");
+        }
+        // Le corps est indexé par int
+        this.maxBodySize = Math.min(maxBodySize, Integer.MAX_VALUE - CHUNK_SIZE);
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<KralandPageBody> apply(HttpResponse.ResponseInfo responseInfo) {
+        Charset declared = headerCharset(responseInfo.headers());
+        OptionalLong contentLength = responseInfo.headers().firstValueAsLong("Content-Length");
+        if (contentLength.isPresent() && contentLength.getAsLong() > maxBodySize) {
+            return new ChunkingSubscriber(declared, oversized(contentLength.getAsLong()));
+        }
+        return new ChunkingSubscriber(declared, null);
+    }
+
+    /**
+     * Handler des pages lues en flux : une réponse annoncée trop grande est refusée avant toute lecture, et
+     * l'{@link InputStream} rendu lève une {@link IOException} et ferme la réponse dès que la limite est dépassée,
+     * au lieu de laisser un tableau jamais refermé être lu jusqu'au bout.
+     */
+    public HttpResponse.BodyHandler<InputStream> streaming() {
+        return responseInfo -> {
+            OptionalLong contentLength = responseInfo.headers().firstValueAsLong("Content-Length");
+            if (contentLength.isPresent() && contentLength.getAsLong() > maxBodySize) {
+                return HttpResponse.BodySubscribers.mapping(
+                        new ChunkingSubscriber(null, oversized(contentLength.getAsLong())), body -> null);
+            }
+            return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofInputStream(),
+                    BoundedInputStream::new);
+        };
+    }
+
+    /**
+     * @return le nombre de blocs disponibles dans le pool
+     */
+    int pooledChunks() {
+        return pool.size();
+    }
+
+    private IOException oversized(long size) {
+        return new IOException("Response body of " + size + " bytes exceeds the limit of " + maxBodySize + " bytes");
+    }
+
+    private ByteBuffer acquire() {
+        ByteBuffer chunk = pool.poll();
+        return chunk != null ? chunk : ByteBuffer.allocate(CHUNK_SIZE);
+    }
+
+    private void release(ByteBuffer chunk) {
+        chunk.clear();
+        pool.offer(chunk);
+    }
+
+    static Charset headerCharset(HttpHeaders headers) {
+        String contentType = headers.firstValue("Content-Type").orElse("");
+        int marker = contentType.toLowerCase(Locale.ROOT).indexOf("charset=");
+        if (marker < 0) {
+            return null;
+        }
+        int start = marker + "charset=".length();
+        int end = start;
+        while (end < contentType.length() && contentType.charAt(end) != ';') {
+            end++;
+        }
+        return charsetOrNull(contentType.substring(start, end).trim().replace("\"", ""));
+    }
+
+    /**
+     * Cherche {@code charset=} dans le début du corps, comme le pré-examen des navigateurs : couvre
+     * {@code <meta charset="...">} et {@code <meta http-equiv="Content-Type" content="text/html; charset=...">}.
+     */
+    static Charset metaCharset(byte[] bytes, int length) {
+        int limit = Math.min(length, META_PRESCAN_BYTES);
+        for (int i = 0; i + CHARSET_MARKER.length <= limit; i++) {
+            if (!matchesIgnoreCase(bytes, i, CHARSET_MARKER)) {
+                continue;
+            }
+            int start = i + CHARSET_MARKER.length;
+            while (start < limit && (bytes[start] == '"' || bytes[start] == '\'' || bytes[start] == ' ')) {
+                start++;
+            }
+            int end = start;
+            while (end < limit && isCharsetNameByte(bytes[end])) {
+                end++;
+            }
+            return end > start ? charsetOrNull(new String(bytes, start, end - start, StandardCharsets.US_ASCII)) : null;
+        }
+        return null;
+    }
+
+    private static boolean matchesIgnoreCase(byte[] bytes, int offset, byte[] lowerCaseMarker) {
+        for (int j = 0; j < lowerCaseMarker.length; j++) {
+            int b = bytes[offset + j];
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != lowerCaseMarker[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isCharsetNameByte(byte b) {
+        return b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || b >= '0' && b <= '9'
+                || b == '-' || b == '_' || b == '.' || b == ':';
+    }
+
+    private static Charset charsetOrNull(String name) {
+        try {
+            return name.isEmpty() || !Charset.isSupported(name) ? null : Charset.forName(name);
+        } catch (IllegalCharsetNameException e) {
+            return null;
+        }
+    }
+
+    private final class BoundedInputStream extends FilterInputStream {
+
+        private long size;
+
+        private BoundedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(long read) throws IOException {
+            size += read;
+            if (size > maxBodySize) {
+                in.close();
+                throw oversized(size);
+            }
+        }
+    }
+
+    /**
+     * Les signaux amont étant séquentiels, l'état n'a pas besoin de synchronisation.
+     */
+    private final class ChunkingSubscriber implements HttpResponse.BodySubscriber<KralandPageBody> {
+
+        private final CompletableFuture<KralandPageBody> body = new CompletableFuture<>();
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private final Charset declaredCharset;
+        private final IOException rejection;
+        private Flow.Subscription subscription;
+        private ByteBuffer current;
+        private long size;
+
+        private ChunkingSubscriber(Charset declaredCharset, IOException rejection) {
+            this.declaredCharset = declaredCharset;
+            this.rejection = rejection;
+        }
+
+        @Override
+        public CompletionStage<KralandPageBody> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (rejection != null) {
+                subscription.cancel();
+                body.completeExceptionally(rejection);
+                return;
+            }
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (body.isDone()) {
+                return;
+            }
+            for (ByteBuffer item : items) {
+                size += item.remaining();
+                if (size > maxBodySize) {
+                    subscription.cancel();
+                    releaseAll();
+                    body.completeExceptionally(oversized(size));
+                    return;
+                }
+                while (item.hasRemaining()) {
+                    if (current == null || !current.hasRemaining()) {
+                        current = acquire();
+                        chunks.add(current);
+                    }
+                    int count = Math.min(item.remaining(), current.remaining());
+                    item.get(current.array(), current.position(), count);
+                    current.position(current.position() + count);
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            releaseAll();
+            body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (body.isDone()) {
+                return;
+            }
+            int length = (int) size;
+            Charset charset = declaredCharset;
+            if (charset == null && !chunks.isEmpty()) {
+                charset = metaCharset(chunks.getFirst().array(), Math.min(length, CHUNK_SIZE));
+            }
+            body.complete(new KralandPageBody(List.copyOf(chunks), CHUNK_SIZE, length,
+                    charset != null ? charset : StandardCharsets.UTF_8, KralandPageBodyHandler.this::release));
+        }
+
+        private void releaseAll() {
+            chunks.forEach(KralandPageBodyHandler.this::release);
+            chunks.clear();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import arn.roub.krabot.domain.model.Kramail;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache des kramails extraits de chaque page de personnage, indexé par login et URL : une même URL (boîte
+ * partagée comme {@code kramail/communaute}) peut servir un contenu différent à chaque login.
+ * <p>
+ * Chaque entrée garde l'empreinte du dernier corps parsé : l'ETag ou le Last-Modified renvoyé par Kraland
+ * s'il existe, sinon un hash 64 bits (FNV-1a) du titre et du tableau des kramails. Quand la page n'a pas changé, les kramails déjà
+ * extraits sont réutilisés sans re-parser le HTML. Les validateurs sont aussi renvoyés en requête
+ * conditionnelle pour laisser le serveur répondre 304.
+ */
+@ApplicationScoped
+public class KralandPageCache {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final String TABLE_REGION_START = "<h1";
+    private static final String TABLE_REGION_END = "</table>";
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Construit la requête GET de la page, conditionnelle si des validateurs sont connus pour ce login et cette URL.
+     */
+    public HttpRequest conditionalRequest(String username, String url) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url)).GET();
+        Entry entry = entries.get(new Key(username, url));
+        if (entry != null) {
+            if (entry.etag() != null) {
+                builder.header("If-None-Match", entry.etag());
+            }
+            if (entry.lastModified() != null) {
+                builder.header("If-Modified-Since", entry.lastModified());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Renvoie les kramails en cache si la réponse correspond à la dernière page parsée pour ce login et cette URL.
+     *
+     * @param body le corps de la réponse, ou null s'il n'est pas disponible (lecture en flux) :
+     *             seuls les validateurs HTTP sont alors comparés
+     */
+    public Optional<List<Kramail>> lookup(String username, String url, int statusCode, HttpHeaders headers,
+                                          KralandPageBody body) {
+        Entry entry = entries.get(new Key(username, url));
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (statusCode == 304 || entry.fingerprint().equals(fingerprint(headers, body))) {
+            hits.increment();
+            return Optional.of(entry.kramails());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Enregistre les kramails extraits d'une page qui vient d'être parsée.
+     * Sans validateur ni corps, aucune empreinte ne peut être calculée et la page n'est pas mise en cache.
+     */
+    public void store(String username, String url, HttpHeaders headers, KralandPageBody body, List<Kramail> kramails) {
+        misses.increment();
+        Key key = new Key(username, url);
+        String fingerprint = fingerprint(headers, body);
+        if (fingerprint == null) {
+            entries.remove(key);
+            return;
+        }
+        entries.put(key, new Entry(
+                fingerprint,
+                headers.firstValue("ETag").orElse(null),
+                headers.firstValue("Last-Modified").orElse(null),
+                List.copyOf(kramails)
+        ));
+    }
+
+    /**
+     * @return le nombre de pages dont le parsing a été évité
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return le nombre de pages parsées
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    static String fingerprint(HttpHeaders headers, KralandPageBody body) {
+        Optional<String> etag = headers.firstValue("ETag");
+        if (etag.isPresent()) {
+            return "etag:" + etag.get();
+        }
+        Optional<String> lastModified = headers.firstValue("Last-Modified");
+        if (lastModified.isPresent()) {
+            return "last-modified:" + lastModified.get();
+        }
+        return body != null ? "fnv:" + Long.toHexString(tableRegionHash(body)) : null;
+    }
+
+    /**
+     * Hash du titre et du tableau des kramails, de {@code <h1} à la fin du premier tableau qui le suit : le reste
+     * de la page (tokens des formulaires de la barre de navigation, badges de la sidebar) peut changer à chaque
+     * requête sans que les kramails de la page changent. Sans ces repères, toute la page est hachée.
+     */
+    static long tableRegionHash(KralandPageBody body) {
+        CharSequence bytes = body.asciiView();
+        int start = indexOf(bytes, TABLE_REGION_START, 0);
+        int end = start < 0 ? -1 : indexOf(bytes, TABLE_REGION_END, start);
+        if (end < 0) {
+            return hash64(body);
+        }
+        return hash64(body, start, end + TABLE_REGION_END.length());
+    }
+
+    static long hash64(KralandPageBody body) {
+        return hash64(body, 0, body.length());
+    }
+
+    private static long hash64(KralandPageBody body, int from, int to) {
+        long hash = FNV_OFFSET_BASIS;
+        int offset = 0;
+        for (int chunk = 0, count = body.chunkCount(); chunk < count && offset < to; chunk++) {
+            byte[] bytes = body.chunkArray(chunk);
+            int length = body.chunkLength(chunk);
+            for (int i = Math.max(0, from - offset), end = Math.min(length, to - offset); i < end; i++) {
+                hash ^= bytes[i] & 0xff;
+                hash *= FNV_PRIME;
+            }
+            offset += length;
+        }
+        return hash;
+    }
+
+    private static int indexOf(CharSequence text, String marker, int from) {
+        for (int i = from, last = text.length() - marker.length(); i <= last; i++) {
+            int matched = 0;
+            while (matched < marker.length() && text.charAt(i + matched) == marker.charAt(matched)) {
+                matched++;
+            }
+            if (matched == marker.length()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private record Key(String username, String url) {}
+
+    private record Entry(String fingerprint, String etag, String lastModified, List<Kramail> kramails) {}
+}
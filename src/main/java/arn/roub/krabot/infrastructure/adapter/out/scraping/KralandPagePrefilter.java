@@ -0,0 +1,189 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Pré-filtre octet par octet des pages Kraland, avant le parsing DOM.
+ * <p>
+ * Un automate d'Aho-Corasick cherche en une seule passe sur le corps brut les marqueurs dont dépendent les
+ * extractions du {@link KralandHtmlParser} : sans eux, l'extraction correspondante ne peut rien trouver et le
+ * DOM n'a pas besoin d'être construit. La recherche ignore la casse ASCII, comme jsoup pour les noms de balises,
+ * les classes et {@code :contains} : un marqueur peut être trouvé à tort, jamais manqué.
+ * <ul>
+ *     <li>{@code badge-danger} pour {@link KralandHtmlParser#hasNotification(ParsedKralandPage)} ;</li>
+ *     <li>{@code <strong} après un {@code <table} pour {@link KralandHtmlParser#parseKramails(ParsedKralandPage)} ;</li>
+ *     <li>{@code btn-primary} et {@code Dormir} pour {@link KralandHtmlParser#isSleepButtonAvailable(ParsedKralandPage)}.</li>
+ * </ul>
+ */
+public class KralandPagePrefilter {
+
+    private static final int BADGE_DANGER = 1;
+    private static final int TABLE = 1 << 1;
+    private static final int STRONG = 1 << 2;
+    private static final int BTN_PRIMARY = 1 << 3;
+    private static final int DORMIR = 1 << 4;
+
+    private static final Automaton AUTOMATON = new Automaton(List.of(
+            "badge-danger", "<table", "<strong", "btn-primary", "dormir"));
+
+    /**
+     * Marqueurs trouvés dans une page.
+     *
+     * @param notificationBadge la page contient un badge {@code badge-danger}
+     * @param unreadRow         la page contient un {@code <strong>} après le début d'un tableau
+     * @param sleepButton       la page contient {@code btn-primary} et {@code Dormir}
+     */
+    public record Markers(boolean notificationBadge, boolean unreadRow, boolean sleepButton) {}
+
+    public Markers scan(byte[] page) {
+        return scan(page, 0, page.length);
+    }
+
+    public Markers scan(byte[] page, int offset, int length) {
+        Scan scan = new Scan();
+        scan.feed(page, offset, offset + length);
+        return scan.markers();
+    }
+
+    /**
+     * Parcourt les blocs du corps à la suite, l'état de l'automate passant d'un bloc au suivant.
+     */
+    public Markers scan(KralandPageBody body) {
+        Scan scan = new Scan();
+        for (int i = 0, count = body.chunkCount(); i < count; i++) {
+            if (scan.feed(body.chunkArray(i), 0, body.chunkLength(i))) {
+                break;
+            }
+        }
+        return scan.markers();
+    }
+
+    private static final class Scan {
+
+        private int found;
+        private boolean unreadRow;
+        private int state;
+
+        /**
+         * @return true quand tous les marqueurs ont été trouvés et que la suite n'a plus besoin d'être lue
+         */
+        private boolean feed(byte[] page, int from, int end) {
+            int[][] transitions = AUTOMATON.transitions;
+            int[] outputs = AUTOMATON.outputs;
+            int current = state;
+            try {
+                for (int i = from; i < end; i++) {
+                    current = transitions[current][page[i] & 0xff];
+                    int output = outputs[current];
+                    if (output == 0) {
+                        continue;
+                    }
+                    // Un <strong> placé avant tout <table> ne peut pas se retrouver dans une ligne du tableau
+                    if ((output & STRONG) != 0 && (found & TABLE) != 0) {
+                        unreadRow = true;
+                    }
+                    found |= output;
+                    if (unreadRow && (found & (BADGE_DANGER | BTN_PRIMARY | DORMIR)) == (BADGE_DANGER | BTN_PRIMARY | DORMIR)) {
+                        return true;
+                    }
+                }
+                return false;
+            } finally {
+                state = current;
+            }
+        }
+
+        private Markers markers() {
+            return new Markers(
+                    (found & BADGE_DANGER) != 0,
+                    unreadRow,
+                    (found & BTN_PRIMARY) != 0 && (found & DORMIR) != 0);
+        }
+    }
+
+    /**
+     * Automate d'Aho-Corasick déterminisé : les transitions d'échec sont précalculées dans une table
+     * {@code état x octet}, la recherche coûte un accès tableau par octet.
+     */
+    private static final class Automaton {
+
+        private final int[][] transitions;
+        private final int[] outputs;
+
+        private Automaton(List<String> patterns) {
+            List<int[]> gotoTable = new ArrayList<>();
+            List<Integer> outputList = new ArrayList<>();
+            gotoTable.add(newRow());
+            outputList.add(0);
+
+            for (int p = 0; p < patterns.size(); p++) {
+                int state = 0;
+                for (byte b : patterns.get(p).getBytes(StandardCharsets.US_ASCII)) {
+                    int symbol = fold(b & 0xff);
+                    if (gotoTable.get(state)[symbol] < 0) {
+                        gotoTable.add(newRow());
+                        outputList.add(0);
+                        gotoTable.get(state)[symbol] = gotoTable.size() - 1;
+                    }
+                    state = gotoTable.get(state)[symbol];
+                }
+                outputList.set(state, outputList.get(state) | 1 << p);
+            }
+
+            int stateCount = gotoTable.size();
+            transitions = new int[stateCount][];
+            outputs = new int[stateCount];
+            int[] failure = new int[stateCount];
+            for (int s = 0; s < stateCount; s++) {
+                transitions[s] = gotoTable.get(s);
+                outputs[s] = outputList.get(s);
+            }
+
+            Deque<Integer> queue = new ArrayDeque<>();
+            for (int symbol = 0; symbol < 256; symbol++) {
+                int next = transitions[0][symbol];
+                if (next < 0) {
+                    transitions[0][symbol] = 0;
+                } else {
+                    failure[next] = 0;
+                    queue.add(next);
+                }
+            }
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                outputs[state] |= outputs[failure[state]];
+                for (int symbol = 0; symbol < 256; symbol++) {
+                    int next = transitions[state][symbol];
+                    if (next < 0) {
+                        transitions[state][symbol] = transitions[failure[state]][symbol];
+                    } else {
+                        failure[next] = transitions[failure[state]][symbol];
+                        queue.add(next);
+                    }
+                }
+            }
+
+            // Insensibilité à la casse : une majuscule ASCII suit la transition de sa minuscule
+            for (int[] row : transitions) {
+                for (int symbol = 'A'; symbol <= 'Z'; symbol++) {
+                    row[symbol] = row[fold(symbol)];
+                }
+            }
+        }
+
+        private static int[] newRow() {
+            int[] row = new int[256];
+            Arrays.fill(row, -1);
+            return row;
+        }
+
+        private static int fold(int symbol) {
+            return symbol >= 'A' && symbol <= 'Z' ? symbol + ('a' - 'A') : symbol;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import arn.roub.krabot.infrastructure.config.KralandConfig;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket partagé par toutes les requêtes sortantes vers kraland.org, tous comptes confondus.
+ * <p>
+ * Implémenté sans verrou sous forme de GCRA : un seul {@link AtomicLong} porte l'instant théorique auquel le
+ * bucket sera de nouveau plein. Chaque requête réserve son créneau par CAS puis attend, hors de toute section
+ * critique, le début de ce créneau ; les créneaux étant attribués dans l'ordre des réservations, les requêtes
+ * hors budget sont servies dans leur ordre d'arrivée quel que soit le compte, sans jamais échouer.
+ */
+@ApplicationScoped
+public class KralandRateLimiter {
+
+    private final long intervalNanos;
+    private final long burstToleranceNanos;
+    private final int burst;
+    private final LongSupplier nanoClock;
+
+    private final AtomicLong theoreticalArrival;
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    @Inject
+    public KralandRateLimiter(KralandConfig kralandConfig) {
+        this(kralandConfig.rateLimit().permitsPerSecond(), kralandConfig.rateLimit().burst(), System::nanoTime);
+    }
+
+    KralandRateLimiter(double permitsPerSecond, int burst, LongSupplier nanoClock) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("Rate limit must be > 0 permits per second");
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("Rate limit burst must be >= 1");
+        }
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.burstToleranceNanos = intervalNanos * (burst - 1);
+        this.burst = burst;
+        this.nanoClock = nanoClock;
+        this.theoreticalArrival = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    /**
+     * Attend qu'un jeton soit disponible pour envoyer une requête.
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        acquired.increment();
+        if (waitNanos > 0) {
+            queued.increment();
+            totalWaitNanos.add(waitNanos);
+            maxWaitNanos.accumulate(waitNanos);
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Réserve le prochain créneau disponible.
+     *
+     * @return le délai d'attente avant le début du créneau, en nanosecondes
+     */
+    long reserve() {
+        while (true) {
+            long now = nanoClock.getAsLong();
+            long tat = theoreticalArrival.get();
+            long start = Math.max(tat, now);
+            if (theoreticalArrival.compareAndSet(tat, start + intervalNanos)) {
+                return Math.max(0, start - now - burstToleranceNanos);
+            }
+        }
+    }
+
+    /**
+     * @return le nombre de jetons disponibles immédiatement
+     */
+    public int tokensAvailable() {
+        long now = nanoClock.getAsLong();
+        long backlog = Math.max(0, theoreticalArrival.get() - now);
+        long free = (burstToleranceNanos + intervalNanos - backlog) / intervalNanos;
+        return (int) Math.clamp(free, 0, burst);
+    }
+
+    /**
+     * @return le nombre de requêtes passées par le limiteur
+     */
+    public long acquiredCount() {
+        return acquired.sum();
+    }
+
+    /**
+     * @return le nombre de requêtes qui ont dû attendre un jeton
+     */
+    public long queuedCount() {
+        return queued.sum();
+    }
+
+    /**
+     * @return le temps d'attente cumulé, en millisecondes
+     */
+    public long totalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.sum());
+    }
+
+    /**
+     * @return le plus long temps d'attente observé, en millisecondes
+     */
+    public long maxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+}
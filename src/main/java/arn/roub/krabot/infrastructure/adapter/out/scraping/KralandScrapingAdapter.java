@@ -2,27 +2,48 @@ package arn.roub.krabot.infrastructure.adapter.out.scraping;
 
 import arn.roub.krabot.domain.model.Account;
 import arn.roub.krabot.domain.model.Kramail;
+import arn.roub.krabot.domain.model.KramailId;
 import arn.roub.krabot.domain.model.ScrapingResult;
 import arn.roub.krabot.domain.port.out.KralandScrapingPort;
+import arn.roub.krabot.infrastructure.config.KralandConfig;
 import arn.roub.krabot.shared.exception.ScrapingException;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.net.CookieManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.net.ProxySelector;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 /**
  * Adapter pour le scraping de Kraland.
@@ -31,49 +52,175 @@ import java.util.concurrent.Executors;
 public class KralandScrapingAdapter implements KralandScrapingPort {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(KralandScrapingAdapter.class);
-    private static final String KRAMAIL_URL = "http://www.kraland.org/kramail";
-    private static final String AUTH_URL = "http://www.kraland.org/accueil";
-    private static final String PLATEAU_URL = "http://www.kraland.org/jouer/plateau";
-    private static final String AJX_URL_BASE = "http://www.kraland.org/ajx/";
-
-    private final HttpClient httpClient;
+    private static final int MAX_KRAMAIL_PAGES = 10;
+
+    private final String baseUrl;
+    private final String origin;
+    private final String kramailUrl;
+    private final String authUrl;
+    private final String plateauUrl;
+    private final String ajxUrlBase;
+    private final ExecutorService executor;
+    private final KralandTransport transport;
     private final KralandHtmlParser parser;
-
-    public KralandScrapingAdapter() {
-        this.httpClient = HttpClient.newBuilder()
+    private final KralandKramailStreamParser streamParser;
+    private final KralandPagePrefilter prefilter;
+    private final LoginPageDetector loginPageDetector;
+    private final KralandPageCache pageCache;
+    private final KralandRateLimiter rateLimiter;
+    private final KralandContentDecoder contentDecoder;
+    private final KralandCharacteristicsHarvester characteristicsHarvester;
+    private final KralandPageBodyHandler pageBodyHandler;
+    private final Map<String, KralandSessionManager> sessions = new ConcurrentHashMap<>();
+    private final Duration sessionIdleTimeout;
+    private final Duration sessionRefreshAhead;
+    private final Path sessionCookieDir;
+    private final boolean streaming;
+    private final boolean incremental;
+    private final boolean fragmentPolling;
+    private final Map<String, KralandHtmlParser.AjaxOrderTrigger> countersFragments = new ConcurrentHashMap<>();
+    /** Génération de session dans laquelle le fragment des compteurs a été cherché, trouvé ou non, par compte */
+    private final Map<String, Long> countersFragmentDiscoveries = new ConcurrentHashMap<>();
+    /** État du dernier tick par login et page de personnage : une même URL peut désigner une boîte partagée */
+    private final Map<AccountPage, Integer> lastUnreadCounts = new ConcurrentHashMap<>();
+    private final Map<AccountPage, List<Kramail>> lastKramails = new ConcurrentHashMap<>();
+    private final Semaphore accountFetchPermits;
+    private final Duration tickDeadline;
+
+    public KralandScrapingAdapter(KralandConfig kralandConfig, KralandPageCache pageCache,
+                                  KralandRateLimiter rateLimiter, KralandContentDecoder contentDecoder,
+                                  KralandCharacteristicsHarvester characteristicsHarvester) {
+        KralandConfig.Scraping scraping = kralandConfig.scraping();
+        if (scraping.concurrency() < 1) {
+            throw new IllegalArgumentException("Scraping concurrency must be >= 1");
+        }
+        this.baseUrl = kralandConfig.baseUrl().endsWith("/") ? kralandConfig.baseUrl() : kralandConfig.baseUrl() + "/";
+        this.origin = baseUrl.substring(0, baseUrl.length() - 1);
+        this.kramailUrl = baseUrl + "kramail";
+        this.authUrl = baseUrl + "accueil";
+        this.plateauUrl = baseUrl + "jouer/plateau";
+        this.ajxUrlBase = baseUrl + "ajx/";
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        // Cookies et redirections sont gérés par la session de chaque compte (KralandSessionManager#send)
+        HttpClient httpClient = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(30))
-                .cookieHandler(new CookieManager())
-                .followRedirects(HttpClient.Redirect.ALWAYS)
+                .followRedirects(HttpClient.Redirect.NEVER)
                 .priority(1)
                 .proxy(ProxySelector.getDefault())
                 .version(HttpClient.Version.HTTP_2)
-                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .executor(executor)
                 .build();
-        this.parser = new KralandHtmlParser();
+        this.transport = transport(KralandTransport.of(httpClient), kralandConfig.traffic());
+        this.parser = new KralandHtmlParser(baseUrl);
+        this.streamParser = new KralandKramailStreamParser(parser);
+        this.prefilter = new KralandPagePrefilter();
+        this.loginPageDetector = new LoginFormPageDetector();
+        this.streaming = scraping.streaming();
+        this.incremental = scraping.incremental();
+        this.fragmentPolling = scraping.fragmentPolling();
+        this.pageCache = pageCache;
+        this.rateLimiter = rateLimiter;
+        this.contentDecoder = contentDecoder;
+        this.characteristicsHarvester = characteristicsHarvester;
+        this.pageBodyHandler = new KralandPageBodyHandler(scraping.maxBodySize().asLongValue());
+        this.accountFetchPermits = new Semaphore(scraping.concurrency(), true);
+        this.tickDeadline = scraping.tickDeadline();
+        this.sessionIdleTimeout = kralandConfig.session().idleTimeout();
+        this.sessionRefreshAhead = kralandConfig.session().refreshAhead();
+        this.sessionCookieDir = kralandConfig.session().cookieDir().orElse(null);
+    }
+
+    /**
+     * Transport réseau, éventuellement enregistré dans une archive, ou remplacé par le rejeu d'une archive.
+     */
+    private static KralandTransport transport(KralandTransport network, KralandConfig.Traffic traffic) {
+        if (traffic.mode() == KralandConfig.Traffic.Mode.OFF) {
+            return network;
+        }
+        Path archive = traffic.archive().orElseThrow(() ->
+                new IllegalArgumentException("A traffic archive is required in " + traffic.mode() + " mode"));
+        if (traffic.mode() == KralandConfig.Traffic.Mode.RECORD) {
+            LOGGER.info("Recording Kraland traffic to {}", archive);
+            return new KralandTrafficRecorder(network, archive);
+        }
+        try {
+            LOGGER.info("Replaying Kraland traffic from {} with {} latency", archive, traffic.replayLatency());
+            return KralandTrafficReplayer.load(archive, traffic.replayLatency());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read traffic archive " + archive, e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sessions.values().forEach(KralandSessionManager::persist);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Session du compte : chaque login Kraland a ses propres cookies, et son fichier de sauvegarde
+     * si un répertoire est configuré.
+     */
+    private KralandSessionManager sessionFor(Account account) {
+        return sessions.computeIfAbsent(account.username(), username -> new KralandSessionManager(
+                transport,
+                URI.create(baseUrl),
+                rateLimiter,
+                contentDecoder,
+                sessionIdleTimeout,
+                sessionRefreshAhead,
+                sessionCookieDir != null ? sessionCookieDir.resolve(cookieFileName(username)) : null));
+    }
+
+    private static String cookieFileName(String username) {
+        return username.replaceAll("[^A-Za-z0-9._-]", "_") + ".cookies";
     }
 
     @Override
     public ScrapingResult scrape(Account account) {
+        long deadline = System.nanoTime() + tickDeadline.toNanos();
         try {
-            HttpResponse<String> response = executeWithAuth(KRAMAIL_URL, account);
-            String body = response.body();
-            boolean hasNotification = parser.hasNotification(body);
+            Counters counters = fetchCounters(account);
+            boolean hasNotification = counters.hasNotification();
 
-            List<KralandHtmlParser.AccountInfo> accounts = parser.extractAccounts(body);
+            List<KralandHtmlParser.AccountInfo> accounts = counters.accounts();
             if (accounts.isEmpty()) {
-                LOGGER.warn("No kramail accounts found in sidebar. Page length: {}", body.length());
+                LOGGER.warn("No kramail accounts found in sidebar. Page length: {}", counters.pageLength());
             }
 
+            List<KralandHtmlParser.AccountInfo> accountsToFetch = selectAccountsToFetch(accounts, account);
+
             List<Kramail> allKramails = new ArrayList<>();
+            List<String> failedAccounts = new ArrayList<>();
+            Exception lastFailure = null;
+
+            List<Future<List<Kramail>>> futures = fetchAllAccountKramails(accountsToFetch, account, deadline);
+            for (int i = 0; i < accountsToFetch.size(); i++) {
+                KralandHtmlParser.AccountInfo accountInfo = accountsToFetch.get(i);
+                try {
+                    allKramails.addAll(futures.get(i).get());
+                    lastUnreadCounts.put(new AccountPage(account.username(), accountInfo.url()), accountInfo.unreadCount());
+                } catch (CancellationException e) {
+                    LOGGER.warn("Account '{}': tick deadline of {} exceeded", accountInfo.name(), tickDeadline);
+                    failedAccounts.add(accountInfo.name());
+                    lastFailure = new ScrapingException("Tick deadline exceeded for account " + accountInfo.name());
+                } catch (ExecutionException e) {
+                    LOGGER.warn("Account '{}': failed to scrape kramails: {}", accountInfo.name(), e.getCause().getMessage());
+                    failedAccounts.add(accountInfo.name());
+                    lastFailure = e.getCause() instanceof Exception cause ? cause : e;
+                }
+            }
 
-            for (KralandHtmlParser.AccountInfo accountInfo : accounts) {
-                List<Kramail> kramails = scrapeAccountKramails(accountInfo, account);
-                allKramails.addAll(kramails);
+            if (!accountsToFetch.isEmpty() && failedAccounts.size() == accountsToFetch.size()) {
+                throw new ScrapingException("Failed to scrape kramails for every account", lastFailure);
             }
 
-            LOGGER.info("Found {} unread kramails across {} accounts", allKramails.size(), accounts.size());
+            LOGGER.info("Found {} unread kramails across {} accounts ({} fetched, {} failed)",
+                    allKramails.size(), accounts.size(), accountsToFetch.size(), failedAccounts.size());
+            LOGGER.debug("Page cache: {} hits, {} misses", pageCache.hits(), pageCache.misses());
+            LOGGER.debug("Transfer: {} bytes on wire, {} bytes decoded", contentDecoder.wireBytes(), contentDecoder.decodedBytes());
 
-            return new ScrapingResult(allKramails, hasNotification);
+            return new ScrapingResult(allKramails, hasNotification, failedAccounts);
         } catch (ScrapingException e) {
             throw e;
         } catch (Exception e) {
@@ -81,6 +228,69 @@ public class KralandScrapingAdapter implements KralandScrapingPort {
         }
     }
 
+    /**
+     * Badge des notifications et compteurs de la sidebar. Si le polling par fragment est actif et qu'un fragment
+     * AJAX des compteurs a été repéré dans une page kramail précédente, seul ce fragment est téléchargé ; sinon,
+     * ou si le fragment ne donne plus de compteurs (token expiré, erreur), la page kramail complète est lue.
+     * La recherche du fragment n'a lieu qu'une fois par session (génération de login) : une page sans fragment
+     * n'est pas réexaminée à chaque tick, seulement après une nouvelle connexion ou l'échec du fragment connu.
+     */
+    private Counters fetchCounters(Account account) throws Exception {
+        KralandHtmlParser.AjaxOrderTrigger fragment = fragmentPolling ? countersFragments.get(account.username()) : null;
+        if (fragment != null) {
+            Optional<Counters> polled = pollCountersFragment(fragment, account);
+            if (polled.isPresent()) {
+                return polled.get();
+            }
+            LOGGER.info("Counters fragment unusable, falling back to the full kramail page");
+            countersFragments.remove(account.username(), fragment);
+            countersFragmentDiscoveries.remove(account.username());
+        }
+
+        try (KralandPageBody body = executeWithAuth(kramailUrl, account)) {
+            ParsedKralandPage kramailPage = ParsedKralandPage.parse(body);
+            boolean notificationBadge = prefilter.scan(body).notificationBadge();
+            if (fragmentPolling && claimCountersFragmentDiscovery(account)) {
+                parser.findCountersAjaxTrigger(kramailPage).ifPresentOrElse(trigger -> {
+                    LOGGER.debug("Counters fragment found, next ticks will poll it instead of the kramail page");
+                    countersFragments.put(account.username(), trigger);
+                }, () -> LOGGER.debug("No counters fragment on the kramail page, not looking again until next login"));
+            }
+            return new Counters(notificationBadge && parser.hasNotification(kramailPage),
+                    parser.extractAccounts(kramailPage), body.length());
+        }
+    }
+
+    private boolean claimCountersFragmentDiscovery(Account account) {
+        long generation = sessionFor(account).generation();
+        Long previous = countersFragmentDiscoveries.put(account.username(), generation);
+        return previous == null || previous != generation;
+    }
+
+    private Optional<Counters> pollCountersFragment(KralandHtmlParser.AjaxOrderTrigger fragment, Account account)
+            throws InterruptedException {
+        String url = ajxUrlBase + fragment.param() + "-" + Instant.now().toEpochMilli() + "/" + fragment.token();
+        try (KralandPageBody body = executeWithAuth(url, account)) {
+            ParsedKralandPage page = ParsedKralandPage.parse(body);
+            List<KralandHtmlParser.AccountInfo> accounts = parser.extractAccounts(page);
+            if (accounts.isEmpty()) {
+                return Optional.empty();
+            }
+            LOGGER.debug("Counters fragment: {} bytes", body.length());
+            boolean notificationBadge = prefilter.scan(body).notificationBadge();
+            return Optional.of(new Counters(notificationBadge && parser.hasNotification(page), accounts, body.length()));
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            LOGGER.debug("Counters fragment request failed: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * POST du formulaire de login. Appelé uniquement via {@link KralandSessionManager}, qui regroupe les connexions
+     * concurrentes.
+     */
     private void performAuthentication(Account account) throws Exception {
         LOGGER.debug("Performing authentication...");
 
@@ -88,22 +298,20 @@ public class KralandScrapingAdapter implements KralandScrapingPort {
                 + "&c%5B2%5D=" + URLEncoder.encode(account.password(), StandardCharsets.ISO_8859_1)
                 + "&f%5B1%5D=1";
 
-        HttpRequest authRequest = HttpRequest.newBuilder(new URI(AUTH_URL))
+        HttpRequest authRequest = HttpRequest.newBuilder(new URI(authUrl))
                 .headers(
                         "User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36",
                         "Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,*/*;q=0.8",
                         "Accept-Language", "fr,fr-FR;q=0.8,en-US;q=0.5,en;q=0.3",
                         "Content-Type", "application/x-www-form-urlencoded",
-                        "Origin", "http://www.kraland.org",
-                        "Referer", "http://www.kraland.org/"
+                        "Origin", origin,
+                        "Referer", baseUrl
                 )
                 .POST(HttpRequest.BodyPublishers.ofString(body))
                 .build();
 
-        HttpResponse<String> authResponse = httpClient.send(
-                authRequest,
-                HttpResponse.BodyHandlers.ofString(StandardCharsets.ISO_8859_1)
-        );
+        // Seul le statut compte : le corps n'est pas lu
+        HttpResponse<Void> authResponse = sessionFor(account).send(authRequest, HttpResponse.BodyHandlers.discarding());
 
         if (authResponse.statusCode() >= 400) {
             throw new ScrapingException("Authentication failed with status: " + authResponse.statusCode());
@@ -114,66 +322,388 @@ public class KralandScrapingAdapter implements KralandScrapingPort {
 
     /**
      * Exécute une requête GET et gère automatiquement la ré-authentification si la session a expiré.
+     *
+     * @return le corps de la page, que l'appelant doit fermer
      */
-    private HttpResponse<String> executeWithAuth(String url, Account account) throws Exception {
+    private KralandPageBody executeWithAuth(String url, Account account) throws Exception {
+        KralandSessionManager session = sessionFor(account);
+        long generation = session.ensureSession(() -> performAuthentication(account));
         HttpRequest request = HttpRequest.newBuilder(new URI(url)).GET().build();
-        HttpResponse<String> response = httpClient.send(request,
-                HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        HttpResponse<KralandPageBody> response = fetchPage(session, request, "Request failed with status: ");
 
+        // Si la session a expiré, on s'authentifie et on réessaie
+        if (isLoginPage(response)) {
+            LOGGER.info("Session expired for {}, re-authenticating...", url);
+            session.reauthenticate(generation, () -> performAuthentication(account));
+
+            response = fetchPage(session, request, "Request failed after re-auth with status: ");
+            if (isLoginPage(response)) {
+                throw new ScrapingException("Authentication failed: still on login page after re-auth for " + url);
+            }
+        }
+
+        session.markSuccess();
+        return response.body();
+    }
+
+    /**
+     * Le corps d'une réponse en erreur est rendu au pool avant de lever l'exception.
+     */
+    private HttpResponse<KralandPageBody> fetchPage(KralandSessionManager session, HttpRequest request,
+                                                    String failureMessage) throws Exception {
+        HttpResponse<KralandPageBody> response = session.send(request, pageBodyHandler);
         if (response.statusCode() >= 400) {
-            throw new ScrapingException("Request failed with status: " + response.statusCode());
+            closeBody(response);
+            throw new ScrapingException(failureMessage + response.statusCode());
         }
+        return response;
+    }
 
-        // Si la session a expiré, on s'authentifie et on réessaie
-        if (parser.requiresAuthentication(response.body())) {
+    /**
+     * La page de connexion est reconnue sur les octets bruts ; si c'est elle, son corps est rendu au pool.
+     */
+    private boolean isLoginPage(HttpResponse<KralandPageBody> response) {
+        if (response.body() == null || !loginPageDetector.isLoginPage(response.body().asciiView())) {
+            return false;
+        }
+        closeBody(response);
+        return true;
+    }
+
+    private static void closeBody(HttpResponse<KralandPageBody> response) {
+        if (response.body() != null) {
+            response.body().close();
+        }
+    }
+
+    /**
+     * Ne garde que les personnages dont la page peut contenir des kramails non lus : compteur de la sidebar
+     * non nul, inconnu, ou différent de celui du dernier tick réussi. Un personnage dont le compteur reste à 0
+     * n'a rien à remonter et sa page n'est pas téléchargée.
+     */
+    private List<KralandHtmlParser.AccountInfo> selectAccountsToFetch(List<KralandHtmlParser.AccountInfo> accounts,
+                                                                      Account account) {
+        List<KralandHtmlParser.AccountInfo> accountsToFetch = new ArrayList<>(accounts.size());
+        for (KralandHtmlParser.AccountInfo accountInfo : accounts) {
+            Integer lastUnreadCount = lastUnreadCounts.get(new AccountPage(account.username(), accountInfo.url()));
+            if (accountInfo.unreadCount() == 0 && lastUnreadCount != null && lastUnreadCount == 0) {
+                LOGGER.debug("Account '{}': no unread kramails in sidebar, skipping", accountInfo.name());
+                continue;
+            }
+            accountsToFetch.add(accountInfo);
+        }
+        return accountsToFetch;
+    }
+
+    /**
+     * Récupère en parallèle les kramails de chaque personnage sur l'executor de threads virtuels du client HTTP.
+     * Le nombre de pages en vol est borné par {@code accountFetchPermits} ; les tâches encore en cours à
+     * l'échéance du tick sont annulées (interrompues) et leurs futures renvoient une {@link CancellationException}.
+     */
+    private List<Future<List<Kramail>>> fetchAllAccountKramails(
+            List<KralandHtmlParser.AccountInfo> accounts,
+            Account account,
+            long deadline
+    ) throws InterruptedException {
+        if (accounts.isEmpty()) {
+            return List.of();
+        }
+
+        List<Callable<List<Kramail>>> tasks = new ArrayList<>(accounts.size());
+        for (KralandHtmlParser.AccountInfo accountInfo : accounts) {
+            tasks.add(() -> {
+                accountFetchPermits.acquire();
+                try {
+                    return scrapeAccountKramails(accountInfo, account);
+                } finally {
+                    accountFetchPermits.release();
+                }
+            });
+        }
+
+        long remaining = Math.max(0, deadline - System.nanoTime());
+        return executor.invokeAll(tasks, remaining, TimeUnit.NANOSECONDS);
+    }
+
+    private List<Kramail> scrapeAccountKramails(KralandHtmlParser.AccountInfo accountInfo, Account account) throws Exception {
+        List<Kramail> kramails;
+        if (incremental && accountInfo.unreadCount() != KralandHtmlParser.AccountInfo.UNKNOWN_UNREAD) {
+            kramails = scanAccountKramails(accountInfo, account);
+        } else {
+            kramails = streaming
+                    ? streamAccountKramails(accountInfo.url(), account)
+                    : fetchAccountKramails(accountInfo, account);
+        }
+        if (incremental) {
+            lastKramails.put(new AccountPage(account.username(), accountInfo.url()), kramails);
+        }
+        LOGGER.debug("Account '{}': found {} unread kramails", accountInfo.name(), kramails.size());
+        return kramails;
+    }
+
+    /**
+     * Récupère une page de personnage. Si son empreinte n'a pas changé depuis le dernier parsing,
+     * les kramails en cache sont renvoyés sans re-parser la page.
+     */
+    private List<Kramail> fetchAccountKramails(KralandHtmlParser.AccountInfo accountInfo, Account account) throws Exception {
+        String url = accountInfo.url();
+        KralandSessionManager session = sessionFor(account);
+        long generation = session.ensureSession(() -> performAuthentication(account));
+        String username = account.username();
+        HttpResponse<KralandPageBody> response = fetchPage(session, pageCache.conditionalRequest(username, url),
+                "Request failed with status: ");
+        try {
+            Optional<List<Kramail>> cached =
+                    pageCache.lookup(username, url, response.statusCode(), response.headers(), response.body());
+            if (cached.isPresent()) {
+                session.markSuccess();
+                return cached.get();
+            }
+
+            if (isLoginPage(response)) {
+                LOGGER.info("Session expired for {}, re-authenticating...", url);
+                session.reauthenticate(generation, () -> performAuthentication(account));
+
+                response = fetchPage(session, pageCache.conditionalRequest(username, url), "Request failed with status: ");
+                cached = pageCache.lookup(username, url, response.statusCode(), response.headers(), response.body());
+                if (cached.isPresent()) {
+                    session.markSuccess();
+                    return cached.get();
+                }
+
+                if (isLoginPage(response)) {
+                    throw new ScrapingException("Authentication failed: still on login page after re-auth for " + url);
+                }
+            }
+
+            session.markSuccess();
+            KralandPageBody body = response.body();
+            // Sans <strong> dans un tableau, aucune ligne ne peut être un kramail non lu : le DOM est inutile
+            List<Kramail> kramails = prefilter.scan(body).unreadRow()
+                    ? parser.parseKramails(ParsedKralandPage.parse(body))
+                    : List.of();
+            pageCache.store(username, url, response.headers(), body, kramails);
+            return kramails;
+        } finally {
+            closeBody(response);
+        }
+    }
+
+    /**
+     * Lecture incrémentale : seuls les kramails arrivés depuis le dernier tick sont extraits de la page, la suite
+     * du tableau, à partir du premier kramail déjà remonté, est reprise du tick précédent. Chaque page est lue en
+     * flux et sa réponse fermée dès la première ligne lue ou le premier kramail connu : ni le reste de la page ni
+     * son DOM complet ne sont construits. Les pages suivantes ne sont lues que si toutes les lignes de la page
+     * courante sont non lues et que le compteur de la sidebar en annonce davantage.
+     * <p>
+     * La lecture suppose les non lus en tête du tableau : si le total ne correspond pas au compteur de la sidebar,
+     * la dernière page lue, seule à avoir été interrompue, est relue en entier ; les non lus des pages précédentes,
+     * lues jusqu'au bout, sont conservés.
+     */
+    private List<Kramail> scanAccountKramails(KralandHtmlParser.AccountInfo accountInfo, Account account)
+            throws Exception {
+        String url = accountInfo.url();
+        List<Kramail> previous = lastKramails.getOrDefault(new AccountPage(account.username(), url), List.of());
+        Set<KramailId> previousIds = new HashSet<>();
+        for (Kramail kramail : previous) {
+            previousIds.add(kramail.id());
+        }
+
+        ScannedPage firstPage = scanPage(url, account, previousIds::contains, true);
+        KralandHtmlParser.KramailScan scan = firstPage.scan();
+        String pageUrl = url;
+        List<Kramail> completePages = new ArrayList<>();
+        List<Kramail> kramails = new ArrayList<>();
+        for (int pages = 1; ; pages++) {
+            kramails.addAll(scan.kramails());
+            if (scan.knownId() != null) {
+                for (int i = 0; i < previous.size(); i++) {
+                    if (previous.get(i).id().equals(scan.knownId())) {
+                        kramails.addAll(previous.subList(i, previous.size()));
+                        break;
+                    }
+                }
+                break;
+            }
+            if (scan.nextPageUrl() == null || kramails.size() >= accountInfo.unreadCount()
+                    || pages == MAX_KRAMAIL_PAGES) {
+                break;
+            }
+            LOGGER.debug("Account '{}': every row unread, reading {}", accountInfo.name(), scan.nextPageUrl());
+            completePages.addAll(scan.kramails());
+            pageUrl = scan.nextPageUrl();
+            scan = scanPage(pageUrl, account, previousIds::contains, false).scan();
+        }
+
+        if (kramails.size() != accountInfo.unreadCount()) {
+            LOGGER.debug("Account '{}': incremental scan found {} unread kramails, sidebar says {}, reading {} in full",
+                    accountInfo.name(), kramails.size(), accountInfo.unreadCount(), pageUrl);
+            List<Kramail> fullScan = new ArrayList<>(completePages);
+            fullScan.addAll(streamAccountKramails(pageUrl, account));
+            return fullScan;
+        }
+        if (firstPage.headers() != null) {
+            pageCache.store(account.username(), url, firstPage.headers(), null, kramails);
+        }
+        return kramails;
+    }
+
+    /**
+     * Lecture incrémentale en flux d'une page de kramails, avec ré-authentification si la session a expiré.
+     *
+     * @param conditional true pour la première page : inchangée depuis le tick précédent, ses kramails en cache
+     *                    sont repris sans la relire
+     */
+    private ScannedPage scanPage(String url, Account account, Predicate<KramailId> known, boolean conditional)
+            throws Exception {
+        KralandSessionManager session = sessionFor(account);
+        long generation = session.ensureSession(() -> performAuthentication(account));
+        ScannedPage page = streamScan(session, account, url, known, conditional);
+        if (page.requiresAuthentication()) {
             LOGGER.info("Session expired for {}, re-authenticating...", url);
-            performAuthentication(account);
+            session.reauthenticate(generation, () -> performAuthentication(account));
 
-            response = httpClient.send(request,
-                    HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            page = streamScan(session, account, url, known, conditional);
+            if (page.requiresAuthentication()) {
+                throw new ScrapingException("Authentication failed: still on login page after re-auth for " + url);
+            }
+        }
+        session.markSuccess();
+        return page;
+    }
 
-            if (response.statusCode() >= 400) {
-                throw new ScrapingException("Request failed after re-auth with status: " + response.statusCode());
+    private ScannedPage streamScan(KralandSessionManager session, Account account, String url,
+                                   Predicate<KramailId> known, boolean conditional) throws Exception {
+        HttpRequest request = conditional
+                ? pageCache.conditionalRequest(account.username(), url)
+                : HttpRequest.newBuilder(new URI(url)).GET().build();
+        HttpResponse<InputStream> response = session.send(request, pageBodyHandler.streaming());
+
+        if (response.statusCode() >= 400) {
+            response.body().close();
+            throw new ScrapingException("Request failed with status: " + response.statusCode());
+        }
+
+        if (conditional) {
+            Optional<List<Kramail>> cached =
+                    pageCache.lookup(account.username(), url, response.statusCode(), response.headers(), null);
+            if (cached.isPresent()) {
+                response.body().close();
+                return new ScannedPage(new KralandHtmlParser.KramailScan(cached.get(), null, null), null, false);
             }
+        }
+
+        KralandKramailStreamParser.StreamedScan streamed =
+                streamParser.scan(new InputStreamReader(response.body(), streamCharset(response)), url, known);
+        return new ScannedPage(streamed.scan(), response.headers(), streamed.requiresAuthentication());
+    }
+
+    /**
+     * Variante en flux de {@link #executeWithAuth} pour une page de personnage : le corps est lu au fil de
+     * l'eau et la réponse est fermée dès la fin du tableau des kramails, sans télécharger le reste de la page.
+     */
+    private List<Kramail> streamAccountKramails(String url, Account account) throws Exception {
+        KralandSessionManager session = sessionFor(account);
+        long generation = session.ensureSession(() -> performAuthentication(account));
+        KralandKramailStreamParser.StreamedKramails streamed = streamKramails(session, account, url);
+        if (streamed.requiresAuthentication()) {
+            LOGGER.info("Session expired for {}, re-authenticating...", url);
+            session.reauthenticate(generation, () -> performAuthentication(account));
 
-            if (parser.requiresAuthentication(response.body())) {
+            streamed = streamKramails(session, account, url);
+            if (streamed.requiresAuthentication()) {
                 throw new ScrapingException("Authentication failed: still on login page after re-auth for " + url);
             }
         }
+        session.markSuccess();
+        return streamed.kramails();
+    }
 
-        return response;
+    /**
+     * Le corps n'étant pas lu en entier, seuls l'ETag et le Last-Modified permettent de réutiliser le cache.
+     */
+    private KralandKramailStreamParser.StreamedKramails streamKramails(KralandSessionManager session, Account account,
+                                                                       String url) throws Exception {
+        String username = account.username();
+        HttpResponse<InputStream> response = session.send(pageCache.conditionalRequest(username, url),
+                pageBodyHandler.streaming());
+
+        if (response.statusCode() >= 400) {
+            response.body().close();
+            throw new ScrapingException("Request failed with status: " + response.statusCode());
+        }
+
+        Optional<List<Kramail>> cached = pageCache.lookup(username, url, response.statusCode(), response.headers(), null);
+        if (cached.isPresent()) {
+            response.body().close();
+            return new KralandKramailStreamParser.StreamedKramails(cached.get(), false);
+        }
+
+        KralandKramailStreamParser.StreamedKramails streamed =
+                streamParser.parse(new InputStreamReader(response.body(), streamCharset(response)), url);
+        if (!streamed.requiresAuthentication()) {
+            pageCache.store(username, url, response.headers(), null, streamed.kramails());
+        }
+        return streamed;
     }
 
-    private List<Kramail> scrapeAccountKramails(KralandHtmlParser.AccountInfo accountInfo, Account account) throws Exception {
-        HttpResponse<String> response = executeWithAuth(accountInfo.url(), account);
+    private static Charset streamCharset(HttpResponse<?> response) {
+        Charset charset = KralandPageBodyHandler.headerCharset(response.headers());
+        return charset != null ? charset : StandardCharsets.UTF_8;
+    }
 
-        List<Kramail> kramails = parser.parseKramails(response.body());
-        LOGGER.debug("Account '{}': found {} unread kramails", accountInfo.name(), kramails.size());
-        return kramails;
+    @Override
+    public boolean isReachable() {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(new URI(baseUrl))
+                    .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                    .timeout(Duration.ofSeconds(5))
+                    .build();
+            rateLimiter.acquire();
+            int status = transport.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            return status < 500;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            LOGGER.debug("Kraland unreachable: {}", e.getMessage());
+            return false;
+        }
     }
 
     @Override
     public boolean sleepIfAvailable(Account account) {
         try {
-            HttpResponse<String> plateauResponse = executeWithAuth(PLATEAU_URL, account);
+            ParsedKralandPage plateauPage;
+            try (KralandPageBody plateauResponse = executeWithAuth(plateauUrl, account)) {
+                if (characteristicsHarvester.isEnabled()) {
+                    characteristicsHarvester.harvest(plateauResponse.text());
+                }
+                if (!prefilter.scan(plateauResponse).sleepButton()) {
+                    LOGGER.debug("Sleep action not available (no sleep button marker in plateau page)");
+                    return false;
+                }
+                plateauPage = ParsedKralandPage.parse(plateauResponse);
+            }
 
-            if (!parser.isSleepButtonAvailable(plateauResponse.body())) {
+            if (!parser.isSleepButtonAvailable(plateauPage)) {
                 LOGGER.debug("Sleep action not available (already done today)");
                 return false;
             }
 
-            KralandHtmlParser.AjaxOrderTrigger trigger = parser.findSleepAjaxTrigger(plateauResponse.body())
+            KralandHtmlParser.AjaxOrderTrigger trigger = parser.findSleepAjaxTrigger(plateauPage)
                     .orElseThrow(() -> new ScrapingException("Sleep button available but AJAX trigger not found"));
 
-            String ajxUrl = AJX_URL_BASE + trigger.param() + "-" + Instant.now().toEpochMilli() + "/" + trigger.token();
-            HttpResponse<String> orderFragment = executeWithAuth(ajxUrl, account);
-
-            Map<String, String> formFields = parser.extractOrderFormFields(orderFragment.body());
+            String ajxUrl = ajxUrlBase + trigger.param() + "-" + Instant.now().toEpochMilli() + "/" + trigger.token();
+            Map<String, String> formFields;
+            try (KralandPageBody orderFragment = executeWithAuth(ajxUrl, account)) {
+                formFields = parser.extractOrderFormFields(ParsedKralandPage.parse(orderFragment));
+            }
             if (formFields.isEmpty()) {
                 throw new ScrapingException("Sleep order form fields not found in AJAX fragment");
             }
 
-            submitOrderForm(formFields);
+            submitOrderForm(account, formFields);
             LOGGER.info("Sleep order submitted successfully");
             return true;
         } catch (ScrapingException e) {
@@ -183,7 +713,24 @@ public class KralandScrapingAdapter implements KralandScrapingPort {
         }
     }
 
-    private void submitOrderForm(Map<String, String> formFields) throws Exception {
+    @Override
+    public void refreshCharacteristics(Account account) {
+        if (!characteristicsHarvester.isEnabled()) {
+            LOGGER.debug("No characteristics namespace configured, plateau page not fetched");
+            return;
+        }
+        try {
+            try (KralandPageBody plateau = executeWithAuth(plateauUrl, account)) {
+                characteristicsHarvester.harvest(plateau.text());
+            }
+        } catch (ScrapingException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ScrapingException("Failed to fetch plateau page for characteristics", e);
+        }
+    }
+
+    private void submitOrderForm(Account account, Map<String, String> formFields) throws Exception {
         StringBuilder body = new StringBuilder();
         for (Map.Entry<String, String> field : formFields.entrySet()) {
             if (!body.isEmpty()) {
@@ -194,19 +741,35 @@ public class KralandScrapingAdapter implements KralandScrapingPort {
                     .append(URLEncoder.encode(field.getValue(), StandardCharsets.UTF_8));
         }
 
-        HttpRequest request = HttpRequest.newBuilder(new URI(PLATEAU_URL))
+        HttpRequest request = HttpRequest.newBuilder(new URI(plateauUrl))
                 .headers(
                         "Content-Type", "application/x-www-form-urlencoded",
-                        "Origin", "http://www.kraland.org",
-                        "Referer", PLATEAU_URL
+                        "Origin", origin,
+                        "Referer", plateauUrl
                 )
                 .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
                 .build();
 
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        // Seul le statut compte : le corps n'est pas lu
+        HttpResponse<Void> response = sessionFor(account).send(request, HttpResponse.BodyHandlers.discarding());
 
         if (response.statusCode() >= 400) {
             throw new ScrapingException("Sleep order submission failed with status: " + response.statusCode());
         }
     }
+
+    /**
+     * Ce qu'un tick lit de la page kramail ou du fragment des compteurs.
+     */
+    private record Counters(boolean hasNotification, List<KralandHtmlParser.AccountInfo> accounts, int pageLength) {}
+
+    /**
+     * @param headers les en-têtes de la réponse, ou null si les kramails viennent du cache
+     */
+    private record ScannedPage(KralandHtmlParser.KramailScan scan, HttpHeaders headers, boolean requiresAuthentication) {}
+
+    /**
+     * Page de personnage vue par un login.
+     */
+    private record AccountPage(String username, String url) {}
 }
@@ -0,0 +1,386 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.HttpCookie;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Gestion de la session Kraland d'un compte, autour de son propre {@link CookieManager}.
+ * <p>
+ * Le {@link KralandTransport} (un {@link HttpClient} en temps normal) est partagé entre tous les comptes : il ne gère
+ * ni cookies ni redirections, c'est
+ * {@link #send(HttpRequest, HttpResponse.BodyHandler)} qui joint les cookies du compte à chaque requête,
+ * enregistre les {@code Set-Cookie} de chaque réponse et suit les redirections, y compris celle du login.
+ * Les réponses sont demandées compressées et décodées au fil de l'eau par le {@link KralandContentDecoder}.
+ * <p>
+ * La session est considérée valide jusqu'à la première de ces échéances : expiration d'un cookie Kraland,
+ * ou dernière page authentifiée + {@code idleTimeout} (le cookie de session PHP n'a pas de date d'expiration).
+ * Une session expirée est renouvelée avant la requête, ce qui évite le triplet page de login / POST / nouvelle
+ * requête ; une session proche de l'échéance est renouvelée en arrière-plan pendant que le tick continue. Un seul
+ * renouvellement en arrière-plan est tenté par échéance, et aucun pendant {@value #BACKGROUND_REFRESH_BACKOFF_SECONDS}
+ * secondes après un échec : les requêtes d'un tick ne déclenchent pas chacune leur POST de login.
+ * <p>
+ * Les connexions concurrentes sont regroupées : un seul POST de login est en vol, partagé par tous les appelants.
+ * Si un fichier est configuré, les cookies y sont sauvegardés après chaque login et à l'arrêt,
+ * puis rechargés au démarrage.
+ */
+public class KralandSessionManager {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KralandSessionManager.class);
+    private static final URI KRALAND_URI = URI.create("http://www.kraland.org/");
+    private static final String LAST_SUCCESS_ENTRY = "last-success";
+    private static final String COOKIE_ENTRY = "cookie";
+    private static final long NO_EXPIRY = -1;
+    private static final int MAX_REDIRECTS = 5;
+    private static final long BACKGROUND_REFRESH_BACKOFF_SECONDS = 60;
+    private static final List<String> REDIRECT_COPIED_HEADERS = List.of("User-Agent", "Accept", "Accept-Language");
+
+    private final KralandTransport transport;
+    private final URI baseUri;
+    private final KralandRateLimiter rateLimiter;
+    private final KralandContentDecoder contentDecoder;
+    private final CookieManager cookieManager;
+    private final Duration idleTimeout;
+    private final Duration refreshAhead;
+    private final Path cookieFile;
+    private final Clock clock;
+
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicReference<CompletableFuture<Void>> inFlightLogin = new AtomicReference<>();
+    private final AtomicReference<BackgroundRefresh> backgroundRefresh = new AtomicReference<>();
+    private volatile Instant lastSuccess;
+    private volatile Instant cookieExpiry;
+
+    /**
+     * @param transport      transport partagé, sans cookies ni redirections
+     * @param baseUri        URL de base du site, sous laquelle les cookies de session sont rangés
+     * @param rateLimiter    limiteur partagé par tous les comptes, consulté avant chaque requête
+     * @param contentDecoder décodeur gzip/deflate partagé, qui compte aussi les octets reçus
+     * @param cookieFile     fichier de persistance des cookies, ou null pour garder la session en mémoire
+     */
+    public KralandSessionManager(KralandTransport transport, URI baseUri, KralandRateLimiter rateLimiter,
+                                 KralandContentDecoder contentDecoder, Duration idleTimeout, Duration refreshAhead,
+                                 Path cookieFile) {
+        this(transport, baseUri, rateLimiter, contentDecoder, idleTimeout, refreshAhead, cookieFile, Clock.systemUTC());
+    }
+
+    KralandSessionManager(KralandTransport transport, KralandRateLimiter rateLimiter, KralandContentDecoder contentDecoder,
+                          Duration idleTimeout, Duration refreshAhead, Path cookieFile, Clock clock) {
+        this(transport, KRALAND_URI, rateLimiter, contentDecoder, idleTimeout, refreshAhead, cookieFile, clock);
+    }
+
+    KralandSessionManager(KralandTransport transport, URI baseUri, KralandRateLimiter rateLimiter,
+                          KralandContentDecoder contentDecoder, Duration idleTimeout, Duration refreshAhead,
+                          Path cookieFile, Clock clock) {
+        this.transport = transport;
+        this.baseUri = baseUri;
+        this.rateLimiter = rateLimiter;
+        this.contentDecoder = contentDecoder;
+        this.cookieManager = new CookieManager();
+        this.idleTimeout = idleTimeout;
+        this.refreshAhead = refreshAhead;
+        this.cookieFile = cookieFile;
+        this.clock = clock;
+        load();
+    }
+
+    /**
+     * Action de connexion à Kraland (POST du formulaire de login).
+     */
+    @FunctionalInterface
+    public interface Login {
+        void perform() throws Exception;
+    }
+
+    public CookieManager cookieManager() {
+        return cookieManager;
+    }
+
+    /**
+     * Envoie une requête avec les cookies de ce compte et suit les redirections (GET après 301/302/303,
+     * même méthode après 307/308). Les corps des réponses intermédiaires sont ignorés.
+     * Chaque requête, redirections comprises, attend son jeton auprès du {@link KralandRateLimiter}.
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler)
+            throws IOException, InterruptedException {
+        HttpResponse.BodyHandler<T> decoding = contentDecoder.decoding(bodyHandler);
+        HttpResponse.BodyHandler<T> handler = responseInfo -> isRedirect(responseInfo.statusCode())
+                ? HttpResponse.BodySubscribers.replacing(null)
+                : decoding.apply(responseInfo);
+
+        HttpRequest current = request;
+        for (int redirects = 0; ; redirects++) {
+            rateLimiter.acquire();
+            HttpResponse<T> response = transport.send(prepare(current), handler);
+            cookieManager.put(response.uri(), response.headers().map());
+
+            Optional<String> location = response.headers().firstValue("Location");
+            if (!isRedirect(response.statusCode()) || location.isEmpty()) {
+                return response;
+            }
+            if (redirects == MAX_REDIRECTS) {
+                throw new IOException("Too many redirects for " + request.uri());
+            }
+            current = redirectRequest(current, response.statusCode(), response.uri().resolve(location.get()));
+        }
+    }
+
+    /**
+     * Garantit une session utilisable avant une requête : connexion immédiate si aucune session n'est valide,
+     * renouvellement en arrière-plan si l'échéance est proche.
+     *
+     * @return la génération de session observée, à transmettre à {@link #reauthenticate(long, Login)}
+     */
+    public long ensureSession(Login login) throws Exception {
+        long observed = generation.get();
+        Instant expiry = sessionExpiry();
+        Instant now = clock.instant();
+
+        if (expiry == null || !now.isBefore(expiry)) {
+            LOGGER.debug("No valid Kraland session, authenticating before request");
+            awaitLogin(observed, login);
+        } else if (!now.isBefore(expiry.minus(refreshAhead))) {
+            BackgroundRefresh refresh = claimBackgroundRefresh(expiry, now);
+            if (refresh != null) {
+                LOGGER.debug("Kraland session expires at {}, refreshing in background", expiry);
+                Thread.ofVirtual().name("kraland-session-refresh").start(() -> {
+                    try {
+                        awaitLogin(observed, login);
+                    } catch (Exception e) {
+                        backgroundRefresh.compareAndSet(refresh, refresh.asFailed());
+                        LOGGER.warn("Background Kraland re-authentication failed: {}", e.getMessage());
+                    }
+                });
+            }
+        }
+        return generation.get();
+    }
+
+    /**
+     * Réserve le renouvellement en arrière-plan de la session qui expire à {@code expiry}.
+     *
+     * @return la tentative réservée, ou null si une tentative a déjà eu lieu pour cette échéance, si un login est
+     *         en vol, ou si la précédente tentative a échoué il y a moins de {@value #BACKGROUND_REFRESH_BACKOFF_SECONDS} s
+     */
+    private BackgroundRefresh claimBackgroundRefresh(Instant expiry, Instant now) {
+        BackgroundRefresh previous = backgroundRefresh.get();
+        if (inFlightLogin.get() != null) {
+            return null;
+        }
+        if (previous != null && (previous.expiry().equals(expiry) || previous.failed()
+                && now.isBefore(previous.attemptedAt().plusSeconds(BACKGROUND_REFRESH_BACKOFF_SECONDS)))) {
+            return null;
+        }
+        BackgroundRefresh refresh = new BackgroundRefresh(expiry, now, false);
+        return backgroundRefresh.compareAndSet(previous, refresh) ? refresh : null;
+    }
+
+    /**
+     * Renouvelle la session après qu'une requête est tombée sur la page de login.
+     * Si une connexion a déjà abouti depuis {@code observedGeneration}, aucun nouveau login n'est envoyé.
+     */
+    public void reauthenticate(long observedGeneration, Login login) throws Exception {
+        awaitLogin(observedGeneration, login);
+    }
+
+    /**
+     * Enregistre qu'une page authentifiée vient d'être servie.
+     */
+    public void markSuccess() {
+        lastSuccess = clock.instant();
+    }
+
+    /**
+     * Sauvegarde les cookies dans le fichier configuré.
+     */
+    public void persist() {
+        if (cookieFile == null) {
+            return;
+        }
+        List<String> lines = new ArrayList<>();
+        Instant success = lastSuccess;
+        if (success != null) {
+            lines.add(LAST_SUCCESS_ENTRY + '\t' + success.toEpochMilli());
+        }
+        long now = clock.millis();
+        Instant cookies = cookieExpiry;
+        for (HttpCookie cookie : cookieManager.getCookieStore().get(baseUri)) {
+            // HttpCookie n'expose que le max-age d'origine : l'échéance connue la plus proche est retenue
+            long expiresAt = cookie.getMaxAge() < 0 ? NO_EXPIRY
+                    : cookies != null ? cookies.toEpochMilli() : now + cookie.getMaxAge() * 1000;
+            lines.add(String.join("\t", COOKIE_ENTRY, cookie.getName(), cookie.getValue(),
+                    nullToEmpty(cookie.getDomain()), nullToEmpty(cookie.getPath()), Long.toString(expiresAt)));
+        }
+        try {
+            Path parent = cookieFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path tmp = Files.createTempFile(parent, cookieFile.getFileName().toString(), ".tmp");
+            Files.write(tmp, lines, StandardCharsets.UTF_8);
+            Files.move(tmp, cookieFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to persist Kraland cookies to {}: {}", cookieFile, e.getMessage());
+        }
+    }
+
+    /**
+     * @return l'échéance de la session courante, ou null si aucune session n'est établie
+     */
+    Instant sessionExpiry() {
+        Instant success = lastSuccess;
+        if (success == null || cookieManager.getCookieStore().get(baseUri).isEmpty()) {
+            return null;
+        }
+        Instant expiry = success.plus(idleTimeout);
+        Instant cookies = cookieExpiry;
+        return cookies != null && cookies.isBefore(expiry) ? cookies : expiry;
+    }
+
+    long generation() {
+        return generation.get();
+    }
+
+    private void awaitLogin(long observedGeneration, Login login) throws Exception {
+        if (generation.get() != observedGeneration) {
+            return;
+        }
+        try {
+            login(login).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private CompletableFuture<Void> login(Login login) {
+        CompletableFuture<Void> attempt = new CompletableFuture<>();
+        CompletableFuture<Void> current = inFlightLogin.compareAndExchange(null, attempt);
+        if (current != null) {
+            return current;
+        }
+        try {
+            login.perform();
+            onLoginSuccess();
+            attempt.complete(null);
+        } catch (Throwable t) {
+            attempt.completeExceptionally(t);
+        } finally {
+            inFlightLogin.compareAndSet(attempt, null);
+        }
+        return attempt;
+    }
+
+    private void onLoginSuccess() {
+        Instant now = clock.instant();
+        long minMaxAge = Long.MAX_VALUE;
+        for (HttpCookie cookie : cookieManager.getCookieStore().get(baseUri)) {
+            if (cookie.getMaxAge() > 0) {
+                minMaxAge = Math.min(minMaxAge, cookie.getMaxAge());
+            }
+        }
+        cookieExpiry = minMaxAge == Long.MAX_VALUE ? null : now.plusSeconds(minMaxAge);
+        lastSuccess = now;
+        generation.incrementAndGet();
+        persist();
+    }
+
+    private void load() {
+        if (cookieFile == null || !Files.isRegularFile(cookieFile)) {
+            return;
+        }
+        long now = clock.millis();
+        long minExpiresAt = Long.MAX_VALUE;
+        try {
+            for (String line : Files.readAllLines(cookieFile, StandardCharsets.UTF_8)) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length == 2 && LAST_SUCCESS_ENTRY.equals(fields[0])) {
+                    lastSuccess = Instant.ofEpochMilli(Long.parseLong(fields[1]));
+                } else if (fields.length == 6 && COOKIE_ENTRY.equals(fields[0])) {
+                    long expiresAt = Long.parseLong(fields[5]);
+                    if (expiresAt != NO_EXPIRY && expiresAt <= now) {
+                        continue;
+                    }
+                    HttpCookie cookie = new HttpCookie(fields[1], fields[2]);
+                    cookie.setDomain(emptyToNull(fields[3]));
+                    cookie.setPath(emptyToNull(fields[4]));
+                    cookie.setVersion(0);
+                    if (expiresAt != NO_EXPIRY) {
+                        cookie.setMaxAge((expiresAt - now) / 1000);
+                        minExpiresAt = Math.min(minExpiresAt, expiresAt);
+                    }
+                    cookieManager.getCookieStore().add(baseUri, cookie);
+                }
+            }
+            cookieExpiry = minExpiresAt == Long.MAX_VALUE ? null : Instant.ofEpochMilli(minExpiresAt);
+            LOGGER.info("Restored Kraland session cookies from {}", cookieFile);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to restore Kraland cookies from {}: {}", cookieFile, e.getMessage());
+        }
+    }
+
+    private HttpRequest prepare(HttpRequest request) throws IOException {
+        List<String> cookies = cookieManager.get(request.uri(), Map.of()).getOrDefault("Cookie", List.of());
+        HttpRequest.Builder builder = HttpRequest.newBuilder(request, (name, value) ->
+                !"Cookie".equalsIgnoreCase(name) && !"Accept-Encoding".equalsIgnoreCase(name));
+        builder.header("Accept-Encoding", KralandContentDecoder.ACCEPT_ENCODING);
+        if (!cookies.isEmpty()) {
+            builder.header("Cookie", String.join("; ", cookies));
+        }
+        return builder.build();
+    }
+
+    private static HttpRequest redirectRequest(HttpRequest previous, int statusCode, URI location) {
+        if (statusCode == 307 || statusCode == 308) {
+            return HttpRequest.newBuilder(previous, (name, value) -> true).uri(location).build();
+        }
+        HttpRequest.Builder builder = HttpRequest.newBuilder(location).GET();
+        for (String header : REDIRECT_COPIED_HEADERS) {
+            previous.headers().firstValue(header).ifPresent(value -> builder.header(header, value));
+        }
+        return builder.build();
+    }
+
+    private static boolean isRedirect(int statusCode) {
+        return statusCode == 301 || statusCode == 302 || statusCode == 303 || statusCode == 307 || statusCode == 308;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private record BackgroundRefresh(Instant expiry, Instant attemptedAt, boolean failed) {
+
+        BackgroundRefresh asFailed() {
+            return new BackgroundRefresh(expiry, attemptedAt, true);
+        }
+    }
+}
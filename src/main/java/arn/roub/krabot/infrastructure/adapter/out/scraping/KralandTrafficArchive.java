@@ -0,0 +1,184 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Archive des échanges avec Kraland : une suite d'enregistrements binaires ajoutés à la fin d'un fichier,
+ * un par réponse reçue (redirections comprises), avec les en-têtes de la requête qui l'a obtenue.
+ * <p>
+ * Le corps est gardé tel qu'il a circulé sur le réseau, donc compressé quand Kraland l'a compressé ; les en-têtes
+ * de la requête ({@code Cookie}, {@code If-None-Match}, {@code If-Modified-Since}, {@code Accept-Encoding}...) et
+ * de la réponse sont gardés en entier, {@code Cookie} et {@code Set-Cookie} compris : l'archive contient des
+ * cookies de session et ne doit pas être partagée. Le corps des requêtes (formulaire de login, avec le mot de passe)
+ * et les en-têtes {@code Authorization} ne sont pas enregistrés.
+ * <p>
+ * Les archives du format précédent, sans en-têtes de requête, restent lisibles.
+ */
+public final class KralandTrafficArchive {
+
+    private static final int MAGIC_WITHOUT_REQUEST_HEADERS = 0x4b524131;
+    private static final int MAGIC = 0x4b524132;
+
+    private static final Set<String> CREDENTIAL_HEADERS = Set.of("authorization", "proxy-authorization");
+    private static final Set<String> CONDITIONAL_HEADERS = Set.of("if-none-match", "if-modified-since");
+
+    /**
+     * Horodatage ajouté par le site aux URL {@code /ajx/param-horodatage/token}, ignoré pour apparier les requêtes.
+     */
+    private static final Pattern AJAX_TIMESTAMP = Pattern.compile("(/ajx/[^/]*?)-\\d{10,}/");
+
+    private KralandTrafficArchive() {
+    }
+
+    /**
+     * Une réponse enregistrée.
+     *
+     * @param method         méthode de la requête
+     * @param uri            URI de la requête
+     * @param requestHeaders en-têtes de la requête, sans {@code Authorization}
+     * @param status         statut de la réponse
+     * @param headers        en-têtes de la réponse
+     * @param body           corps de la réponse, tel que reçu du réseau
+     */
+    public record Exchange(String method, URI uri, Map<String, List<String>> requestHeaders, int status,
+                           Map<String, List<String>> headers, byte[] body) {
+
+        /**
+         * @return la clé d'appariement d'une requête rejouée avec cet échange
+         */
+        public String key() {
+            return KralandTrafficArchive.key(method, uri, isConditional(requestHeaders));
+        }
+    }
+
+    /**
+     * Une requête conditionnelle n'est appariée qu'aux réponses obtenues par une requête conditionnelle, pour
+     * qu'un 304 enregistré ne soit jamais servi à une requête qui n'a pas de copie à revalider.
+     */
+    static String key(String method, URI uri, boolean conditional) {
+        String key = method + " " + AJAX_TIMESTAMP.matcher(uri.toString()).replaceFirst("$1/");
+        return conditional ? key + " conditional" : key;
+    }
+
+    static boolean isConditional(Map<String, List<String>> requestHeaders) {
+        for (String name : requestHeaders.keySet()) {
+            if (CONDITIONAL_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return les en-têtes de la requête à enregistrer, sans ceux qui portent des identifiants
+     */
+    static Map<String, List<String>> recordedRequestHeaders(Map<String, List<String>> requestHeaders) {
+        Map<String, List<String>> recorded = new LinkedHashMap<>();
+        requestHeaders.forEach((name, values) -> {
+            if (!CREDENTIAL_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                recorded.put(name, List.copyOf(values));
+            }
+        });
+        return recorded;
+    }
+
+    /**
+     * Ajoute un échange à la fin de l'archive, créée au besoin.
+     */
+    public static synchronized void append(Path archive, Exchange exchange) throws IOException {
+        Path parent = archive.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(archive,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+            out.writeInt(MAGIC);
+            out.writeUTF(exchange.method());
+            out.writeUTF(exchange.uri().toString());
+            writeHeaders(out, recordedRequestHeaders(exchange.requestHeaders()));
+            out.writeShort(exchange.status());
+            writeHeaders(out, exchange.headers());
+            out.writeInt(exchange.body().length);
+            out.write(exchange.body());
+        }
+    }
+
+    /**
+     * Lit tous les échanges de l'archive, dans l'ordre d'enregistrement. Un dernier enregistrement tronqué
+     * (arrêt pendant l'écriture) est ignoré.
+     */
+    public static List<Exchange> read(Path archive) throws IOException {
+        List<Exchange> exchanges = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(archive)))) {
+            while (true) {
+                int magic;
+                try {
+                    magic = in.readInt();
+                } catch (EOFException e) {
+                    return exchanges;
+                }
+                if (magic != MAGIC && magic != MAGIC_WITHOUT_REQUEST_HEADERS) {
+                    throw new IOException("Corrupt traffic archive " + archive + " after " + exchanges.size() + " exchanges");
+                }
+                try {
+                    exchanges.add(readExchange(in, magic == MAGIC));
+                } catch (EOFException e) {
+                    return exchanges;
+                }
+            }
+        }
+    }
+
+    private static void writeHeaders(DataOutputStream out, Map<String, List<String>> headers) throws IOException {
+        out.writeShort(headers.size());
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            out.writeUTF(header.getKey());
+            out.writeShort(header.getValue().size());
+            for (String value : header.getValue()) {
+                out.writeUTF(value);
+            }
+        }
+    }
+
+    private static Exchange readExchange(DataInputStream in, boolean withRequestHeaders) throws IOException {
+        String method = in.readUTF();
+        URI uri = URI.create(in.readUTF());
+        Map<String, List<String>> requestHeaders = withRequestHeaders ? readHeaders(in) : Map.of();
+        int status = in.readUnsignedShort();
+        Map<String, List<String>> headers = readHeaders(in);
+        byte[] body = new byte[in.readInt()];
+        in.readFully(body);
+        return new Exchange(method, uri, requestHeaders, status, headers, body);
+    }
+
+    private static Map<String, List<String>> readHeaders(DataInputStream in) throws IOException {
+        int headerCount = in.readUnsignedShort();
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (int i = 0; i < headerCount; i++) {
+            String name = in.readUTF();
+            int valueCount = in.readUnsignedShort();
+            List<String> values = new ArrayList<>(valueCount);
+            for (int j = 0; j < valueCount; j++) {
+                values.add(in.readUTF());
+            }
+            headers.put(name, List.copyOf(values));
+        }
+        return headers;
+    }
+}
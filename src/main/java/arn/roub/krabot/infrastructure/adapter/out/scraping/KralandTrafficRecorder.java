@@ -0,0 +1,128 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * {@link KralandTransport} qui enregistre dans une {@link KralandTrafficArchive} chaque réponse reçue du transport
+ * enveloppé, avec les en-têtes de sa requête. Les octets sont copiés au passage, avant décompression, sans changer
+ * ce que reçoit l'appelant.
+ * <p>
+ * Une réponse abandonnée par l'appelant (lecture en flux arrêtée après le tableau des kramails) est enregistrée
+ * avec la partie du corps déjà reçue. Une erreur d'écriture de l'archive est journalisée sans faire échouer la requête.
+ */
+public class KralandTrafficRecorder implements KralandTransport {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KralandTrafficRecorder.class);
+
+    private final KralandTransport delegate;
+    private final Path archive;
+
+    public KralandTrafficRecorder(KralandTransport delegate, Path archive) {
+        this.delegate = delegate;
+        this.archive = archive;
+    }
+
+    @Override
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler)
+            throws IOException, InterruptedException {
+        return delegate.send(request, responseInfo ->
+                new RecordingSubscriber<>(request, responseInfo, bodyHandler.apply(responseInfo)));
+    }
+
+    private void record(KralandTrafficArchive.Exchange exchange) {
+        try {
+            KralandTrafficArchive.append(archive, exchange);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to record Kraland exchange to {}: {}", archive, e.getMessage());
+        }
+    }
+
+    /**
+     * L'annulation peut venir du thread de l'appelant pendant que le corps arrive : la copie du corps et
+     * l'enregistrement, qui n'a lieu qu'une fois, sont synchronisés.
+     */
+    private final class RecordingSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+
+        private final HttpRequest request;
+        private final HttpResponse.ResponseInfo responseInfo;
+        private final HttpResponse.BodySubscriber<T> downstream;
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private boolean recorded;
+
+        private RecordingSubscriber(HttpRequest request, HttpResponse.ResponseInfo responseInfo,
+                                    HttpResponse.BodySubscriber<T> downstream) {
+            this.request = request;
+            this.responseInfo = responseInfo;
+            this.downstream = downstream;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return downstream.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            downstream.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    subscription.request(n);
+                }
+
+                @Override
+                public void cancel() {
+                    recordOnce();
+                    subscription.cancel();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            synchronized (body) {
+                for (ByteBuffer item : items) {
+                    ByteBuffer copy = item.duplicate();
+                    byte[] bytes = new byte[copy.remaining()];
+                    copy.get(bytes);
+                    body.writeBytes(bytes);
+                }
+            }
+            downstream.onNext(items);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            downstream.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            recordOnce();
+            downstream.onComplete();
+        }
+
+        private void recordOnce() {
+            byte[] bytes;
+            synchronized (body) {
+                if (recorded) {
+                    return;
+                }
+                recorded = true;
+                bytes = body.toByteArray();
+            }
+            record(new KralandTrafficArchive.Exchange(request.method(), request.uri(), request.headers().map(),
+                    responseInfo.statusCode(), responseInfo.headers().map(), bytes));
+        }
+    }
+}
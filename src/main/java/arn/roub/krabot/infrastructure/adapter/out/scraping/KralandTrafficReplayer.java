@@ -0,0 +1,131 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.net.ssl.SSLSession;
+
+/**
+ * {@link KralandTransport} hors ligne qui répond à partir d'une {@link KralandTrafficArchive}, après une latence
+ * fixe simulant l'aller-retour réseau.
+ * <p>
+ * Une requête est appariée par méthode et URI (horodatage des URL AJAX ignoré) et selon qu'elle est conditionnelle
+ * ou non ({@code If-None-Match}, {@code If-Modified-Since}) : les 304 enregistrés ne sont servis qu'aux requêtes
+ * conditionnelles, qui à défaut reçoivent les réponses enregistrées sans condition. Les réponses enregistrées pour
+ * une même requête sont servies dans leur ordre d'enregistrement puis en boucle, de sorte qu'un enregistrement de
+ * quelques ticks peut être rejoué indéfiniment. Une requête absente de l'archive reçoit un 404 sans corps.
+ */
+public class KralandTrafficReplayer implements KralandTransport {
+
+    private static final Map<String, List<String>> NO_HEADERS = Map.of();
+
+    private final Map<String, List<KralandTrafficArchive.Exchange>> exchanges = new HashMap<>();
+    private final Map<String, AtomicInteger> positions = new HashMap<>();
+    private final Duration latency;
+
+    public KralandTrafficReplayer(List<KralandTrafficArchive.Exchange> exchanges, Duration latency) {
+        for (KralandTrafficArchive.Exchange exchange : exchanges) {
+            this.exchanges.computeIfAbsent(exchange.key(), key -> new ArrayList<>()).add(exchange);
+            positions.putIfAbsent(exchange.key(), new AtomicInteger());
+        }
+        this.latency = latency;
+    }
+
+    public static KralandTrafficReplayer load(Path archive, Duration latency) throws IOException {
+        return new KralandTrafficReplayer(KralandTrafficArchive.read(archive), latency);
+    }
+
+    @Override
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler)
+            throws IOException, InterruptedException {
+        if (latency.isPositive()) {
+            Thread.sleep(latency);
+        }
+        Optional<KralandTrafficArchive.Exchange> exchange = Optional.empty();
+        if (KralandTrafficArchive.isConditional(request.headers().map())) {
+            exchange = next(KralandTrafficArchive.key(request.method(), request.uri(), true));
+        }
+        if (exchange.isEmpty()) {
+            exchange = next(KralandTrafficArchive.key(request.method(), request.uri(), false));
+        }
+        int status = exchange.map(KralandTrafficArchive.Exchange::status).orElse(404);
+        HttpHeaders headers = HttpHeaders.of(exchange.map(KralandTrafficArchive.Exchange::headers).orElse(NO_HEADERS),
+                (name, value) -> true);
+        byte[] body = exchange.map(KralandTrafficArchive.Exchange::body).orElse(new byte[0]);
+
+        HttpResponse.BodySubscriber<T> subscriber = bodyHandler.apply(new ReplayedInfo(status, headers));
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        if (body.length > 0) {
+            subscriber.onNext(List.of(ByteBuffer.wrap(body)));
+        }
+        subscriber.onComplete();
+        try {
+            return new ReplayedResponse<>(status, request, headers, subscriber.getBody().toCompletableFuture().get());
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        }
+    }
+
+    private Optional<KralandTrafficArchive.Exchange> next(String key) {
+        List<KralandTrafficArchive.Exchange> candidates = exchanges.get(key);
+        if (candidates == null) {
+            return Optional.empty();
+        }
+        int position = positions.get(key).getAndIncrement();
+        return Optional.of(candidates.get(Math.floorMod(position, candidates.size())));
+    }
+
+    private record ReplayedInfo(int statusCode, HttpHeaders headers) implements HttpResponse.ResponseInfo {
+
+        @Override
+        public HttpClient.Version version() {
+            return HttpClient.Version.HTTP_1_1;
+        }
+    }
+
+    private record ReplayedResponse<T>(int statusCode, HttpRequest request, HttpHeaders headers, T body)
+            implements HttpResponse<T> {
+
+        @Override
+        public Optional<HttpResponse<T>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return Optional.empty();
+        }
+
+        @Override
+        public URI uri() {
+            return request.uri();
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return HttpClient.Version.HTTP_1_1;
+        }
+    }
+}
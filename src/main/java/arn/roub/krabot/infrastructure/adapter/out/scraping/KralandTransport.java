@@ -0,0 +1,27 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+/**
+ * Envoi d'une requête HTTP vers Kraland, sous les cookies, redirections et décodage gérés par
+ * {@link KralandSessionManager} : le réseau en temps normal, ou un enregistrement du trafic
+ * ({@link KralandTrafficRecorder}, {@link KralandTrafficReplayer}).
+ */
+public interface KralandTransport {
+
+    <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler)
+            throws IOException, InterruptedException;
+
+    static KralandTransport of(HttpClient httpClient) {
+        return new KralandTransport() {
+            @Override
+            public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler)
+                    throws IOException, InterruptedException {
+                return httpClient.send(request, bodyHandler);
+            }
+        };
+    }
+}
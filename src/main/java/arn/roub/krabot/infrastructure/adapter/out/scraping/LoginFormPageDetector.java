@@ -0,0 +1,147 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+/**
+ * Détection en un seul passage, de balise en balise, qui s'arrête au premier indice décisif :
+ * <ul>
+ *     <li>un {@code <input>} dont un attribut vaut {@code c[1]} (champ identifiant du formulaire de connexion,
+ *     comme dans {@link KralandKramailStreamParser}) : page de connexion ;</li>
+ *     <li>le formulaire de déconnexion ({@code action="exit"}) de la barre de navigation, placé en haut de chaque
+ *     page authentifiée : session valide, le reste de la page n'est pas lu.</li>
+ * </ul>
+ * Seules les balises sont examinées : le texte des pages (titres de kramails, messages des joueurs) est échappé
+ * par Kraland et ne peut pas produire de faux positif. Le contenu des {@code <script>}, {@code <style>}
+ * et des commentaires est sauté.
+ * <p>
+ * La page est lue comme une {@link CharSequence} pour pouvoir examiner directement les octets d'une réponse
+ * ({@link KralandPageBody#asciiView()}) : seuls des caractères ASCII sont comparés.
+ */
+public class LoginFormPageDetector implements LoginPageDetector {
+
+    private static final String LOGIN_FIELD_NAME = "c[1]";
+    private static final String LOGOUT_FORM_ACTION = "exit";
+
+    @Override
+    public boolean isLoginPage(CharSequence html) {
+        int length = html.length();
+        int position = indexOf(html, '<', 0);
+        while (position >= 0 && position + 1 < length) {
+            if (regionMatches(html, position + 1, "!--", false)) {
+                position = skipPast(html, "-->", position + 4);
+            } else if (isTag(html, position, "input")) {
+                int end = tagEnd(html, position);
+                if (containsAttributeValue(html, position, end, LOGIN_FIELD_NAME)) {
+                    return true;
+                }
+                position = end;
+            } else if (isTag(html, position, "form")) {
+                int end = tagEnd(html, position);
+                if (containsAttributeValue(html, position, end, LOGOUT_FORM_ACTION)) {
+                    return false;
+                }
+                position = end;
+            } else if (isTag(html, position, "script")) {
+                position = skipPast(html, "</script", position);
+            } else if (isTag(html, position, "style")) {
+                position = skipPast(html, "</style", position);
+            } else {
+                position++;
+            }
+            if (position < 0) {
+                return false;
+            }
+            position = indexOf(html, '<', position);
+        }
+        return false;
+    }
+
+    /**
+     * Vrai si la balise ouvrante commençant à {@code start} porte le nom {@code name}, sans tenir compte de la casse.
+     */
+    private static boolean isTag(CharSequence html, int start, String name) {
+        int nameEnd = start + 1 + name.length();
+        if (nameEnd >= html.length() || !regionMatches(html, start + 1, name, true)) {
+            return false;
+        }
+        char next = html.charAt(nameEnd);
+        return next == '>' || next == '/' || Character.isWhitespace(next);
+    }
+
+    /**
+     * Position du {@code >} fermant la balise, en ignorant ceux placés entre guillemets.
+     */
+    private static int tagEnd(CharSequence html, int start) {
+        char quote = 0;
+        for (int i = start + 1; i < html.length(); i++) {
+            char c = html.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return i;
+            }
+        }
+        return html.length();
+    }
+
+    /**
+     * Vrai si un attribut de la balise {@code [start, end)} a exactement la valeur {@code value},
+     * entre guillemets ou non.
+     */
+    private static boolean containsAttributeValue(CharSequence html, int start, int end, String value) {
+        for (int i = start + 1; i + value.length() <= end; i++) {
+            if (!regionMatches(html, i, value, false)) {
+                continue;
+            }
+            char before = html.charAt(i - 1);
+            char after = i + value.length() < html.length() ? html.charAt(i + value.length()) : '>';
+            boolean quoted = (before == '"' || before == '\'') && after == before;
+            boolean unquoted = before == '=' && (after == '>' || after == '/' || Character.isWhitespace(after));
+            if (quoted || unquoted) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int skipPast(CharSequence html, String marker, int from) {
+        for (int i = indexOf(html, marker.charAt(0), from); i >= 0; i = indexOf(html, marker.charAt(0), i + 1)) {
+            if (regionMatches(html, i, marker, true)) {
+                return i + marker.length();
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(CharSequence html, char c, int from) {
+        for (int i = Math.max(from, 0), length = html.length(); i < length; i++) {
+            if (html.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Comparaison de {@code text} à la position {@code offset}, insensible à la casse ASCII si demandé.
+     */
+    private static boolean regionMatches(CharSequence html, int offset, String text, boolean ignoreCase) {
+        if (offset < 0 || offset + text.length() > html.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = html.charAt(offset + i);
+            char expected = text.charAt(i);
+            if (c != expected && !(ignoreCase && asciiLowerCase(c) == asciiLowerCase(expected))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static char asciiLowerCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+}
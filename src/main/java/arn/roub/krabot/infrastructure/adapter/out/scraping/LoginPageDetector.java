@@ -0,0 +1,14 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+/**
+ * Stratégie de détection de la page de connexion Kraland, renvoyée à la place de la page demandée
+ * quand la session a expiré.
+ */
+public interface LoginPageDetector {
+
+    /**
+     * @param html le corps reçu, en {@link String} ou en vue sur les octets ({@link KralandPageBody#asciiView()})
+     * @return true si la page reçue est la page de connexion
+     */
+    boolean isLoginPage(CharSequence html);
+}
@@ -0,0 +1,51 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Page Kraland parsée une seule fois.
+ * Toutes les extractions de {@link KralandHtmlParser} travaillent sur le même {@link Document},
+ * ce qui évite de reconstruire le DOM d'une réponse pour chaque vérification.
+ */
+public final class ParsedKralandPage {
+
+    private final Document document;
+
+    private ParsedKralandPage(Document document) {
+        this.document = document;
+    }
+
+    /**
+     * Parse le corps d'une réponse Kraland.
+     */
+    public static ParsedKralandPage parse(String html) {
+        return new ParsedKralandPage(Jsoup.parse(html));
+    }
+
+    /**
+     * Parse le corps d'une réponse Kraland directement depuis ses blocs, dans le jeu de caractères détecté.
+     */
+    public static ParsedKralandPage parse(KralandPageBody body) {
+        try (InputStream in = body.inputStream()) {
+            return new ParsedKralandPage(Jsoup.parse(in, body.charset().name(), ""));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Encapsule un document déjà parsé.
+     */
+    public static ParsedKralandPage of(Document document) {
+        return new ParsedKralandPage(document);
+    }
+
+    public Document document() {
+        return document;
+    }
+}
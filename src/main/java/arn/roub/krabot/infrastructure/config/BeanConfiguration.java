@@ -1,10 +1,14 @@
 package arn.roub.krabot.infrastructure.config;
 
+import arn.roub.krabot.application.service.AccountScrapingOrchestrator;
+import arn.roub.krabot.application.service.KramailNotificationPipeline;
 import arn.roub.krabot.application.service.NotificationOrchestrator;
+import arn.roub.krabot.application.service.ScrapingCircuitBreaker;
 import arn.roub.krabot.application.usecase.CheckKramailsUseCaseImpl;
 import arn.roub.krabot.application.usecase.CheckReleaseUseCaseImpl;
 import arn.roub.krabot.application.usecase.CheckSleepUseCaseImpl;
 import arn.roub.krabot.application.usecase.GetCurrentStateUseCaseImpl;
+import arn.roub.krabot.application.usecase.HarvestCharacteristicsUseCaseImpl;
 import arn.roub.krabot.application.usecase.ResetGeneralNotificationUseCaseImpl;
 import arn.roub.krabot.application.usecase.ResetKramailsNotificationUseCaseImpl;
 import arn.roub.krabot.application.usecase.UploadCharacteristicsUseCaseImpl;
@@ -13,6 +17,7 @@ import arn.roub.krabot.domain.port.in.CheckKramailsUseCase;
 import arn.roub.krabot.domain.port.in.CheckReleaseUseCase;
 import arn.roub.krabot.domain.port.in.CheckSleepUseCase;
 import arn.roub.krabot.domain.port.in.GetCurrentStateUseCase;
+import arn.roub.krabot.domain.port.in.HarvestCharacteristicsUseCase;
 import arn.roub.krabot.domain.port.in.ResetGeneralNotificationUseCase;
 import arn.roub.krabot.domain.port.in.ResetKramailsNotificationUseCase;
 import arn.roub.krabot.domain.port.in.UploadCharacteristicsUseCase;
@@ -21,13 +26,19 @@ import arn.roub.krabot.domain.port.out.KralandScrapingPort;
 import arn.roub.krabot.domain.port.out.NotificationPort;
 import arn.roub.krabot.domain.port.out.StateRepositoryPort;
 import arn.roub.krabot.domain.service.NotificationDomainService;
+import arn.roub.krabot.infrastructure.adapter.out.notification.DiscordDeliveryQueue;
 import arn.roub.krabot.infrastructure.adapter.out.notification.DiscordNotificationAdapter;
+import arn.roub.krabot.infrastructure.adapter.out.notification.DiscordRateLimiter;
 import arn.roub.krabot.infrastructure.adapter.out.notification.DiscordWebhookClient;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.inject.Produces;
 
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Configuration CDI pour le wiring des beans.
  */
@@ -41,6 +52,9 @@ public class BeanConfiguration {
     private final StateRepositoryPort stateRepositoryPort;
 
     private NotificationOrchestrator notificationOrchestrator;
+    private KramailNotificationPipeline kramailNotificationPipeline;
+    private DiscordWebhookClient discordWebhookClient;
+    private DiscordDeliveryQueue discordDeliveryQueue;
 
     public BeanConfiguration(
             DiscordConfig discordConfig,
@@ -63,26 +77,50 @@ public class BeanConfiguration {
 
     @PreDestroy
     void shutdown() {
+        if (kramailNotificationPipeline != null) {
+            kramailNotificationPipeline.close();
+        }
         if (notificationOrchestrator != null) {
             notificationOrchestrator.shutdown();
         }
+        if (discordDeliveryQueue != null) {
+            discordDeliveryQueue.close(discordConfig.sendTimeout());
+        }
     }
 
+    /**
+     * Client unique du webhook : envois et health check partagent la même connexion et le même budget de rate limit.
+     */
     @Produces
     @ApplicationScoped
     public DiscordWebhookClient discordWebhookClient() {
-        return new DiscordWebhookClient(
-                discordConfig.url(),
-                discordConfig.username(),
-                discordConfig.avatarUrl()
-        );
+        if (discordWebhookClient == null) {
+            discordWebhookClient = new DiscordWebhookClient(
+                    discordConfig.url(),
+                    discordConfig.username(),
+                    discordConfig.avatarUrl(),
+                    new DiscordRateLimiter()
+            );
+        }
+        return discordWebhookClient;
+    }
+
+    @Produces
+    @ApplicationScoped
+    public DiscordDeliveryQueue discordDeliveryQueue() {
+        if (discordDeliveryQueue == null) {
+            discordDeliveryQueue = new DiscordDeliveryQueue(discordWebhookClient(), discordConfig.deliveryCapacity());
+            discordDeliveryQueue.start();
+        }
+        return discordDeliveryQueue;
     }
 
     @Produces
     @ApplicationScoped
-    public NotificationPort notificationPort(DiscordWebhookClient webhookClient) {
+    public NotificationPort notificationPort(DiscordDeliveryQueue deliveryQueue) {
         return new DiscordNotificationAdapter(
-                webhookClient,
+                deliveryQueue,
+                discordConfig.sendTimeout(),
                 discordConfig.firstMessage(),
                 discordConfig.lastMessage(),
                 discordConfig.messageKramail(),
@@ -98,19 +136,63 @@ public class BeanConfiguration {
         return new NotificationDomainService();
     }
 
+    @Produces
+    @ApplicationScoped
+    public AccountScrapingOrchestrator accountScrapingOrchestrator() {
+        return new AccountScrapingOrchestrator(
+                kralandScrapingPort,
+                kralandAccounts(),
+                kralandConfig.scraping().accountConcurrency(),
+                kralandConfig.scraping().accountJitter()
+        );
+    }
+
+    @Produces
+    @ApplicationScoped
+    public ScrapingCircuitBreaker scrapingCircuitBreaker() {
+        KralandConfig.Resilience resilience = kralandConfig.resilience();
+        return new ScrapingCircuitBreaker(
+                kralandScrapingPort,
+                resilience.maxAttempts(),
+                resilience.baseDelay(),
+                resilience.maxDelay(),
+                resilience.failureThreshold(),
+                resilience.openDuration(),
+                Clock.systemUTC()
+        );
+    }
+
+    @Produces
+    @ApplicationScoped
+    public KramailNotificationPipeline kramailNotificationPipeline(NotificationPort notificationPort) {
+        if (kramailNotificationPipeline == null) {
+            DiscordConfig.Queue queue = discordConfig.queue();
+            kramailNotificationPipeline = new KramailNotificationPipeline(
+                    notificationPort,
+                    stateRepositoryPort,
+                    queue.capacity(),
+                    queue.offerTimeout(),
+                    queue.batchWindow()
+            );
+            kramailNotificationPipeline.start();
+        }
+        return kramailNotificationPipeline;
+    }
+
     @Produces
     @ApplicationScoped
     public CheckKramailsUseCase checkKramailsUseCase(
-            NotificationPort notificationPort,
+            AccountScrapingOrchestrator accountScrapingOrchestrator,
+            ScrapingCircuitBreaker scrapingCircuitBreaker,
+            KramailNotificationPipeline kramailNotificationPipeline,
             NotificationDomainService notificationDomainService
     ) {
-        Account account = new Account(kralandConfig.user(), kralandConfig.password());
         return new CheckKramailsUseCaseImpl(
-                kralandScrapingPort,
-                notificationPort,
+                accountScrapingOrchestrator,
+                scrapingCircuitBreaker,
+                kramailNotificationPipeline,
                 stateRepositoryPort,
-                notificationDomainService,
-                account
+                notificationDomainService
         );
     }
 
@@ -126,14 +208,38 @@ public class BeanConfiguration {
 
     @Produces
     @ApplicationScoped
-    public CheckSleepUseCase checkSleepUseCase() {
-        Account account = new Account(kralandConfig.user(), kralandConfig.password());
+    public CheckSleepUseCase checkSleepUseCase(ScrapingCircuitBreaker scrapingCircuitBreaker) {
         return new CheckSleepUseCaseImpl(
                 kralandScrapingPort,
-                account
+                scrapingCircuitBreaker,
+                kralandAccounts().getFirst()
+        );
+    }
+
+    @Produces
+    @ApplicationScoped
+    public HarvestCharacteristicsUseCase harvestCharacteristicsUseCase(ScrapingCircuitBreaker scrapingCircuitBreaker) {
+        return new HarvestCharacteristicsUseCaseImpl(
+                kralandScrapingPort,
+                scrapingCircuitBreaker,
+                kralandAccounts().getFirst()
         );
     }
 
+    /**
+     * Comptes Kraland surveillés : la liste {@code kraland.accounts} si elle est renseignée,
+     * sinon le compte unique {@code kraland.user} / {@code kraland.password}.
+     */
+    private List<Account> kralandAccounts() {
+        List<Account> accounts = new ArrayList<>();
+        kralandConfig.accounts().ifPresent(credentials -> credentials.forEach(
+                c -> accounts.add(new Account(c.user(), c.password()))));
+        if (accounts.isEmpty()) {
+            accounts.add(new Account(kralandConfig.user().orElse(null), kralandConfig.password().orElse(null)));
+        }
+        return accounts;
+    }
+
     @Produces
     @ApplicationScoped
     public GetCurrentStateUseCase getCurrentStateUseCase() {
@@ -156,7 +262,7 @@ public class BeanConfiguration {
     @ApplicationScoped
     public NotificationOrchestrator notificationOrchestrator() {
         if (notificationOrchestrator == null) {
-            NotificationPort notificationPort = notificationPort(discordWebhookClient());
+            NotificationPort notificationPort = notificationPort(discordDeliveryQueue());
             notificationOrchestrator = new NotificationOrchestrator(
                     notificationPort,
                     githubReleasePort,
@@ -3,6 +3,8 @@ package arn.roub.krabot.infrastructure.config;
 import io.smallrye.config.ConfigMapping;
 import io.smallrye.config.WithDefault;
 
+import java.time.Duration;
+
 /**
  * Configuration du webhook Discord.
  */
@@ -62,4 +64,44 @@ public interface DiscordConfig {
      */
     @WithDefault("Oh no !")
     String errorPrefixMessage();
+
+    /**
+     * Attente maximale de l'envoi d'un message retenu par le rate limit Discord, pour les envois qui en attendent
+     * le résultat (kramails, notification générale, arrêt)
+     */
+    @WithDefault("10s")
+    Duration sendTimeout();
+
+    /**
+     * Nombre maximum de messages dans la file d'envoi du webhook ; les messages sans attente (démarrage, release,
+     * erreur) y sont fusionnés ou abandonnés les premiers
+     */
+    @WithDefault("50")
+    int deliveryCapacity();
+
+    /**
+     * File d'envoi des notifications de kramails
+     */
+    Queue queue();
+
+    interface Queue {
+
+        /**
+         * Nombre maximum de kramails en attente d'envoi
+         */
+        @WithDefault("100")
+        int capacity();
+
+        /**
+         * Attente maximale d'une place dans la file pleine ; au-delà le kramail est reporté au scan suivant
+         */
+        @WithDefault("0s")
+        Duration offerTimeout();
+
+        /**
+         * Fenêtre pendant laquelle les kramails sont regroupés en un minimum de messages (0s = seuls les kramails déjà en file sont regroupés, sans attente)
+         */
+        @WithDefault("0s")
+        Duration batchWindow();
+    }
 }
@@ -1,6 +1,13 @@
 package arn.roub.krabot.infrastructure.config;
 
+import io.quarkus.runtime.configuration.MemorySize;
 import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
 
 /**
  * Configuration des credentials Kraland.
@@ -9,12 +16,214 @@ import io.smallrye.config.ConfigMapping;
 public interface KralandConfig {
 
     /**
-     * Nom d'utilisateur Kraland
+     * URL de base du site ; remplacée par celle d'un serveur de substitution pour les tests de charge
+     */
+    @WithDefault("http://www.kraland.org/")
+    String baseUrl();
+
+    /**
+     * Nom d'utilisateur Kraland (mode mono-compte)
      */
-    String user();
+    Optional<String> user();
 
     /**
-     * Mot de passe Kraland
+     * Mot de passe Kraland (mode mono-compte)
      */
-    String password();
+    Optional<String> password();
+
+    /**
+     * Comptes Kraland surveillés par une même instance (mode multi-comptes) ;
+     * remplacent {@link #user()} / {@link #password()} lorsqu'ils sont renseignés
+     */
+    Optional<List<Credentials>> accounts();
+
+    /**
+     * Paramètres du scraping
+     */
+    Scraping scraping();
+
+    /**
+     * Paramètres de la session Kraland
+     */
+    Session session();
+
+    /**
+     * Limitation du débit des requêtes envoyées à kraland.org
+     */
+    RateLimit rateLimit();
+
+    /**
+     * Retries et circuit breaker autour du scraping
+     */
+    Resilience resilience();
+
+    /**
+     * Relevé des caractéristiques du personnage par le bot
+     */
+    Characteristics characteristics();
+
+    /**
+     * Enregistrement et rejeu hors ligne du trafic échangé avec kraland.org
+     */
+    Traffic traffic();
+
+    interface Scraping {
+
+        /**
+         * Nombre maximum de pages de personnages récupérées en parallèle (1 = séquentiel)
+         */
+        @WithDefault("4")
+        int concurrency();
+
+        /**
+         * Durée maximale d'un tick de scraping ; les personnages non lus à l'échéance sont ignorés
+         */
+        @WithDefault("45s")
+        Duration tickDeadline();
+
+        /**
+         * Extrait les kramails des pages de personnages en flux, sans construire le DOM complet
+         */
+        @WithDefault("false")
+        boolean streaming();
+
+        /**
+         * Lit le tableau des kramails d'un personnage jusqu'au premier kramail déjà remonté ou à la première ligne
+         * lue, au lieu de le lire en entier ; le compteur de la sidebar valide le résultat
+         */
+        @WithDefault("false")
+        boolean incremental();
+
+        /**
+         * Taille maximale d'une page Kraland après décompression ; une réponse plus grande est refusée
+         */
+        @WithDefault("4M")
+        MemorySize maxBodySize();
+
+        /**
+         * Lit le badge des notifications et les compteurs de kramails dans le fragment AJAX qui les rafraîchit,
+         * repéré dans la page kramail, au lieu de télécharger la page complète à chaque tick
+         */
+        @WithDefault("false")
+        boolean fragmentPolling();
+
+        /**
+         * Nombre maximum de comptes scrapés en même temps en mode multi-comptes
+         */
+        @WithDefault("8")
+        int accountConcurrency();
+
+        /**
+         * Décalage aléatoire maximum du scraping de chaque compte dans un tick, en mode multi-comptes
+         */
+        @WithDefault("10s")
+        Duration accountJitter();
+    }
+
+    interface Credentials {
+
+        String user();
+
+        String password();
+    }
+
+    interface Session {
+
+        /**
+         * Durée d'inactivité après laquelle la session Kraland est considérée expirée
+         */
+        @WithDefault("20m")
+        Duration idleTimeout();
+
+        /**
+         * Marge avant l'expiration pendant laquelle la session est renouvelée en arrière-plan
+         */
+        @WithDefault("2m")
+        Duration refreshAhead();
+
+        /**
+         * Répertoire de sauvegarde des cookies de session (un fichier par compte), pour éviter un login au redémarrage
+         */
+        Optional<Path> cookieDir();
+    }
+
+    interface RateLimit {
+
+        /**
+         * Nombre de requêtes par seconde envoyées à kraland.org, tous comptes confondus
+         */
+        @WithDefault("5")
+        double permitsPerSecond();
+
+        /**
+         * Nombre de requêtes pouvant partir d'un coup après une période calme
+         */
+        @WithDefault("10")
+        int burst();
+    }
+
+    interface Resilience {
+
+        /**
+         * Nombre de tentatives d'une opération de scraping (1 = pas de retry)
+         */
+        @WithDefault("3")
+        int maxAttempts();
+
+        /**
+         * Délai de base du backoff exponentiel entre deux tentatives
+         */
+        @WithDefault("2s")
+        Duration baseDelay();
+
+        /**
+         * Délai maximum entre deux tentatives
+         */
+        @WithDefault("30s")
+        Duration maxDelay();
+
+        /**
+         * Nombre d'opérations en échec consécutives qui ouvrent le circuit
+         */
+        @WithDefault("3")
+        int failureThreshold();
+
+        /**
+         * Durée pendant laquelle le circuit reste ouvert avant de sonder Kraland
+         */
+        @WithDefault("5m")
+        Duration openDuration();
+    }
+
+    interface Characteristics {
+
+        /**
+         * Clé API sous laquelle le bot enregistre les caractéristiques relevées sur la page plateau,
+         * comme le userscript ; absente, aucun relevé n'est fait
+         */
+        Optional<String> namespace();
+    }
+
+    interface Traffic {
+
+        enum Mode { OFF, RECORD, REPLAY }
+
+        /**
+         * off : réseau ; record : réseau, chaque réponse est ajoutée à l'archive ; replay : réponses lues dans
+         * l'archive, sans réseau
+         */
+        @WithDefault("off")
+        Mode mode();
+
+        /**
+         * Fichier d'archive du trafic, obligatoire en mode record ou replay
+         */
+        Optional<Path> archive();
+
+        /**
+         * Latence simulée de chaque réponse rejouée
+         */
+        @WithDefault("0s")
+        Duration replayLatency();
+    }
 }
@@ -1,5 +1,6 @@
 package arn.roub.krabot.infrastructure.health;
 
+import arn.roub.krabot.infrastructure.config.KralandConfig;
 import jakarta.enterprise.context.ApplicationScoped;
 import org.eclipse.microprofile.health.HealthCheck;
 import org.eclipse.microprofile.health.HealthCheckResponse;
@@ -16,12 +17,16 @@ import java.net.URL;
 @ApplicationScoped
 public class KralandHealthCheck implements HealthCheck {
 
-    private static final String KRALAND_URL = "http://www.kraland.org";
+    private final String kralandUrl;
+
+    public KralandHealthCheck(KralandConfig kralandConfig) {
+        this.kralandUrl = kralandConfig.baseUrl();
+    }
 
     @Override
     public HealthCheckResponse call() {
         try {
-            URL url = URI.create(KRALAND_URL).toURL();
+            URL url = URI.create(kralandUrl).toURL();
             HttpURLConnection connection = (HttpURLConnection) url.openConnection();
             connection.setRequestMethod("HEAD");
             connection.setConnectTimeout(5000);
@@ -0,0 +1,132 @@
+package arn.roub.krabot.application.service;
+
+import arn.roub.krabot.domain.model.Account;
+import arn.roub.krabot.domain.model.Kramail;
+import arn.roub.krabot.domain.model.KramailId;
+import arn.roub.krabot.domain.model.ScrapingResult;
+import arn.roub.krabot.domain.port.out.KralandScrapingPort;
+import arn.roub.krabot.shared.exception.ScrapingException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountScrapingOrchestratorTest {
+
+    private static final Account ALICE = new Account("alice", "pass");
+    private static final Account BOB = new Account("bob", "pass");
+    private static final Account CAROL = new Account("carol", "pass");
+
+    @Test
+    void scrapeAll_mergesResultsOfEveryAccount() {
+        FakeKralandScrapingPort port = new FakeKralandScrapingPort(account -> switch (account.username()) {
+            case "alice" -> new ScrapingResult(List.of(kramail("1", "Alice")), false);
+            case "bob" -> new ScrapingResult(List.of(kramail("2", "Bob")), true);
+            default -> ScrapingResult.empty();
+        });
+        AccountScrapingOrchestrator orchestrator =
+                new AccountScrapingOrchestrator(port, List.of(ALICE, BOB, CAROL), 2, Duration.ofMillis(20));
+
+        ScrapingResult result = orchestrator.scrapeAll();
+
+        assertEquals(2, result.kramails().size());
+        assertTrue(result.hasNotification());
+        assertFalse(result.isPartial());
+        assertEquals(3, port.calls.size());
+    }
+
+    @Test
+    void scrapeAll_whenOneAccountFails_returnsPartialResult() {
+        FakeKralandScrapingPort port = new FakeKralandScrapingPort(account -> {
+            if (account.equals(BOB)) {
+                throw new ScrapingException("boom");
+            }
+            return new ScrapingResult(List.of(kramail(account.username(), account.username())), false);
+        });
+        AccountScrapingOrchestrator orchestrator =
+                new AccountScrapingOrchestrator(port, List.of(ALICE, BOB, CAROL), 2, Duration.ZERO);
+
+        ScrapingResult result = orchestrator.scrapeAll();
+
+        assertEquals(2, result.kramails().size());
+        assertEquals(List.of("bob"), result.failedAccounts());
+    }
+
+    @Test
+    void scrapeAll_whenEveryAccountFails_throws() {
+        FakeKralandScrapingPort port = new FakeKralandScrapingPort(account -> {
+            throw new ScrapingException("boom");
+        });
+        AccountScrapingOrchestrator orchestrator =
+                new AccountScrapingOrchestrator(port, List.of(ALICE, BOB), 2, Duration.ZERO);
+
+        assertThrows(ScrapingException.class, orchestrator::scrapeAll);
+    }
+
+    @Test
+    void scrapeAll_neverExceedsAccountConcurrency() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        FakeKralandScrapingPort port = new FakeKralandScrapingPort(account -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            return ScrapingResult.empty();
+        });
+        List<Account> accounts = IntStream.range(0, 12)
+                .mapToObj(i -> new Account("user" + i, "pass"))
+                .toList();
+        AccountScrapingOrchestrator orchestrator = new AccountScrapingOrchestrator(port, accounts, 3, Duration.ZERO);
+
+        orchestrator.scrapeAll();
+
+        assertEquals(12, port.calls.size());
+        assertTrue(maxInFlight.get() <= 3, "max in flight: " + maxInFlight.get());
+    }
+
+    private static Kramail kramail(String id, String recipient) {
+        return new Kramail(new KramailId(id), "title", "originator", recipient);
+    }
+
+    private static final class FakeKralandScrapingPort implements KralandScrapingPort {
+
+        private final Function<Account, ScrapingResult> behaviour;
+        private final Map<String, Account> calls = new ConcurrentHashMap<>();
+
+        private FakeKralandScrapingPort(Function<Account, ScrapingResult> behaviour) {
+            this.behaviour = behaviour;
+        }
+
+        @Override
+        public ScrapingResult scrape(Account account) {
+            calls.put(account.username(), account);
+            return behaviour.apply(account);
+        }
+
+        @Override
+        public boolean sleepIfAvailable(Account account) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void refreshCharacteristics(Account account) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isReachable() {
+            return true;
+        }
+    }
+}
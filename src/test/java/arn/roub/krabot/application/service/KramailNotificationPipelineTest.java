@@ -0,0 +1,298 @@
+package arn.roub.krabot.application.service;
+
+import arn.roub.krabot.domain.model.Kramail;
+import arn.roub.krabot.domain.model.KramailId;
+import arn.roub.krabot.domain.model.NotificationState;
+import arn.roub.krabot.domain.model.ReleaseVersion;
+import arn.roub.krabot.domain.port.out.NotificationPort;
+import arn.roub.krabot.domain.port.out.StateRepositoryPort;
+import arn.roub.krabot.shared.exception.RateLimitException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KramailNotificationPipelineTest {
+
+    private final FakeNotificationPort notificationPort = new FakeNotificationPort();
+    private final FakeStateRepositoryPort stateRepositoryPort = new FakeStateRepositoryPort();
+    private KramailNotificationPipeline pipeline;
+
+    @AfterEach
+    void tearDown() {
+        notificationPort.release.countDown();
+        pipeline.close();
+    }
+
+    @Test
+    void publish_returnsBeforeDelivery_andMarksOnlyOnceSent() throws InterruptedException {
+        pipeline = started(10);
+        notificationPort.blocked = true;
+
+        assertTrue(pipeline.publish(kramail("1")));
+        assertFalse(stateRepositoryPort.isKramailAlreadyNotified(new KramailId("1")));
+
+        notificationPort.release.countDown();
+        awaitDrained();
+        assertEquals(List.of("1"), notificationPort.sent);
+        assertTrue(stateRepositoryPort.isKramailAlreadyNotified(new KramailId("1")));
+    }
+
+    @Test
+    void publish_whenDeliveryFails_leavesKramailUnmarkedForNextTick() throws InterruptedException {
+        pipeline = started(10);
+        notificationPort.failure = new RateLimitException("slow down");
+
+        pipeline.publish(kramail("1"));
+        awaitDrained();
+        assertFalse(stateRepositoryPort.isKramailAlreadyNotified(new KramailId("1")));
+
+        notificationPort.failure = null;
+        assertTrue(pipeline.publish(kramail("1")));
+        awaitDrained();
+        assertTrue(stateRepositoryPort.isKramailAlreadyNotified(new KramailId("1")));
+    }
+
+    @Test
+    void publish_whenQueueFull_rejectsAfterTimeout_andIgnoresPendingDuplicates() throws InterruptedException {
+        pipeline = started(1);
+        notificationPort.blocked = true;
+
+        assertTrue(pipeline.publish(kramail("1")));
+        assertTrue(notificationPort.sending.await(5, TimeUnit.SECONDS));
+        assertTrue(pipeline.publish(kramail("2")));
+        assertTrue(pipeline.publish(kramail("2")));
+        assertFalse(pipeline.publish(kramail("3")));
+        assertEquals(2, pipeline.pendingCount());
+
+        notificationPort.release.countDown();
+        awaitDrained();
+        assertEquals(List.of("1", "2"), notificationPort.sent);
+    }
+
+    @Test
+    void publish_withBatchWindow_sendsKramailsTogether_andMarksOnlyDeliveredOnes() throws InterruptedException {
+        pipeline = started(10, Duration.ofMillis(200));
+        notificationPort.batchDeliveryLimit = 2;
+
+        pipeline.publish(kramail("1"));
+        pipeline.publish(kramail("2"));
+        pipeline.publish(kramail("3"));
+        awaitDrained();
+
+        assertEquals(List.of(List.of("1", "2", "3")), notificationPort.batches);
+        assertTrue(stateRepositoryPort.isKramailAlreadyNotified(new KramailId("2")));
+        assertFalse(stateRepositoryPort.isKramailAlreadyNotified(new KramailId("3")));
+    }
+
+    @Test
+    void publish_withoutBatchWindow_groupsKramailsAlreadyQueued() throws InterruptedException {
+        pipeline = started(10);
+        notificationPort.blocked = true;
+
+        pipeline.publish(kramail("1"));
+        assertTrue(notificationPort.sending.await(5, TimeUnit.SECONDS));
+        pipeline.publish(kramail("2"));
+        pipeline.publish(kramail("3"));
+        pipeline.publish(kramail("4"));
+        notificationPort.release.countDown();
+        awaitDrained();
+
+        assertEquals(List.of("1"), notificationPort.sent);
+        assertEquals(List.of(List.of("2", "3", "4")), notificationPort.batches);
+        assertTrue(stateRepositoryPort.isKramailAlreadyNotified(new KramailId("4")));
+    }
+
+    @Test
+    void publish_afterTheConsumerMarkedAndReleasedTheKramail_doesNotSendItAgain() throws InterruptedException {
+        pipeline = started(10);
+        // Le tick a lu "non notifié", puis le thread d'envoi a marqué le kramail et l'a retiré de pending
+        assertTrue(pipeline.publish(kramail("1")));
+        awaitDrained();
+
+        assertTrue(pipeline.publish(kramail("1")));
+        awaitDrained();
+        assertEquals(List.of("1"), notificationPort.sent);
+    }
+
+    @Test
+    void publishGeneralNotification_returnsBeforeDelivery_andIsNotSentTwiceWhileInFlight() throws InterruptedException {
+        pipeline = started(10);
+        notificationPort.blocked = true;
+
+        pipeline.publishGeneralNotification();
+        assertTrue(notificationPort.sending.await(5, TimeUnit.SECONDS));
+        pipeline.publishGeneralNotification();
+        assertFalse(stateRepositoryPort.generalNotificationSent);
+
+        notificationPort.release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!stateRepositoryPort.generalNotificationSent && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(stateRepositoryPort.generalNotificationSent);
+        assertEquals(1, notificationPort.generalNotifications.get());
+    }
+
+    private KramailNotificationPipeline started(int capacity) {
+        return started(capacity, Duration.ZERO);
+    }
+
+    private KramailNotificationPipeline started(int capacity, Duration batchWindow) {
+        KramailNotificationPipeline started = new KramailNotificationPipeline(
+                notificationPort, stateRepositoryPort, capacity, Duration.ofMillis(20), batchWindow);
+        started.start();
+        return started;
+    }
+
+    private void awaitDrained() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pipeline.pendingCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, pipeline.pendingCount());
+    }
+
+    private static Kramail kramail(String id) {
+        return new Kramail(new KramailId(id), "Sujet " + id, "Expéditeur", "Personnage");
+    }
+
+    private static class FakeNotificationPort implements NotificationPort {
+
+        private final List<String> sent = new CopyOnWriteArrayList<>();
+        private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile boolean blocked;
+        private volatile RuntimeException failure;
+        private final AtomicInteger generalNotifications = new AtomicInteger();
+        private volatile int batchDeliveryLimit = Integer.MAX_VALUE;
+
+        @Override
+        public void sendKramailNotification(Kramail kramail) {
+            awaitRelease();
+            sent.add(kramail.id().value());
+        }
+
+        @Override
+        public int sendKramailNotifications(List<Kramail> kramails) {
+            batches.add(kramails.stream().map(kramail -> kramail.id().value()).toList());
+            return Math.min(batchDeliveryLimit, kramails.size());
+        }
+
+        @Override
+        public void sendStartupNotification() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void sendShutdownNotification() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void sendGeneralNotification() {
+            awaitRelease();
+            generalNotifications.incrementAndGet();
+        }
+
+        private void awaitRelease() {
+            sending.countDown();
+            if (blocked) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        @Override
+        public void sendReleaseNotification(ReleaseVersion version) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void sendErrorNotification(String message) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class FakeStateRepositoryPort implements StateRepositoryPort {
+
+        private final Set<KramailId> notified = ConcurrentHashMap.newKeySet();
+        private volatile boolean generalNotificationSent;
+
+        @Override
+        public boolean isKramailAlreadyNotified(KramailId kramailId) {
+            return notified.contains(kramailId);
+        }
+
+        @Override
+        public void markKramailAsNotified(KramailId kramailId) {
+            notified.add(kramailId);
+        }
+
+        @Override
+        public NotificationState getState() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void updateKramailCount(int count) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void updateNotificationFlag(boolean hasNotification) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void updateLatestVersion(ReleaseVersion version) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void cleanupOldKramails(Set<KramailId> currentKramailIds) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void resetGeneralNotificationFlag() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isGeneralNotificationAlreadySent() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void markGeneralNotificationAsSent() {
+            generalNotificationSent = true;
+        }
+
+        @Override
+        public void resetGeneralNotificationState() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void resetKramailsNotificationState() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
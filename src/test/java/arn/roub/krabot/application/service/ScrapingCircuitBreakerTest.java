@@ -0,0 +1,140 @@
+package arn.roub.krabot.application.service;
+
+import arn.roub.krabot.domain.model.Account;
+import arn.roub.krabot.domain.model.ScrapingResult;
+import arn.roub.krabot.domain.port.out.KralandScrapingPort;
+import arn.roub.krabot.shared.exception.ScrapingException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScrapingCircuitBreakerTest {
+
+    private final MutableClock clock = new MutableClock();
+    private final FakeKralandScrapingPort port = new FakeKralandScrapingPort();
+    private final ScrapingCircuitBreaker breaker = new ScrapingCircuitBreaker(
+            port, 2, Duration.ZERO, Duration.ZERO, 2, Duration.ofMinutes(5), clock);
+
+    @Test
+    void execute_retriesUntilSuccess() {
+        AtomicInteger calls = new AtomicInteger();
+
+        Optional<String> result = breaker.execute(() -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new ScrapingException("boom");
+            }
+            return "ok";
+        });
+
+        assertEquals(Optional.of("ok"), result);
+        assertEquals(2, calls.get());
+        assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    void execute_afterThresholdFailures_opensAndSkipsSilently() {
+        AtomicInteger calls = new AtomicInteger();
+        failOnce(calls);
+        failOnce(calls);
+
+        assertTrue(breaker.isOpen());
+        assertEquals(Optional.empty(), breaker.execute(() -> calls.incrementAndGet()));
+        assertEquals(4, calls.get());
+        assertEquals(0, port.probes.get());
+    }
+
+    @Test
+    void execute_afterOpenDuration_probesThenCloses() {
+        AtomicInteger calls = new AtomicInteger();
+        failOnce(calls);
+        failOnce(calls);
+
+        clock.advance(Duration.ofMinutes(5));
+
+        assertEquals(Optional.of("ok"), breaker.execute(() -> "ok"));
+        assertEquals(1, port.probes.get());
+        assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    void execute_whenProbeFails_staysOpenForAnotherPeriod() {
+        AtomicInteger calls = new AtomicInteger();
+        failOnce(calls);
+        failOnce(calls);
+        port.reachable = false;
+
+        clock.advance(Duration.ofMinutes(5));
+        assertEquals(Optional.empty(), breaker.execute(() -> "ok"));
+        clock.advance(Duration.ofMinutes(4));
+        assertEquals(Optional.empty(), breaker.execute(() -> "ok"));
+
+        assertEquals(1, port.probes.get());
+        assertTrue(breaker.isOpen());
+    }
+
+    private void failOnce(AtomicInteger calls) {
+        assertThrows(ScrapingException.class, () -> breaker.execute(() -> {
+            calls.incrementAndGet();
+            throw new ScrapingException("boom");
+        }));
+    }
+
+    private static final class FakeKralandScrapingPort implements KralandScrapingPort {
+
+        private final AtomicInteger probes = new AtomicInteger();
+        private volatile boolean reachable = true;
+
+        @Override
+        public ScrapingResult scrape(Account account) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean sleepIfAvailable(Account account) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void refreshCharacteristics(Account account) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isReachable() {
+            probes.incrementAndGet();
+            return reachable;
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package arn.roub.krabot.application.usecase;
 
+import arn.roub.krabot.application.service.ScrapingCircuitBreaker;
 import arn.roub.krabot.domain.model.Account;
 import arn.roub.krabot.domain.model.ScrapingResult;
 import arn.roub.krabot.domain.port.out.KralandScrapingPort;
 import arn.roub.krabot.shared.exception.ScrapingException;
 import org.junit.jupiter.api.Test;
 
+import java.time.Clock;
+import java.time.Duration;
 import java.util.ArrayDeque;
 import java.util.Deque;
 
@@ -20,7 +23,7 @@ class CheckSleepUseCaseImplTest {
     void execute_whenSleepAvailable_submitsOrderOnce() {
         FakeKralandScrapingPort port = new FakeKralandScrapingPort();
         port.results.add(() -> true);
-        CheckSleepUseCaseImpl useCase = new CheckSleepUseCaseImpl(port, ACCOUNT);
+        CheckSleepUseCaseImpl useCase = newUseCase(port);
 
         useCase.execute();
 
@@ -31,7 +34,7 @@ class CheckSleepUseCaseImplTest {
     void execute_whenSleepNotAvailable_doesNothingElse() {
         FakeKralandScrapingPort port = new FakeKralandScrapingPort();
         port.results.add(() -> false);
-        CheckSleepUseCaseImpl useCase = new CheckSleepUseCaseImpl(port, ACCOUNT);
+        CheckSleepUseCaseImpl useCase = newUseCase(port);
 
         useCase.execute();
 
@@ -48,7 +51,7 @@ class CheckSleepUseCaseImplTest {
             throw new ScrapingException("boom again");
         });
         port.results.add(() -> true);
-        CheckSleepUseCaseImpl useCase = new CheckSleepUseCaseImpl(port, ACCOUNT);
+        CheckSleepUseCaseImpl useCase = newUseCase(port);
 
         useCase.execute();
 
@@ -63,12 +66,18 @@ class CheckSleepUseCaseImplTest {
                 throw new ScrapingException("boom");
             });
         }
-        CheckSleepUseCaseImpl useCase = new CheckSleepUseCaseImpl(port, ACCOUNT);
+        CheckSleepUseCaseImpl useCase = newUseCase(port);
 
         assertThrows(ScrapingException.class, useCase::execute);
         assertEquals(3, port.callCount);
     }
 
+    private static CheckSleepUseCaseImpl newUseCase(KralandScrapingPort port) {
+        ScrapingCircuitBreaker breaker = new ScrapingCircuitBreaker(
+                port, 3, Duration.ZERO, Duration.ZERO, 3, Duration.ofMinutes(5), Clock.systemUTC());
+        return new CheckSleepUseCaseImpl(port, breaker, ACCOUNT);
+    }
+
     private interface SleepResult {
         boolean get();
     }
@@ -88,5 +97,15 @@ class CheckSleepUseCaseImplTest {
             callCount++;
             return results.poll().get();
         }
+
+        @Override
+        public void refreshCharacteristics(Account account) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isReachable() {
+            return true;
+        }
     }
 }
@@ -118,4 +118,30 @@ class ScrapingResultTest {
         assertNotNull(result.kramails());
         assertTrue(result.kramails().isEmpty());
     }
+
+    @Test
+    @DisplayName("Should not be partial when no account failed")
+    void shouldNotBePartialByDefault() {
+        // When
+        ScrapingResult result = new ScrapingResult(List.of(), false);
+
+        // Then
+        assertTrue(result.failedAccounts().isEmpty());
+        assertFalse(result.isPartial());
+    }
+
+    @Test
+    @DisplayName("Should be partial when some accounts failed")
+    void shouldBePartialWhenAccountsFailed() {
+        // Given
+        List<Kramail> kramails = List.of(new Kramail(new KramailId("km1"), "Title", "Sender", "Recipient"));
+
+        // When
+        ScrapingResult result = new ScrapingResult(kramails, false, List.of("Perso2"));
+
+        // Then
+        assertTrue(result.isPartial());
+        assertEquals(List.of("Perso2"), result.failedAccounts());
+        assertEquals(1, result.kramails().size());
+    }
 }
@@ -0,0 +1,75 @@
+package arn.roub.krabot.infrastructure.adapter.out.notification;
+
+import arn.roub.krabot.shared.exception.RateLimitException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiscordDeliveryQueueTest {
+
+    private final RecordingWebhookClient webhookClient = new RecordingWebhookClient();
+
+    private DiscordDeliveryQueue queue;
+
+    @AfterEach
+    void tearDown() {
+        queue.close();
+    }
+
+    @Test
+    void submitLater_mergesDuplicates_keepsTheNewestBackgroundMessages_andLetsAwaitedMessagesFirst() throws Exception {
+        queue = new DiscordDeliveryQueue(webhookClient, 50);
+        List<CompletableFuture<Void>> errors = IntStream.range(0, DiscordDeliveryQueue.MAX_BACKGROUND + 2)
+                .mapToObj(i -> queue.submitLater("erreur " + i))
+                .toList();
+        CompletableFuture<Void> duplicate = queue.submitLater("erreur 6");
+        CompletableFuture<Void> kramail = queue.submit("kramail");
+
+        queue.start();
+        kramail.get();
+        queue.close(Duration.ofSeconds(5));
+
+        assertSame(errors.getLast(), duplicate);
+        assertTrue(errors.get(0).isCancelled() && errors.get(1).isCancelled());
+        assertEquals(List.of("kramail", "erreur 2", "erreur 3", "erreur 4", "erreur 5", "erreur 6"),
+                webhookClient.messages);
+    }
+
+    @Test
+    void submit_whenFullOfAwaitedMessages_failsInsteadOfGrowing() {
+        queue = new DiscordDeliveryQueue(webhookClient, 2);
+        queue.submit("kramail 1");
+        queue.submit("kramail 2");
+
+        CompletableFuture<Void> overflow = queue.submit("kramail 3");
+        CompletableFuture<Void> error = queue.submitLater("erreur");
+
+        ExecutionException failure = assertThrows(ExecutionException.class, overflow::get);
+        assertInstanceOf(RateLimitException.class, failure.getCause());
+        assertTrue(error.isCancelled());
+        assertEquals(2, queue.pendingCount());
+    }
+
+    private static class RecordingWebhookClient extends DiscordWebhookClient {
+
+        private final List<String> messages = new CopyOnWriteArrayList<>();
+
+        RecordingWebhookClient() {
+            super("https://discord.invalid/api/webhooks/1/token", "Krabot", "http://img.kraland.org/a/krabot.jpg",
+                    new DiscordRateLimiter());
+        }
+
+        @Override
+        public void post(String content) {
+            messages.add(content);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package arn.roub.krabot.infrastructure.adapter.out.notification;
+
+import arn.roub.krabot.domain.model.Kramail;
+import arn.roub.krabot.domain.model.KramailId;
+import arn.roub.krabot.shared.exception.NotificationException;
+import arn.roub.krabot.shared.exception.RateLimitException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiscordNotificationAdapterTest {
+
+    private final RecordingWebhookClient webhookClient = new RecordingWebhookClient();
+    private final DiscordDeliveryQueue deliveryQueue = new DiscordDeliveryQueue(webhookClient, 50);
+    private final DiscordNotificationAdapter adapter = new DiscordNotificationAdapter(deliveryQueue,
+            Duration.ofSeconds(5), "start", "stop", "*recipient* : '*title*' de *originator*", "notif", "release", "oh no");
+
+    DiscordNotificationAdapterTest() {
+        deliveryQueue.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        deliveryQueue.close();
+    }
+
+    @Test
+    void sendKramailNotifications_packsRenderedTemplatesIntoOneMessage() {
+        int delivered = adapter.sendKramailNotifications(List.of(kramail("1"), kramail("2")));
+
+        assertEquals(2, delivered);
+        assertEquals(List.of("Alice : 'Sujet 1' de Bob\nAlice : 'Sujet 2' de Bob"), webhookClient.messages);
+    }
+
+    @Test
+    void sendKramailNotifications_splitsAtDiscordContentLimit() {
+        List<Kramail> kramails = IntStream.range(0, 300).mapToObj(i -> kramail(String.valueOf(i))).toList();
+
+        assertEquals(300, adapter.sendKramailNotifications(kramails));
+
+        assertTrue(webhookClient.messages.size() > 1);
+        assertTrue(webhookClient.messages.size() < 10);
+        webhookClient.messages.forEach(message ->
+                assertTrue(message.length() <= DiscordNotificationAdapter.MAX_CONTENT_LENGTH));
+        assertEquals(300, webhookClient.messages.stream().mapToLong(message -> message.lines().count()).sum());
+    }
+
+    @Test
+    void sendKramailNotifications_stopsAtFirstFailedCall_andReportsDeliveredPrefix() {
+        List<Kramail> kramails = IntStream.range(0, 300).mapToObj(i -> kramail(String.valueOf(i))).toList();
+        webhookClient.failAfter = 1;
+
+        int delivered = adapter.sendKramailNotifications(kramails);
+
+        assertEquals(1, webhookClient.messages.size());
+        assertEquals(webhookClient.messages.getFirst().lines().count(), delivered);
+    }
+
+    @Test
+    void sendKramailNotification_whenRateLimited_resendsInsteadOfDropping() {
+        webhookClient.rateLimitedCalls = 2;
+
+        adapter.sendKramailNotification(kramail("1"));
+
+        assertEquals(List.of("Alice : 'Sujet 1' de Bob"), webhookClient.messages);
+        assertEquals(3, webhookClient.calls);
+    }
+
+    @Test
+    void sendKramailNotification_whenStillRateLimitedAfterTimeout_withdrawsTheMessage() {
+        DiscordNotificationAdapter impatient = new DiscordNotificationAdapter(deliveryQueue, Duration.ofMillis(50),
+                "start", "stop", "*title*", "notif", "release", "oh no");
+        webhookClient.rateLimitedContent = "Sujet 1";
+
+        assertThrows(RateLimitException.class, () -> impatient.sendKramailNotification(kramail("1")));
+        adapter.sendGeneralNotification();
+
+        assertEquals(List.of("notif"), webhookClient.messages);
+    }
+
+    @Test
+    void sendKramailNotification_whenTimeoutElapsesDuringThePost_waitsForTheOutcomeInsteadOfWithdrawing() {
+        DiscordNotificationAdapter impatient = new DiscordNotificationAdapter(deliveryQueue, Duration.ofMillis(50),
+                "start", "stop", "*title*", "notif", "release", "oh no");
+        webhookClient.postDelay = Duration.ofMillis(300);
+
+        assertDoesNotThrow(() -> impatient.sendKramailNotification(kramail("1")));
+
+        assertEquals(List.of("Sujet 1"), webhookClient.messages);
+    }
+
+    private static Kramail kramail(String id) {
+        return new Kramail(new KramailId(id), "Sujet " + id, "Bob", "Alice");
+    }
+
+    private static class RecordingWebhookClient extends DiscordWebhookClient {
+
+        private final List<String> messages = new CopyOnWriteArrayList<>();
+        private volatile int failAfter = Integer.MAX_VALUE;
+        private volatile int rateLimitedCalls;
+        private volatile String rateLimitedContent;
+        private volatile Duration postDelay;
+        private volatile int calls;
+
+        RecordingWebhookClient() {
+            super("https://discord.invalid/api/webhooks/1/token", "Krabot", "http://img.kraland.org/a/krabot.jpg",
+                    new DiscordRateLimiter());
+        }
+
+        @Override
+        public void post(String content) {
+            calls++;
+            if (postDelay != null) {
+                try {
+                    Thread.sleep(postDelay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (content.equals(rateLimitedContent)) {
+                throw new RateLimitException("Discord rate limit, retry after PT0S");
+            }
+            if (rateLimitedCalls > 0) {
+                rateLimitedCalls--;
+                throw new RateLimitException("Discord rate limit, retry after PT0S");
+            }
+            if (messages.size() >= failAfter) {
+                throw new NotificationException("Discord unavailable");
+            }
+            messages.add(content);
+        }
+    }
+}
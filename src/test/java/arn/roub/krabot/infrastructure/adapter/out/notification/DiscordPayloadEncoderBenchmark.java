@@ -0,0 +1,80 @@
+package arn.roub.krabot.infrastructure.adapter.out.notification;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare la sérialisation historique du corps d'un message Discord (map, {@link ObjectMapper#writeValueAsString}
+ * puis {@code getBytes}) au {@link DiscordPayloadEncoder}, pour un kramail seul et pour un message regroupant
+ * plusieurs kramails.
+ * <p>
+ * Lancement : {@code ./mvnw test-compile} puis exécuter {@link #main(String[])} avec le classpath de test.
+ * Le profiler GC rapporte l'allocation par opération ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DiscordPayloadEncoderBenchmark {
+
+    private static final String USERNAME = "Krabot";
+    private static final String AVATAR_URL = "http://img.kraland.org/a/krabot.jpg";
+    private static final String KRAMAIL = "📬 Kramail pour Thanaël de Expéditeur 42: \"Réunion du conseil à l'aube\"";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Param({"1", "20"})
+    public int kramails;
+
+    private final DiscordPayloadEncoder encoder = new DiscordPayloadEncoder(USERNAME, AVATAR_URL);
+    private String content;
+
+    @Setup
+    public void setUp() {
+        content = String.join("\n", Collections.nCopies(kramails, KRAMAIL));
+    }
+
+    @Benchmark
+    public byte[] objectMapper() throws JsonProcessingException {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("content", content);
+        payload.put("username", USERNAME);
+        payload.put("avatar_url", AVATAR_URL);
+        payload.put("tts", false);
+        return OBJECT_MAPPER.writeValueAsString(payload).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] encoder() {
+        return encoder.encode(content);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DiscordPayloadEncoderBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
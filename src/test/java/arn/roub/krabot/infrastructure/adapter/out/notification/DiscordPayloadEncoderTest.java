@@ -0,0 +1,41 @@
+package arn.roub.krabot.infrastructure.adapter.out.notification;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiscordPayloadEncoderTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final DiscordPayloadEncoder encoder =
+            new DiscordPayloadEncoder("Krabot \"le crabe\"", "http://img.kraland.org/a/krabot.jpg");
+
+    @Test
+    void encode_producesTheWebhookPayload() throws IOException {
+        JsonNode payload = OBJECT_MAPPER.readTree(encoder.encode("📬 Kramail pour Thanaël de Bob: \"Sujet\""));
+
+        assertEquals("📬 Kramail pour Thanaël de Bob: \"Sujet\"", payload.get("content").asText());
+        assertEquals("Krabot \"le crabe\"", payload.get("username").asText());
+        assertEquals("http://img.kraland.org/a/krabot.jpg", payload.get("avatar_url").asText());
+        assertFalse(payload.get("tts").asBoolean());
+    }
+
+    @Test
+    void encode_escapesLikeJackson_andEncodesUtf8LikeString() throws IOException {
+        String content = "ligne 1\nligne 2\r\n\ttab \\ \"quote\" \u0001\u001f é ∑ 😀 fin\ud800";
+
+        byte[] encoded = encoder.encode(content);
+
+        String expected = new String(content.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+        assertEquals(expected, OBJECT_MAPPER.readTree(encoded).get("content").asText());
+        String json = new String(encoded, StandardCharsets.UTF_8);
+        assertTrue(json.contains("\\u0001\\u001f"));
+        assertTrue(json.contains("\\n") && json.contains("\\t") && json.contains("\\\\"));
+    }
+}
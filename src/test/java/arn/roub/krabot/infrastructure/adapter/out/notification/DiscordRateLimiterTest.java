@@ -0,0 +1,61 @@
+package arn.roub.krabot.infrastructure.adapter.out.notification;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiscordRateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private final DiscordRateLimiter limiter = new DiscordRateLimiter(now::get);
+
+    @Test
+    void reserve_withoutAnnouncedBudget_doesNotWait() {
+        assertEquals(0, limiter.reserve());
+        assertEquals(0, limiter.reserve());
+    }
+
+    @Test
+    void reserve_spendsAnnouncedBudget_thenWaitsExactlyForReset() {
+        limiter.update(headers(Map.of(
+                "x-ratelimit-bucket", "abcd1234",
+                "x-ratelimit-remaining", "2",
+                "x-ratelimit-reset-after", "1.5")));
+
+        assertEquals(0, limiter.reserve());
+        assertEquals(0, limiter.reserve());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1500), limiter.reserve());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1500));
+        assertEquals(0, limiter.reserve());
+    }
+
+    @Test
+    void onTooManyRequests_blocksForRetryAfterOfTheBody_orElseTheHeader() {
+        assertEquals(Duration.ofMillis(2250), limiter.onTooManyRequests(headers(Map.of("retry-after", "9")),
+                "{\"message\": \"You are being rate limited.\", \"retry_after\": 2.25, \"global\": false}"));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(2250), limiter.reserve());
+
+        assertEquals(Duration.ofSeconds(3), limiter.onTooManyRequests(headers(Map.of("retry-after", "3")), ""));
+        assertEquals(TimeUnit.SECONDS.toNanos(3), limiter.reserve());
+    }
+
+    @Test
+    void update_ignoresIncompleteOrMalformedHeaders() {
+        limiter.update(headers(Map.of("x-ratelimit-remaining", "0")));
+        limiter.update(headers(Map.of("x-ratelimit-remaining", "zero", "x-ratelimit-reset-after", "1")));
+
+        assertEquals(0, limiter.reserve());
+    }
+
+    private static Function<String, Optional<String>> headers(Map<String, String> values) {
+        return name -> Optional.ofNullable(values.get(name));
+    }
+}
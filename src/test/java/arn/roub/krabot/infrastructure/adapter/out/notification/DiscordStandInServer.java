@@ -0,0 +1,160 @@
+package arn.roub.krabot.infrastructure.adapter.out.notification;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsParameters;
+import com.sun.net.httpserver.HttpsServer;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serveur HTTPS local qui se fait passer pour un webhook Discord, pour les tests et les mesures de
+ * {@link DiscordWebhookClient}.
+ * <p>
+ * Le certificat auto-signé (valable pour 127.0.0.1) est généré au démarrage par {@code keytool} ; le client doit
+ * utiliser {@link #sslContext()} pour lui faire confiance. Chaque message est accepté en 204 avec les en-têtes de
+ * rate limit de Discord, après une latence simulée ; les {@code tooManyRequests} premiers messages sont refusés
+ * en 429. Le serveur compte les connexions TLS ouvertes par les clients.
+ */
+final class DiscordStandInServer implements AutoCloseable {
+
+    static final String WEBHOOK_PATH = "/api/webhooks/1234/token";
+    private static final char[] PASSWORD = "standin".toCharArray();
+
+    private final Duration latency;
+    private final AtomicInteger tooManyRequests;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final List<String> messages = new CopyOnWriteArrayList<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final SSLContext sslContext;
+    private final HttpsServer server;
+
+    DiscordStandInServer(Duration latency, int tooManyRequests) throws IOException, GeneralSecurityException,
+            InterruptedException {
+        this.latency = latency;
+        this.tooManyRequests = new AtomicInteger(tooManyRequests);
+        this.sslContext = selfSignedContext();
+
+        server = HttpsServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setHttpsConfigurator(new HttpsConfigurator(sslContext) {
+            @Override
+            public void configure(HttpsParameters params) {
+                connections.incrementAndGet();
+                params.setSSLParameters(getSSLContext().getDefaultSSLParameters());
+            }
+        });
+        server.createContext(WEBHOOK_PATH, this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return l'URL du webhook à donner au client
+     */
+    String webhookUrl() {
+        return "https://127.0.0.1:" + server.getAddress().getPort() + WEBHOOK_PATH;
+    }
+
+    /**
+     * @return un contexte TLS qui fait confiance au certificat du serveur
+     */
+    SSLContext sslContext() {
+        return sslContext;
+    }
+
+    int connections() {
+        return connections.get();
+    }
+
+    List<String> messages() {
+        return messages;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            if (latency.isPositive()) {
+                Thread.sleep(latency);
+            }
+            exchange.getResponseHeaders().add("x-ratelimit-bucket", "standin");
+            exchange.getResponseHeaders().add("x-ratelimit-reset-after", "0.001");
+            if (exchange.getRequestMethod().equals("POST") && tooManyRequests.getAndDecrement() > 0) {
+                byte[] error = "{\"message\": \"You are being rate limited.\", \"retry_after\": 0.05, \"global\": false}"
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("x-ratelimit-remaining", "0");
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(429, error.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(error);
+                }
+                return;
+            }
+            if (exchange.getRequestMethod().equals("POST")) {
+                messages.add(body);
+            }
+            exchange.getResponseHeaders().add("x-ratelimit-remaining", "1000");
+            exchange.sendResponseHeaders(204, -1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static SSLContext selfSignedContext() throws IOException, GeneralSecurityException, InterruptedException {
+        Path keyStore = Files.createTempFile("discord-standin", ".p12");
+        Files.delete(keyStore);
+        try {
+            Process keytool = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "keytool").toString(),
+                    "-genkeypair", "-alias", "standin", "-keyalg", "EC", "-groupname", "secp256r1",
+                    "-dname", "CN=127.0.0.1", "-ext", "SAN=ip:127.0.0.1", "-validity", "2",
+                    "-storetype", "PKCS12", "-keystore", keyStore.toString(),
+                    "-storepass", new String(PASSWORD), "-keypass", new String(PASSWORD))
+                    .redirectErrorStream(true)
+                    .start();
+            keytool.getInputStream().transferTo(OutputStream.nullOutputStream());
+            if (keytool.waitFor() != 0) {
+                throw new IOException("keytool failed to generate the stand-in certificate");
+            }
+
+            KeyStore store = KeyStore.getInstance("PKCS12");
+            try (InputStream in = Files.newInputStream(keyStore)) {
+                store.load(in, PASSWORD);
+            }
+            KeyManagerFactory keys = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keys.init(store, PASSWORD);
+            TrustManagerFactory trust = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            trust.init(store);
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(keys.getKeyManagers(), trust.getTrustManagers(), null);
+            return context;
+        } finally {
+            Files.deleteIfExists(keyStore);
+        }
+    }
+}
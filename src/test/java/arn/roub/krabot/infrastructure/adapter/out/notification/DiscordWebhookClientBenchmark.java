@@ -0,0 +1,96 @@
+package arn.roub.krabot.infrastructure.adapter.out.notification;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.net.ssl.HttpsURLConnection;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare l'envoi historique d'un message Discord (une {@link HttpsURLConnection} par message, fermée par
+ * {@code disconnect()}) au {@link DiscordWebhookClient} et à sa connexion partagée, contre le serveur HTTPS local
+ * {@link DiscordStandInServer}. Le mode {@link Mode#SampleTime} donne la distribution (p50, p90, p99) de la
+ * latence d'un envoi.
+ * <p>
+ * Lancement : {@code ./mvnw test-compile} puis exécuter {@link #main(String[])} avec le classpath de test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DiscordWebhookClientBenchmark {
+
+    private static final String PAYLOAD = "{\"content\":\"📬 Kramail pour Thanaël de Bob: \\\"Sujet\\\"\","
+            + "\"username\":\"Krabot\",\"avatar_url\":\"http://img.kraland.org/a/krabot.jpg\",\"tts\":false}";
+
+    private DiscordStandInServer server;
+    private DiscordWebhookClient client;
+
+    @Setup
+    public void setUp() throws Exception {
+        server = new DiscordStandInServer(Duration.ZERO, 0);
+        client = new DiscordWebhookClient(server.webhookUrl(), "Krabot", "http://img.kraland.org/a/krabot.jpg",
+                new DiscordRateLimiter(),
+                HttpClient.newBuilder().sslContext(server.sslContext()).version(HttpClient.Version.HTTP_2).build());
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public int perCallConnection() throws Exception {
+        HttpsURLConnection connection = (HttpsURLConnection) URI.create(server.webhookUrl()).toURL().openConnection();
+        try {
+            connection.setSSLSocketFactory(server.sslContext().getSocketFactory());
+            connection.addRequestProperty("Content-Type", "application/json; charset=UTF-8");
+            connection.addRequestProperty("User-Agent", "Krabot Webhook");
+            connection.setDoOutput(true);
+            connection.setRequestMethod("POST");
+            try (OutputStream stream = connection.getOutputStream()) {
+                stream.write(PAYLOAD.getBytes(StandardCharsets.UTF_8));
+            }
+            int responseCode = connection.getResponseCode();
+            try (InputStream stream = responseCode < 300 ? connection.getInputStream() : connection.getErrorStream()) {
+                if (stream != null) {
+                    stream.transferTo(OutputStream.nullOutputStream());
+                }
+            }
+            return responseCode;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Benchmark
+    public void sharedClient() {
+        client.send("📬 Kramail pour Thanaël de Bob: \"Sujet\"");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DiscordWebhookClientBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,50 @@
+package arn.roub.krabot.infrastructure.adapter.out.notification;
+
+import arn.roub.krabot.shared.exception.RateLimitException;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiscordWebhookClientTest {
+
+    @Test
+    void send_reusesOneConnectionForMessagesAndProbes() throws Exception {
+        try (DiscordStandInServer server = new DiscordStandInServer(Duration.ZERO, 0)) {
+            DiscordWebhookClient client = client(server, new DiscordRateLimiter());
+
+            client.send("premier");
+            client.sendAsync("deuxième").join();
+            client.send("troisième");
+            assertEquals(204, client.probe());
+
+            assertEquals(3, server.messages().size());
+            assertTrue(server.messages().getFirst().contains("\"content\":\"premier\""));
+            assertEquals(1, server.connections());
+        }
+    }
+
+    @Test
+    void sendAsync_whenRejected_failsWithRateLimit_andNextSendWaitsForRetryAfter() throws Exception {
+        try (DiscordStandInServer server = new DiscordStandInServer(Duration.ZERO, 1)) {
+            DiscordRateLimiter limiter = new DiscordRateLimiter();
+            DiscordWebhookClient client = client(server, limiter);
+
+            CompletionException failure = assertThrows(CompletionException.class,
+                    () -> client.sendAsync("refusé").join());
+            assertInstanceOf(RateLimitException.class, failure.getCause());
+            assertTrue(limiter.reserve() > 0);
+
+            client.send("accepté");
+            assertEquals(1, server.messages().size());
+        }
+    }
+
+    private static DiscordWebhookClient client(DiscordStandInServer server, DiscordRateLimiter limiter) {
+        return new DiscordWebhookClient(server.webhookUrl(), "Krabot", "http://img.kraland.org/a/krabot.jpg", limiter,
+                HttpClient.newBuilder().sslContext(server.sslContext()).version(HttpClient.Version.HTTP_2).build());
+    }
+}
@@ -0,0 +1,49 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import arn.roub.krabot.domain.model.Characteristic;
+import arn.roub.krabot.infrastructure.adapter.out.persistence.CharacteristicsMemoryRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KralandCharacteristicsHarvesterTest {
+
+    private final CharacteristicsMemoryRepository repository = new CharacteristicsMemoryRepository();
+    private final List<Runnable> pending = new ArrayList<>();
+
+    @Test
+    void harvest_savesCharacteristicsUnderNamespaceOnceTheTaskRuns() {
+        KralandCharacteristicsHarvester harvester = new KralandCharacteristicsHarvester("api-key", repository, pending::add);
+
+        harvester.harvest(KralandCharacteristicsParserTest.PLATEAU);
+
+        // Rien n'est fait sur le thread appelant
+        assertTrue(repository.findByPlayerId("api-key", "82020").isEmpty());
+        pending.forEach(Runnable::run);
+        Characteristic saved = repository.findByPlayerId("api-key", "82020").orElseThrow();
+        assertEquals("Thanaël le Joyeux", saved.name());
+        assertEquals(137, saved.pp());
+    }
+
+    @Test
+    void harvest_withoutNamespace_ignoresPage() {
+        KralandCharacteristicsHarvester harvester = new KralandCharacteristicsHarvester(null, repository, pending::add);
+
+        harvester.harvest(KralandCharacteristicsParserTest.PLATEAU);
+
+        assertFalse(harvester.isEnabled());
+        assertTrue(pending.isEmpty());
+    }
+
+    @Test
+    void harvest_whenPageHasNoCharacteristics_savesNothing() {
+        KralandCharacteristicsHarvester harvester = new KralandCharacteristicsHarvester("api-key", repository, Runnable::run);
+
+        harvester.harvest("<html><body>Kraland</body></html>");
+
+        assertTrue(repository.findAllUsers("api-key").isEmpty());
+    }
+}
@@ -0,0 +1,122 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compare l'extraction historique des caractéristiques (un parcours par valeur, {@code text()} sur chaque
+ * élément du document, expressions recompilées par élément) au parcours unique de
+ * {@link KralandCharacteristicsParser}, sur un DOM déjà parsé.
+ * <p>
+ * Lancement : {@code ./mvnw test-compile} puis exécuter {@link #main(String[])} avec le classpath de test.
+ * Le profiler GC rapporte l'allocation par opération ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KralandCharacteristicsParserBenchmark {
+
+    @Param({"kraland_plateau_sample.html", "kraland_plateau_page.html"})
+    public String fixture;
+
+    private final KralandCharacteristicsParser parser = new KralandCharacteristicsParser();
+    private ParsedKralandPage page;
+
+    @Setup
+    public void setUp() throws IOException {
+        // La page plateau réelle ne contient pas le bloc du personnage : il est ajouté en fin de document,
+        // ce qui est le cas le plus défavorable pour les deux implémentations
+        String html = KralandHtmlParserTest.loadFixture(fixture)
+                .replace("</body>", KralandCharacteristicsParserTest.PLATEAU + "</body>");
+        if (!html.contains(KralandCharacteristicsParserTest.PLATEAU)) {
+            html = html + KralandCharacteristicsParserTest.PLATEAU;
+        }
+        page = ParsedKralandPage.parse(html);
+    }
+
+    @Benchmark
+    public void legacy(Blackhole bh) {
+        Document doc = page.document();
+        bh.consume(legacyName(doc));
+        bh.consume(legacyPlayerId(doc));
+        bh.consume(legacyPp(doc));
+    }
+
+    @Benchmark
+    public void singlePass(Blackhole bh) {
+        bh.consume(parser.parse(page));
+    }
+
+    // Copie conforme de l'ancienne implémentation, expressions doublement échappées comprises : elles ne
+    // correspondent jamais, si bien que l'ancien parcours allait toujours jusqu'au bout du document
+
+    private static String legacyName(Document doc) {
+        Element container = doc.selectFirst("div.col-md-3.sidebar, #content, .container");
+        if (container == null) return null;
+        for (String line : container.ownText().split("\\n")) {
+            String s = line.trim();
+            if (!s.isEmpty() && s.matches("[A-Za-zÀ-ÖØ-öø-ÿ].*\\s.*") && s.length() < 100) {
+                return s;
+            }
+        }
+        for (Element child : container.children()) {
+            String s = child.ownText().trim();
+            if (!s.isEmpty() && s.matches("[A-Za-zÀ-ÖØ-öø-ÿ].*\\s.*") && s.length() < 100) {
+                return s;
+            }
+        }
+        return null;
+    }
+
+    private static String legacyPlayerId(Document doc) {
+        for (Element a : doc.select("a[href*=\"/communaute/membres/\"]")) {
+            String href = a.attr("href");
+            if (href.isEmpty() || href.contains("/edit")) continue;
+            Matcher matcher = Pattern.compile("-(\\\\d+)$").matcher(href);
+            if (matcher.find()) return matcher.group(1);
+        }
+        return null;
+    }
+
+    private static Integer legacyPp(Document doc) {
+        for (Element e : doc.getAllElements()) {
+            String text = e.text();
+            if (text.matches(".*\\bPP\\b.*")) {
+                Matcher m = Pattern.compile("PP\\\\D*(\\\\d+)").matcher(text);
+                if (m.find()) return Integer.parseInt(m.group(1));
+            }
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(KralandCharacteristicsParserBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,59 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import arn.roub.krabot.domain.model.Characteristic;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KralandCharacteristicsParserTest {
+
+    static final String PLATEAU = """
+            <div id="content" class="container"><div class="row">
+            <div id="col-left" class="col-md-3 sidebar">
+                <div class="list-group">
+                    <a href="jouer/perso/1" class="list-group-item">Autre perso</a>
+                    <a href="jouer/perso/2" class="list-group-item active">Thanaël le Joyeux <span>×</span></a>
+                </div>
+            </div>
+            <div class="col-md-9">
+                <a href="communaute/membres/intrus-2-1">Intrus hors dashboard</a>
+                <div class="dashboard">
+                    <a href="communaute/membres/thanael-2-82020">Profil</a>
+                    <a href="#" data-original-title="Puissance Politique : 137">PP</a>
+                </div>
+            </div>
+            </div></div>
+            """;
+
+    private final KralandCharacteristicsParser parser = new KralandCharacteristicsParser();
+
+    @Test
+    void parse_plateau_extractsNamePlayerIdAndPp() {
+        Characteristic characteristic = parser.parse(PLATEAU).orElseThrow();
+
+        assertEquals("Thanaël le Joyeux", characteristic.name());
+        assertEquals("82020", characteristic.playerId());
+        assertEquals(137, characteristic.pp());
+    }
+
+    @Test
+    void parse_withoutTooltip_fallsBackToMobileGauge() {
+        String html = PLATEAU.replace("data-original-title=\"Puissance Politique : 137\"", "")
+                .replace("</div></div>", """
+                        <div class="mobile-gauge-compact-label">PP</div>
+                        <div class="mobile-gauge-compact-bar"></div>
+                        <div class="mobile-gauge-compact-value">1 204</div>
+                        </div></div>""");
+
+        assertEquals(1204, parser.parse(html).orElseThrow().pp());
+    }
+
+    @Test
+    void parse_whenPpMissing_returnsEmpty() throws IOException {
+        assertEquals(Optional.empty(), parser.parse(PLATEAU.replace("Puissance Politique", "Prestige")));
+        assertEquals(Optional.empty(), parser.parse(KralandHtmlParserTest.loadFixture("kraland_plateau_sample.html")));
+    }
+}
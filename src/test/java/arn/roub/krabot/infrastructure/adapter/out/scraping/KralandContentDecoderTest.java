@@ -0,0 +1,187 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KralandContentDecoderTest {
+
+    private static final byte[] PAGE = "<html><body>kramail é</body></html>".repeat(500).getBytes(StandardCharsets.UTF_8);
+
+    private final KralandContentDecoder decoder = new KralandContentDecoder();
+
+    @Test
+    void decoding_gzipSplitAcrossChunks_returnsDecodedBody() throws IOException {
+        byte[] compressed = gzip(PAGE);
+
+        byte[] body = receive("gzip", compressed, 7);
+
+        assertArrayEquals(PAGE, body);
+        assertEquals(compressed.length, decoder.wireBytes());
+        assertEquals(PAGE.length, decoder.decodedBytes());
+        assertEquals(1, decoder.compressedResponses());
+    }
+
+    @Test
+    void decoding_zlibDeflate_returnsDecodedBody() throws IOException {
+        assertArrayEquals(PAGE, receive("deflate", deflate(PAGE, false), 1));
+    }
+
+    @Test
+    void decoding_rawDeflate_returnsDecodedBody() throws IOException {
+        assertArrayEquals(PAGE, receive("deflate", deflate(PAGE, true), 1024));
+    }
+
+    @Test
+    void decoding_identity_passesBodyThrough() {
+        assertArrayEquals(PAGE, receive(null, PAGE, 4096));
+        assertEquals(PAGE.length, decoder.wireBytes());
+        assertEquals(0, decoder.compressedResponses());
+    }
+
+    @Test
+    void decoding_truncatedGzip_fails() throws IOException {
+        byte[] compressed = gzip(PAGE);
+
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> receive("gzip", Arrays.copyOf(compressed, compressed.length - 4), 512));
+        assertInstanceOf(EOFException.class, e.getCause());
+    }
+
+    @Test
+    void decoding_gzip_passesOnlyFilledBuffersDownstream() throws IOException {
+        // Taille du tableau et octets restants de chaque tampon, relevés avant que l'aval ne le lise
+        List<List<Integer>> received = new ArrayList<>();
+        HttpResponse.BodySubscriber<byte[]> bytes = HttpResponse.BodySubscribers.ofByteArray();
+        HttpResponse.BodyHandler<byte[]> capturing = info -> new HttpResponse.BodySubscriber<>() {
+            @Override
+            public CompletionStage<byte[]> getBody() {
+                return bytes.getBody();
+            }
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                bytes.onSubscribe(subscription);
+            }
+
+            @Override
+            public void onNext(List<ByteBuffer> items) {
+                items.forEach(item -> received.add(List.of(item.array().length, item.remaining())));
+                bytes.onNext(items);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                bytes.onError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                bytes.onComplete();
+            }
+        };
+
+        assertArrayEquals(PAGE, receive(decoder.decoding(capturing), "gzip", gzip(PAGE), 97));
+        assertFalse(received.isEmpty());
+        for (List<Integer> buffer : received) {
+            assertTrue(buffer.get(1) > 0);
+            assertEquals(buffer.get(0), buffer.get(1));
+        }
+    }
+
+    @Test
+    void decoding_hidesContentEncodingFromDownstream() {
+        AtomicReference<HttpHeaders> seen = new AtomicReference<>();
+        HttpResponse.BodyHandler<Void> headersHandler = info -> {
+            seen.set(info.headers());
+            return HttpResponse.BodySubscribers.discarding();
+        };
+
+        decoder.decoding(headersHandler).apply(responseInfo("gzip"));
+
+        assertTrue(seen.get().firstValue("Content-Encoding").isEmpty());
+        assertTrue(seen.get().firstValue("Content-Length").isEmpty());
+    }
+
+    private byte[] receive(String encoding, byte[] wire, int chunkSize) {
+        return receive(decoder.decoding(HttpResponse.BodyHandlers.ofByteArray()), encoding, wire, chunkSize);
+    }
+
+    private static byte[] receive(HttpResponse.BodyHandler<byte[]> handler, String encoding, byte[] wire,
+                                  int chunkSize) {
+        HttpResponse.BodySubscriber<byte[]> subscriber = handler.apply(responseInfo(encoding));
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        for (int offset = 0; offset < wire.length; offset += chunkSize) {
+            int end = Math.min(wire.length, offset + chunkSize);
+            subscriber.onNext(List.of(ByteBuffer.wrap(Arrays.copyOfRange(wire, offset, end))));
+        }
+        subscriber.onComplete();
+        return subscriber.getBody().toCompletableFuture().join();
+    }
+
+    private static HttpResponse.ResponseInfo responseInfo(String encoding) {
+        Map<String, List<String>> headers = encoding == null
+                ? Map.of()
+                : Map.of("Content-Encoding", List.of(encoding), "Content-Length", List.of("1"));
+        return new HttpResponse.ResponseInfo() {
+            @Override
+            public int statusCode() {
+                return 200;
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return HttpHeaders.of(headers, (name, value) -> true);
+            }
+
+            @Override
+            public HttpClient.Version version() {
+                return HttpClient.Version.HTTP_1_1;
+            }
+        };
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data, boolean raw) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflate = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, raw))) {
+            deflate.write(data);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,87 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Compare le parsing d'une page par vérification (comportement historique) au parsing unique
+ * partagé via {@link ParsedKralandPage}, sur la page kramail et la page plateau des fixtures.
+ * <p>
+ * Lancement : {@code ./mvnw test-compile} puis exécuter {@link #main(String[])} avec le classpath de test.
+ * Le profiler GC rapporte l'allocation par opération ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KralandHtmlParserBenchmark {
+
+    /**
+     * Recherche historique du déclencheur "Dormir" sur tout le HTML de la page.
+     */
+    private static final Pattern LEGACY_SLEEP_AJAX_TRIGGER_PATTERN = Pattern.compile(
+            "\\.alert11\"[\\s\\S]*?updateAjax\\(\\s*'ajax-order'\\s*,\\s*'([^']+)'\\s*,\\s*'([^']+)'\\s*\\)"
+    );
+
+    private final KralandHtmlParser parser = new KralandHtmlParser();
+    private String kramailHtml;
+    private String plateauHtml;
+
+    @Setup
+    public void setUp() throws IOException {
+        kramailHtml = KralandHtmlParserTest.loadFixture("kraland_kramail_page.html");
+        plateauHtml = KralandHtmlParserTest.loadFixture("kraland_plateau_page.html");
+    }
+
+    @Benchmark
+    public void kramailPage_parsePerCheck(Blackhole bh) {
+        bh.consume(parser.hasNotification(kramailHtml));
+        bh.consume(parser.extractAccounts(kramailHtml));
+    }
+
+    @Benchmark
+    public void kramailPage_parseOnce(Blackhole bh) {
+        ParsedKralandPage page = ParsedKralandPage.parse(kramailHtml);
+        bh.consume(parser.hasNotification(page));
+        bh.consume(parser.extractAccounts(page));
+    }
+
+    @Benchmark
+    public void plateauPage_parsePerCheck(Blackhole bh) {
+        bh.consume(parser.isSleepButtonAvailable(plateauHtml));
+        bh.consume(LEGACY_SLEEP_AJAX_TRIGGER_PATTERN.matcher(plateauHtml).find());
+    }
+
+    @Benchmark
+    public void plateauPage_parseOnce(Blackhole bh) {
+        ParsedKralandPage page = ParsedKralandPage.parse(plateauHtml);
+        bh.consume(parser.isSleepButtonAvailable(page));
+        bh.consume(parser.findSleepAjaxTrigger(page));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(KralandHtmlParserBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
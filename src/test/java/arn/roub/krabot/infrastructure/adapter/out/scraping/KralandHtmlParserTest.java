@@ -1,8 +1,13 @@
 package arn.roub.krabot.infrastructure.adapter.out.scraping;
 
+import arn.roub.krabot.domain.model.Kramail;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -1183,4 +1188,165 @@ class KralandHtmlParserTest {
     void extractOrderFormFields_whenFormAbsent_returnsEmptyMap() {
         assertTrue(parser.extractOrderFormFields("<html></html>").isEmpty());
     }
+
+    @Test
+    void extractAccounts_fromKramailPage_skipsNewMessageLink() throws IOException {
+        List<KralandHtmlParser.AccountInfo> accounts = parser.extractAccounts(loadFixture("kraland_kramail_page.html"));
+
+        assertEquals(3, accounts.size());
+        assertEquals("Thanaël le Joyeux", accounts.get(0).name());
+        assertEquals("http://www.kraland.org/kramail/thanael-le-joyeux-2-82020", accounts.get(0).url());
+        assertEquals("http://www.kraland.org/kramail/communaute", accounts.get(2).url());
+    }
+
+    @Test
+    void extractAccounts_fromKramailPage_readsUnreadBadges() throws IOException {
+        List<KralandHtmlParser.AccountInfo> accounts = parser.extractAccounts(loadFixture("kraland_kramail_page.html"));
+
+        assertEquals(2, accounts.get(0).unreadCount());
+        assertEquals(0, accounts.get(1).unreadCount());
+        assertEquals(KralandHtmlParser.AccountInfo.UNKNOWN_UNREAD, accounts.get(2).unreadCount());
+    }
+
+    @Test
+    void parseKramails_fromKramailPage_returnsOnlyUnreadRows() throws IOException {
+        List<Kramail> kramails = parser.parseKramails(loadFixture("kraland_kramail_page.html"));
+
+        assertEquals(2, kramails.size());
+        assertEquals("9051234", kramails.get(0).id().value());
+        assertEquals("Rendez-vous à la taverne", kramails.get(0).title());
+        assertEquals("Megakra", kramails.get(0).originator());
+        assertEquals("Thanaël le Joyeux", kramails.get(0).recipient());
+        assertEquals("9051230", kramails.get(1).id().value());
+    }
+
+    @Test
+    void parseKramails_whenRowsAreIrregular_keepsSelectorSemantics() {
+        String html = """
+                <h1>Thanaël <small>Kramails</small></h1>
+                <table><tbody>
+                <tr><td><input type="checkbox" value="1"></td><td><strong><a href="k/1">A</a></strong></td><td>x</td></tr>
+                <tr><td><input type="hidden" value="h"><input type="CHECKBOX" value="2"></td>
+                    <td><strong><em><a href="k/2">B</a></em></strong><span class="invisible">Part 1</span><span class="x invisible">Part 2</span></td>
+                    <td><a>Yaj</a> <a>Kao</a></td><td></td></tr>
+                <tr><td><input type="checkbox" value="3"></td><td><a href="k/3">C</a><span class="invisible">Read</span></td><td><a>Z</a></td><td></td></tr>
+                </tbody></table>
+                """;
+
+        List<Kramail> kramails = parser.parseKramails(html);
+
+        assertEquals(1, kramails.size());
+        assertEquals("2", kramails.getFirst().id().value());
+        assertEquals("Part 1 Part 2", kramails.getFirst().title());
+        assertEquals("Yaj Kao", kramails.getFirst().originator());
+        assertEquals("Thanaël", kramails.getFirst().recipient());
+    }
+
+    @Test
+    void scanKramails_fromKramailPage_stopsAtFirstReadRow() throws IOException {
+        ParsedKralandPage page = ParsedKralandPage.parse(loadFixture("kraland_kramail_page.html"));
+
+        KralandHtmlParser.KramailScan scan = parser.scanKramails(page, id -> false);
+
+        assertEquals(parser.parseKramails(page), scan.kramails());
+        assertNull(scan.knownId());
+        assertNull(scan.nextPageUrl());
+    }
+
+    @Test
+    void scanKramails_stopsAtFirstKnownKramail() throws IOException {
+        ParsedKralandPage page = ParsedKralandPage.parse(loadFixture("kraland_kramail_page.html"));
+
+        KralandHtmlParser.KramailScan scan = parser.scanKramails(page, id -> id.value().equals("9051230"));
+
+        assertEquals(List.of("9051234"), scan.kramails().stream().map(k -> k.id().value()).toList());
+        assertEquals("9051230", scan.knownId().value());
+    }
+
+    @Test
+    void scanKramails_whenEveryRowUnread_returnsNextPage() {
+        String html = """
+                <h1>Thanaël</h1>
+                <table><tbody>
+                <tr><td><input type="checkbox" value="1"></td><td><strong><a href="k/1">A</a></strong><span class="invisible">A</span></td><td><a>Z</a></td><td></td></tr>
+                </tbody></table>
+                <ul class="pagination"><li><a href="#">1</a></li><li class="active"><a href="#">2</a></li><li><a href="kramail/thanael-2-82020/3">3</a></li></ul>
+                """;
+
+        KralandHtmlParser.KramailScan scan = parser.scanKramails(ParsedKralandPage.parse(html), id -> false);
+
+        assertEquals(1, scan.kramails().size());
+        assertEquals("http://www.kraland.org/kramail/thanael-2-82020/3", scan.nextPageUrl());
+    }
+
+    @Test
+    void parsedPage_sharedAcrossChecks_matchesPerCallParsing() throws IOException {
+        String kramailHtml = loadFixture("kraland_kramail_page.html");
+        String plateauHtml = loadFixture("kraland_plateau_page.html");
+        ParsedKralandPage kramailPage = ParsedKralandPage.parse(kramailHtml);
+        ParsedKralandPage plateauPage = ParsedKralandPage.parse(plateauHtml);
+
+        assertEquals(parser.hasNotification(kramailHtml), parser.hasNotification(kramailPage));
+        assertEquals(parser.extractAccounts(kramailHtml), parser.extractAccounts(kramailPage));
+        assertEquals(parser.parseKramails(kramailHtml), parser.parseKramails(kramailPage));
+        assertTrue(parser.isSleepButtonAvailable(plateauPage));
+        assertEquals(parser.findSleepAjaxTrigger(plateauHtml), parser.findSleepAjaxTrigger(plateauPage));
+    }
+
+    @Test
+    void findSleepAjaxTrigger_fromPlateauPage_onlyLooksInsideScripts() throws IOException {
+        Optional<KralandHtmlParser.AjaxOrderTrigger> trigger =
+                parser.findSleepAjaxTrigger(ParsedKralandPage.parse(loadFixture("kraland_plateau_page.html")));
+
+        assertTrue(trigger.isPresent());
+        assertEquals("2-1-100101-1", trigger.get().param());
+        assertEquals("7956839657", trigger.get().token());
+    }
+
+    @Test
+    void findSleepAjaxTrigger_whenCallOutsideScript_returnsEmpty() {
+        String html = """
+                <a class="btn btn-primary alert11 mini" href="#">Dormir</a>
+                <p>$(document).on("click", ".alert11", function(e) { updateAjax( 'ajax-order', '2-1-100101-1', '7956839657' ); });</p>
+                """;
+
+        assertTrue(parser.findSleepAjaxTrigger(html).isEmpty());
+    }
+
+    @Test
+    void findCountersAjaxTrigger_picksSmallestFragmentWithBellAndSidebar() {
+        String html = """
+                <div id="ajax-page">
+                    <div id="ajax-header">
+                        <a href="" onclick="javascript:openReport();return false;"><i class="fa fa-bell"></i><span class="badge badge-danger">!</span></a>
+                        <div class="list-group">
+                            <a href="kramail/thanael-le-joyeux-2-82020" class="list-group-item active">Thanaël le Joyeux <span class="badge">2</span></a>
+                        </div>
+                    </div>
+                    <div id="ajax-chat"><i class="fa fa-bell"></i></div>
+                </div>
+                <script>
+                    updateAjax( 'ajax-chat', '1-1-0-0', '7956839655' );
+                    setInterval(function() { updateAjax( 'ajax-header', '3-0-0-0', '4956839650' ); }, 60000);
+                    updateAjax( 'ajax-page', '4-0-0-0', '5956839651' );
+                </script>
+                """;
+
+        Optional<KralandHtmlParser.AjaxOrderTrigger> trigger = parser.findCountersAjaxTrigger(ParsedKralandPage.parse(html));
+
+        assertEquals(Optional.of(new KralandHtmlParser.AjaxOrderTrigger("3-0-0-0", "4956839650")), trigger);
+    }
+
+    @Test
+    void findCountersAjaxTrigger_onKramailPageWithoutFragment_returnsEmpty() throws IOException {
+        assertTrue(parser.findCountersAjaxTrigger(ParsedKralandPage.parse(loadFixture("kraland_kramail_page.html"))).isEmpty());
+        assertTrue(parser.findCountersAjaxTrigger(ParsedKralandPage.parse(loadFixture("kraland_plateau_page.html"))).isEmpty());
+    }
+
+    static String loadFixture(String name) throws IOException {
+        try (InputStream in = KralandHtmlParserTest.class.getResourceAsStream("/" + name)) {
+            assertNotNull(in, "Missing fixture " + name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
 }
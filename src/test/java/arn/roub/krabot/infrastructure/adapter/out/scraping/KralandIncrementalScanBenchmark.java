@@ -0,0 +1,101 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import arn.roub.krabot.domain.model.Kramail;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare, à partir des octets bruts d'une page de personnage, la lecture complète du tableau des kramails (DOM
+ * jsoup puis {@link KralandHtmlParser#parseKramails(ParsedKralandPage)}), la lecture incrémentale sur le DOM complet
+ * ({@link KralandHtmlParser#scanKramails}) et la lecture incrémentale en flux
+ * ({@link KralandKramailStreamParser#scan}), sur une boîte de 10, 100 et 5000 kramails dont seuls les 3 premiers
+ * sont non lus. Le parsing du DOM étant inclus, le coût mesuré est celui d'un tick réel.
+ * <p>
+ * Lancement : {@code ./mvnw test-compile} puis exécuter {@link #main(String[])} avec le classpath de test.
+ * Le profiler GC rapporte l'allocation par opération ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KralandIncrementalScanBenchmark {
+
+    private static final int UNREAD = 3;
+    private static final String BASE_URI = "http://www.kraland.org/kramail/thanael-le-joyeux-2-82020";
+
+    @Param({"10", "100", "5000"})
+    public int rows;
+
+    private final KralandHtmlParser parser = new KralandHtmlParser();
+    private final KralandKramailStreamParser streamParser = new KralandKramailStreamParser(parser);
+    private byte[] page;
+
+    @Setup
+    public void setUp() throws IOException {
+        page = mailbox(rows).getBytes(StandardCharsets.UTF_8);
+        List<Kramail> full = fullTable();
+        if (!full.equals(domIncremental().kramails()) || !full.equals(streamingIncremental().kramails())) {
+            throw new IllegalStateException("Full and incremental scans disagree");
+        }
+    }
+
+    @Benchmark
+    public List<Kramail> fullTable() {
+        return parser.parseKramails(ParsedKralandPage.parse(new String(page, StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public KralandHtmlParser.KramailScan domIncremental() {
+        return parser.scanKramails(ParsedKralandPage.parse(new String(page, StandardCharsets.UTF_8)), id -> false);
+    }
+
+    @Benchmark
+    public KralandHtmlParser.KramailScan streamingIncremental() throws IOException {
+        Reader reader = new InputStreamReader(new ByteArrayInputStream(page), StandardCharsets.UTF_8);
+        return streamParser.scan(reader, BASE_URI, id -> false).scan();
+    }
+
+    private static String mailbox(int rows) {
+        StringBuilder html = new StringBuilder("<html><body><h1>Thanaël le Joyeux <small>Kramails</small></h1>")
+                .append("<table class=\"table\"><thead><tr><th></th><th>Sujet</th><th>De</th><th>Date</th></tr></thead><tbody>");
+        for (int i = 0; i < rows; i++) {
+            String id = Integer.toString(9_000_000 - i);
+            String subject = "<a href=\"kramail/thanael-le-joyeux-2-82020/" + id + "\">Sujet " + i + "</a>";
+            html.append("<tr><td><input type=\"checkbox\" name=\"k[]\" value=\"").append(id).append("\"></td><td>")
+                    .append(i < UNREAD ? "<strong>" + subject + "</strong>" : subject)
+                    .append("<span class=\"invisible\">Sujet ").append(i).append("</span></td>")
+                    .append("<td><a href=\"communaute/membres/megakra-2-8234\">Megakra</a></td><td>07 jan 20:04</td></tr>");
+        }
+        return html.append("</tbody></table></body></html>").toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(KralandIncrementalScanBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
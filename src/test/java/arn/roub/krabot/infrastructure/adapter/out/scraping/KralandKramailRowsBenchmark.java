@@ -0,0 +1,107 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import arn.roub.krabot.domain.model.Kramail;
+import arn.roub.krabot.domain.model.KramailId;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare l'extraction des kramails d'une page déjà parsée par sélecteurs CSS recompilés à chaque ligne
+ * (comportement historique) au parcours structurel de {@link KralandHtmlParser#parseKramails(ParsedKralandPage)},
+ * sur des pages de 10, 100 et 1000 lignes dont une sur deux est non lue.
+ * <p>
+ * Lancement : {@code ./mvnw test-compile} puis exécuter {@link #main(String[])} avec le classpath de test.
+ * Le profiler GC rapporte l'allocation par opération ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KralandKramailRowsBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int rows;
+
+    private final KralandHtmlParser parser = new KralandHtmlParser();
+    private ParsedKralandPage page;
+
+    @Setup
+    public void setUp() {
+        page = ParsedKralandPage.parse(kramailPage(rows));
+        if (!legacyParseKramails(page.document()).equals(parser.parseKramails(page))) {
+            throw new IllegalStateException("Legacy and precompiled parsing disagree");
+        }
+    }
+
+    @Benchmark
+    public List<Kramail> selectorPerRow() {
+        return legacyParseKramails(page.document());
+    }
+
+    @Benchmark
+    public List<Kramail> precompiled() {
+        return parser.parseKramails(page);
+    }
+
+    static String kramailPage(int rows) {
+        StringBuilder html = new StringBuilder("<html><body><h1>Thanaël le Joyeux <small>Kramails</small></h1>")
+                .append("<table class=\"table\"><thead><tr><th></th><th>Sujet</th><th>De</th><th>Date</th></tr></thead><tbody>");
+        for (int i = 0; i < rows; i++) {
+            String id = Integer.toString(9_000_000 + i);
+            String subject = "<a href=\"kramail/thanael-le-joyeux-2-82020/" + id + "\">Sujet " + i + "</a>";
+            html.append("<tr><td><input type=\"checkbox\" name=\"k[]\" value=\"").append(id).append("\"></td><td>")
+                    .append(i % 2 == 0 ? "<strong>" + subject + "</strong>" : subject)
+                    .append("<span class=\"invisible\">Sujet ").append(i).append("</span></td>")
+                    .append("<td><a href=\"communaute/membres/megakra-2-8234\">Megakra</a></td><td>07 jan 20:04</td></tr>");
+        }
+        return html.append("</tbody></table></body></html>").toString();
+    }
+
+    private static List<Kramail> legacyParseKramails(Document doc) {
+        List<Kramail> kramails = new ArrayList<>();
+        Elements h1Elements = doc.select("h1");
+        String recipient = h1Elements.first().ownText().trim();
+        for (Element row : doc.select("table tbody tr")) {
+            Elements cells = row.select("td");
+            if (cells.size() < 4 || cells.get(1).select("strong a").isEmpty()) {
+                continue;
+            }
+            String id = cells.get(0).select("input[type=checkbox]").attr("value");
+            String title = cells.get(1).select("span.invisible").text();
+            String originator = cells.get(2).select("a").text();
+            if (!id.isEmpty() && !title.isEmpty()) {
+                kramails.add(new Kramail(new KramailId(id), title, originator, recipient));
+            }
+        }
+        return kramails;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(KralandKramailRowsBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,150 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import arn.roub.krabot.domain.model.Kramail;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KralandKramailStreamParserTest {
+
+    private static final String BASE_URI = "http://www.kraland.org/kramail/thanael-le-joyeux-2-82020";
+
+    private KralandHtmlParser parser;
+    private KralandKramailStreamParser streamParser;
+
+    @BeforeEach
+    void setUp() {
+        parser = new KralandHtmlParser();
+        streamParser = new KralandKramailStreamParser(parser);
+    }
+
+    @Test
+    void parse_onFixturePage_returnsSameKramailsAsDomParser() throws IOException {
+        String html = KralandHtmlParserTest.loadFixture("kraland_kramail_page.html");
+
+        KralandKramailStreamParser.StreamedKramails streamed = streamParser.parse(new StringReader(html), BASE_URI);
+
+        assertFalse(streamed.requiresAuthentication());
+        assertEquals(parser.parseKramails(html), streamed.kramails());
+        assertEquals(2, streamed.kramails().size());
+    }
+
+    @Test
+    void parse_stopsReadingAfterKramailTable() throws IOException {
+        String html = """
+                <html><body>
+                <h1>Thanaël le Joyeux <small>Kramails</small></h1>
+                <table><tbody>
+                    <tr>
+                        <td><input type="checkbox" value="42"></td>
+                        <td><strong><a href="#"><span class="invisible">Bonjour</span></a></strong></td>
+                        <td><a href="#">Megakra</a></td>
+                        <td>01/01</td>
+                    </tr>
+                </tbody></table>
+                """;
+        TrackingReader reader = new TrackingReader(html + "<div>" + "x".repeat(200_000) + "</div></body></html>");
+
+        List<Kramail> kramails = streamParser.parse(reader, BASE_URI).kramails();
+
+        assertEquals(1, kramails.size());
+        assertEquals("42", kramails.getFirst().id().value());
+        assertEquals("Thanaël le Joyeux", kramails.getFirst().recipient());
+        assertTrue(reader.charsRead < 100_000, "Reader consumed " + reader.charsRead + " chars");
+        assertTrue(reader.closed);
+    }
+
+    @Test
+    void parse_onLoginPage_requiresAuthentication() throws IOException {
+        String html = """
+                <html><body>
+                <form method="post" action="accueil">
+                    <input type="text" name="c[1]">
+                    <input type="password" name="c[2]">
+                </form>
+                </body></html>
+                """;
+
+        KralandKramailStreamParser.StreamedKramails streamed = streamParser.parse(new StringReader(html), BASE_URI);
+
+        assertTrue(streamed.requiresAuthentication());
+        assertTrue(streamed.kramails().isEmpty());
+    }
+
+    @Test
+    void scan_onFixturePage_matchesDomScan_andStopsAtFirstKnownKramail() throws IOException {
+        String html = KralandHtmlParserTest.loadFixture("kraland_kramail_page.html");
+        ParsedKralandPage page = ParsedKralandPage.parse(html);
+
+        assertEquals(parser.scanKramails(page, id -> false),
+                streamParser.scan(new StringReader(html), BASE_URI, id -> false).scan());
+        KralandHtmlParser.KramailScan known =
+                streamParser.scan(new StringReader(html), BASE_URI, id -> id.value().equals("9051230")).scan();
+        assertEquals(parser.scanKramails(page, id -> id.value().equals("9051230")), known);
+    }
+
+    @Test
+    void scan_closesTheStreamAtTheFirstReadRow() throws IOException {
+        StringBuilder html = new StringBuilder("<html><body><h1>Thanaël</h1><table><tbody>")
+                .append(row("2", true)).append(row("1", false));
+        for (int i = 0; i < 5000; i++) {
+            html.append(row(Integer.toString(-i), false));
+        }
+        TrackingReader reader = new TrackingReader(html.append("</tbody></table></body></html>").toString());
+
+        KralandHtmlParser.KramailScan scan = streamParser.scan(reader, BASE_URI, id -> false).scan();
+
+        assertEquals(List.of("2"), scan.kramails().stream().map(k -> k.id().value()).toList());
+        assertTrue(reader.charsRead < 100_000, "Reader consumed " + reader.charsRead + " chars");
+        assertTrue(reader.closed);
+    }
+
+    @Test
+    void scan_whenEveryRowUnread_readsNextPageFromPagination() throws IOException {
+        String html = "<h1>Thanaël</h1><table><tbody>" + row("1", true) + "</tbody></table>"
+                + "<ul class=\"pagination\"><li><a href=\"#\">1</a></li><li class=\"active\"><a href=\"#\">2</a></li>"
+                + "<li><a href=\"kramail/thanael-2-82020/3\">3</a></li></ul>";
+
+        KralandHtmlParser.KramailScan scan = streamParser.scan(new StringReader(html), BASE_URI, id -> false).scan();
+
+        assertEquals(parser.scanKramails(ParsedKralandPage.parse(html), id -> false), scan);
+        assertEquals("http://www.kraland.org/kramail/thanael-2-82020/3", scan.nextPageUrl());
+    }
+
+    private static String row(String id, boolean unread) {
+        String subject = "<a href=\"kramail/" + id + "\">Sujet " + id + "</a>";
+        return "<tr><td><input type=\"checkbox\" value=\"" + id + "\"></td><td>"
+                + (unread ? "<strong>" + subject + "</strong>" : subject)
+                + "<span class=\"invisible\">Sujet " + id + "</span></td><td><a href=\"#\">Megakra</a></td><td>01/01</td></tr>";
+    }
+
+    private static final class TrackingReader extends StringReader {
+
+        private int charsRead;
+        private boolean closed;
+
+        private TrackingReader(String s) {
+            super(s);
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            int read = super.read(cbuf, off, len);
+            if (read > 0) {
+                charsRead += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KralandPageBodyHandlerTest {
+
+    private static final byte[] PAGE = "<html><body><table><tr><td><strong>kramail é</strong></td></tr></table></body></html>"
+            .repeat(800).getBytes(StandardCharsets.UTF_8);
+
+    private final KralandPageBodyHandler handler = new KralandPageBodyHandler(1024 * 1024);
+
+    @Test
+    void apply_bodySpanningSeveralChunks_isReadBackUnchanged() throws IOException {
+        try (KralandPageBody body = receive(Map.of(), PAGE, 1000)) {
+            assertTrue(body.chunkCount() > 1);
+            assertEquals(PAGE.length, body.length());
+            try (InputStream in = body.inputStream()) {
+                assertArrayEquals(PAGE, in.readAllBytes());
+            }
+            assertEquals(new String(PAGE, StandardCharsets.UTF_8), body.text());
+            assertEquals(new String(PAGE, StandardCharsets.ISO_8859_1), body.asciiView().toString());
+        }
+    }
+
+    @Test
+    void close_returnsChunksToPool_forTheNextResponse() {
+        KralandPageBody body = receive(Map.of(), PAGE, 4096);
+        int chunks = body.chunkCount();
+        body.close();
+
+        assertEquals(chunks, handler.pooledChunks());
+        assertThrows(IllegalStateException.class, body::inputStream);
+
+        receive(Map.of(), PAGE, 4096).close();
+        assertEquals(chunks, handler.pooledChunks());
+    }
+
+    @Test
+    void scanAndFingerprint_acrossChunkBoundaries_matchContiguousBytes() {
+        try (KralandPageBody body = receive(Map.of(), PAGE, 333)) {
+            KralandPageBody contiguous = KralandPageBody.of(PAGE, StandardCharsets.UTF_8);
+
+            assertEquals(new KralandPagePrefilter().scan(PAGE), new KralandPagePrefilter().scan(body));
+            assertEquals(KralandPageCache.hash64(contiguous), KralandPageCache.hash64(body));
+        }
+    }
+
+    @Test
+    void apply_detectsCharsetFromHeaderThenMeta() {
+        byte[] latin1 = "<html><head><meta charset=\"ISO-8859-1\"></head><body>é</body></html>"
+                .getBytes(StandardCharsets.ISO_8859_1);
+
+        try (KralandPageBody body = receive(Map.of("Content-Type", List.of("text/html; charset=windows-1252")), latin1, 16)) {
+            assertEquals("windows-1252", body.charset().name());
+        }
+        try (KralandPageBody body = receive(Map.of(), latin1, 16)) {
+            assertEquals(StandardCharsets.ISO_8859_1, body.charset());
+            assertTrue(body.text().contains("<body>é</body>"));
+        }
+        try (KralandPageBody body = receive(Map.of(), PAGE, 4096)) {
+            assertEquals(StandardCharsets.UTF_8, body.charset());
+        }
+    }
+
+    @Test
+    void apply_oversizedBody_failsWithoutBuffering() {
+        KralandPageBodyHandler small = new KralandPageBodyHandler(10_000);
+
+        CompletionException announced = assertThrows(CompletionException.class,
+                () -> receive(small, Map.of("Content-Length", List.of(String.valueOf(PAGE.length))), PAGE, 4096));
+        assertInstanceOf(IOException.class, announced.getCause());
+
+        CompletionException streamed = assertThrows(CompletionException.class, () -> receive(small, Map.of(), PAGE, 4096));
+        assertInstanceOf(IOException.class, streamed.getCause());
+        assertTrue(small.pooledChunks() > 0);
+    }
+
+    @Test
+    void streaming_bodyPastTheLimit_failsWhileReading() throws IOException {
+        KralandPageBodyHandler small = new KralandPageBodyHandler(10_000);
+        HttpResponse.BodySubscriber<InputStream> subscriber = small.streaming().apply(responseInfo(Map.of()));
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        // Le flux d'entrée du JDK respecte la demande : tout le corps arrive en une seule fois
+        List<ByteBuffer> chunks = new ArrayList<>();
+        for (int offset = 0; offset < PAGE.length; offset += 4096) {
+            chunks.add(ByteBuffer.wrap(Arrays.copyOfRange(PAGE, offset, Math.min(PAGE.length, offset + 4096))));
+        }
+        subscriber.onNext(chunks);
+        subscriber.onComplete();
+
+        try (InputStream in = subscriber.getBody().toCompletableFuture().join()) {
+            IOException failure = assertThrows(IOException.class, in::readAllBytes);
+            assertTrue(failure.getMessage().contains("exceeds the limit"), failure.getMessage());
+        }
+    }
+
+    @Test
+    void asciiView_isReadByLoginDetector() {
+        byte[] login = LoginFormPageDetectorTest.LOGIN_PAGE.replace("Identifiant", "Héros").getBytes(StandardCharsets.UTF_8);
+
+        try (KralandPageBody body = receive(Map.of(), login, 7)) {
+            assertTrue(new LoginFormPageDetector().isLoginPage(body.asciiView()));
+        }
+    }
+
+    private KralandPageBody receive(Map<String, List<String>> headers, byte[] wire, int chunkSize) {
+        return receive(handler, headers, wire, chunkSize);
+    }
+
+    private static KralandPageBody receive(KralandPageBodyHandler handler, Map<String, List<String>> headers,
+                                           byte[] wire, int chunkSize) {
+        HttpResponse.BodySubscriber<KralandPageBody> subscriber = handler.apply(responseInfo(headers));
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        for (int offset = 0; offset < wire.length; offset += chunkSize) {
+            int end = Math.min(wire.length, offset + chunkSize);
+            subscriber.onNext(List.of(ByteBuffer.wrap(Arrays.copyOfRange(wire, offset, end))));
+        }
+        subscriber.onComplete();
+        return subscriber.getBody().toCompletableFuture().join();
+    }
+
+    private static HttpResponse.ResponseInfo responseInfo(Map<String, List<String>> headers) {
+        return new HttpResponse.ResponseInfo() {
+            @Override
+            public int statusCode() {
+                return 200;
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return HttpHeaders.of(headers, (name, value) -> true);
+            }
+
+            @Override
+            public HttpClient.Version version() {
+                return HttpClient.Version.HTTP_1_1;
+            }
+        };
+    }
+}
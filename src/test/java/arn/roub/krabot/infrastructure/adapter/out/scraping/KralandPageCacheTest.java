@@ -0,0 +1,101 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import arn.roub.krabot.domain.model.Kramail;
+import arn.roub.krabot.domain.model.KramailId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KralandPageCacheTest {
+
+    private static final String USERNAME = "thanael";
+    private static final String URL = "http://www.kraland.org/kramail/thanael-le-joyeux-2-82020";
+    private static final HttpHeaders NO_HEADERS = HttpHeaders.of(Map.of(), (name, value) -> true);
+    private static final List<Kramail> KRAMAILS = List.of(
+            new Kramail(new KramailId("9051234"), "Rendez-vous à la taverne", "Megakra", "Thanaël le Joyeux"));
+
+    private KralandPageCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new KralandPageCache();
+    }
+
+    @Test
+    void lookup_whenBodyUnchanged_returnsCachedKramails() {
+        byte[] body = "<html>page</html>".getBytes(StandardCharsets.UTF_8);
+        cache.store(USERNAME, URL, NO_HEADERS, KralandPageBody.of(body, StandardCharsets.UTF_8), KRAMAILS);
+
+        Optional<List<Kramail>> cached = cache.lookup(USERNAME, URL, 200, NO_HEADERS, KralandPageBody.of(body.clone(), StandardCharsets.UTF_8));
+
+        assertEquals(Optional.of(KRAMAILS), cached);
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    void lookup_whenBodyChanged_returnsEmpty() {
+        cache.store(USERNAME, URL, NO_HEADERS, KralandPageBody.of("<html>page</html>"), KRAMAILS);
+
+        Optional<List<Kramail>> cached =
+                cache.lookup(USERNAME, URL, 200, NO_HEADERS, KralandPageBody.of("<html>page 2</html>"));
+
+        assertTrue(cached.isEmpty());
+        assertEquals(0, cache.hits());
+    }
+
+    @Test
+    void lookup_onRealPage_ignoresNavbarTokensAndSidebarBadges_butNotTheTable() throws IOException {
+        String page = KralandHtmlParserTest.loadFixture("kraland_kramail_page.html");
+        cache.store(USERNAME, URL, NO_HEADERS, KralandPageBody.of(page), KRAMAILS);
+
+        String nextRequest = page
+                .replace("ItwznipnPF3H3L3V4I4XeAkd/f+iq0FCmuV4tMHn8iU=", "Qm9uam91ciBsZSBjcmFiZSBkZSBLcmFsYW5kIQ==")
+                .replace("lGVCCbh8A4qSWvUsZATHyR0uBFFvh2QwaxZTcz+8kaI=", "QXUgcmV2b2lyIGxlIGNyYWJlIGRlIEtyYWxhbmQ=")
+                .replace("<span class=\"badge\" id=\"badge\"></span>", "<span class=\"badge\" id=\"badge\">3</span>");
+        assertNotEquals(page, nextRequest);
+        assertEquals(Optional.of(KRAMAILS), cache.lookup(USERNAME, URL, 200, NO_HEADERS, KralandPageBody.of(nextRequest)));
+
+        String newKramail = page.replace("<tbody>", "<tbody><tr><td><input type=\"checkbox\" value=\"1\"></td></tr>");
+        assertTrue(cache.lookup(USERNAME, URL, 200, NO_HEADERS, KralandPageBody.of(newKramail)).isEmpty());
+    }
+
+    @Test
+    void lookup_whenNotModified_returnsCachedKramails() {
+        HttpHeaders headers = HttpHeaders.of(Map.of("ETag", List.of("\"abc\"")), (name, value) -> true);
+        cache.store(USERNAME, URL, headers, null, KRAMAILS);
+
+        assertEquals(Optional.of(KRAMAILS), cache.lookup(USERNAME, URL, 304, NO_HEADERS, KralandPageBody.of("")));
+    }
+
+    @Test
+    void conditionalRequest_sendsKnownValidators() {
+        HttpHeaders headers = HttpHeaders.of(Map.of(
+                "ETag", List.of("\"abc\""),
+                "Last-Modified", List.of("Sat, 17 Oct 2026 10:00:00 GMT")
+        ), (name, value) -> true);
+        cache.store(USERNAME, URL, headers, null, KRAMAILS);
+
+        HttpRequest request = cache.conditionalRequest(USERNAME, URL);
+
+        assertEquals(Optional.of("\"abc\""), request.headers().firstValue("If-None-Match"));
+        assertEquals(Optional.of("Sat, 17 Oct 2026 10:00:00 GMT"), request.headers().firstValue("If-Modified-Since"));
+    }
+
+    @Test
+    void store_withoutFingerprint_doesNotCache() {
+        cache.store(USERNAME, URL, NO_HEADERS, null, KRAMAILS);
+
+        assertTrue(cache.lookup(USERNAME, URL, 200, NO_HEADERS, null).isEmpty());
+        assertTrue(cache.conditionalRequest(USERNAME, URL).headers().map().isEmpty());
+    }
+}
@@ -0,0 +1,69 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test différentiel : avec ou sans pré-filtre, les extractions donnent le même résultat sur chaque fixture,
+ * ainsi que sur des variantes où les marqueurs ont été retirés.
+ */
+class KralandPagePrefilterTest {
+
+    private static final List<String> FIXTURES = List.of(
+            "kraland_kramail_page.html", "kraland_plateau_page.html", "kraland_plateau_sample.html");
+
+    private final KralandHtmlParser parser = new KralandHtmlParser();
+    private final KralandPagePrefilter prefilter = new KralandPagePrefilter();
+
+    private static List<String> pages() throws IOException {
+        List<String> pages = new ArrayList<>();
+        for (String fixture : FIXTURES) {
+            String html = KralandHtmlParserTest.loadFixture(fixture);
+            pages.add(html);
+            pages.add(html.replace("badge-danger", "badge-info"));
+            pages.add(html.replace("<strong>", "").replace("</strong>", ""));
+            pages.add(html.replace("btn-primary", "btn-default"));
+            pages.add(html.replace("Dormir", "Veiller"));
+        }
+        return pages;
+    }
+
+    @Test
+    void prefilter_matchesFullParseOnEveryFixture() throws IOException {
+        for (String html : pages()) {
+            ParsedKralandPage page = ParsedKralandPage.parse(html);
+            KralandPagePrefilter.Markers markers = prefilter.scan(html.getBytes(StandardCharsets.UTF_8));
+
+            assertEquals(parser.hasNotification(page), markers.notificationBadge() && parser.hasNotification(page));
+            assertEquals(parser.parseKramails(page), markers.unreadRow() ? parser.parseKramails(page) : List.of());
+            assertEquals(parser.isSleepButtonAvailable(page), markers.sleepButton() && parser.isSleepButtonAvailable(page));
+        }
+    }
+
+    @Test
+    void scan_whenMarkersAbsent_skipsEverything() throws IOException {
+        String html = KralandHtmlParserTest.loadFixture("kraland_kramail_page.html")
+                .replace("badge-danger", "badge-info")
+                .replace("<strong>", "")
+                .replace("</strong>", "");
+
+        assertEquals(new KralandPagePrefilter.Markers(false, false, false),
+                prefilter.scan(html.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void scan_ignoresAsciiCaseAndStrongBeforeTable() {
+        byte[] page = "<STRONG>x</STRONG><TABLE><tr><td><Strong>y</strong></td></tr></TABLE><a class=BTN-PRIMARY>DORMIR</a>"
+                .getBytes(StandardCharsets.UTF_8);
+        byte[] strongOutsideTable = "<strong>x</strong><table></table>".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(new KralandPagePrefilter.Markers(false, true, true), prefilter.scan(page));
+        assertFalse(prefilter.scan(strongOutsideTable).unreadRow());
+    }
+}
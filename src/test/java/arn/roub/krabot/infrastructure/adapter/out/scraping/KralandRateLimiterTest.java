@@ -0,0 +1,76 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KralandRateLimiterTest {
+
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void reserve_withinBurst_doesNotWait() {
+        KralandRateLimiter limiter = new KralandRateLimiter(5, 3, now::get);
+
+        assertEquals(0, limiter.reserve());
+        assertEquals(0, limiter.reserve());
+        assertEquals(0, limiter.reserve());
+        assertEquals(0, limiter.tokensAvailable());
+    }
+
+    @Test
+    void reserve_overBudget_queuesOneIntervalApart() {
+        KralandRateLimiter limiter = new KralandRateLimiter(5, 2, now::get);
+        limiter.reserve();
+        limiter.reserve();
+
+        assertEquals(INTERVAL, limiter.reserve());
+        assertEquals(2 * INTERVAL, limiter.reserve());
+    }
+
+    @Test
+    void tokensAvailable_refillsOverTime() {
+        KralandRateLimiter limiter = new KralandRateLimiter(5, 4, now::get);
+        for (int i = 0; i < 4; i++) {
+            limiter.reserve();
+        }
+
+        now.addAndGet(2 * INTERVAL);
+
+        assertEquals(2, limiter.tokensAvailable());
+        now.addAndGet(10 * INTERVAL);
+        assertEquals(4, limiter.tokensAvailable());
+    }
+
+    @Test
+    void reserve_concurrentCallers_getDistinctSlots() throws Exception {
+        KralandRateLimiter limiter = new KralandRateLimiter(5, 1, now::get);
+        List<Future<Long>> waits = new ArrayList<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 50; i++) {
+                waits.add(executor.submit(limiter::reserve));
+            }
+        }
+
+        List<Long> sorted = new ArrayList<>();
+        for (Future<Long> wait : waits) {
+            sorted.add(wait.get());
+        }
+        Collections.sort(sorted);
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(i * INTERVAL, sorted.get(i));
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import arn.roub.krabot.domain.model.Account;
+import arn.roub.krabot.domain.model.ScrapingResult;
+import arn.roub.krabot.infrastructure.config.KralandConfig;
+import arn.roub.krabot.shared.exception.ScrapingException;
+import io.quarkus.runtime.configuration.MemorySizeConverter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KralandScrapingAdapterStandInTest {
+
+    private static final Account ACCOUNT = new Account("thanael", "secret");
+
+    @Test
+    void scrape_againstStandIn_findsEveryUnreadKramailWithOneLogin() throws Exception {
+        try (KralandStandInServer server = new KralandStandInServer(
+                new KralandStandInServer.Settings(42, 5, 20, 0.3, true, Duration.ZERO, 0))) {
+            KralandScrapingAdapter adapter = adapter(server);
+
+            ScrapingResult first = adapter.scrape(ACCOUNT);
+            ScrapingResult second = adapter.scrape(ACCOUNT);
+
+            assertEquals(server.totalUnread(), first.kramails().size());
+            assertTrue(first.hasNotification());
+            assertTrue(first.failedAccounts().isEmpty());
+            assertEquals(first.kramails(), second.kramails());
+            assertEquals(1, server.logins());
+        }
+    }
+
+    @Test
+    void scrape_incremental_onPaginatedMailbox_keepsUnreadRowsOfEveryPageRead() throws Exception {
+        try (KralandStandInServer server = new KralandStandInServer(
+                new KralandStandInServer.Settings(3, 1, 30, 0, false, Duration.ZERO, 0, 5))) {
+            KralandScrapingAdapter adapter = adapter(server, Map.of("scraping.incremental", true));
+
+            server.receive(0, 3);
+            assertEquals(server.unreadIds(0), ids(adapter.scrape(ACCOUNT)));
+
+            // Le premier kramail connu arrête la lecture, la suite est reprise du tick précédent
+            server.receive(0, 4);
+            assertEquals(server.unreadIds(0), ids(adapter.scrape(ACCOUNT)));
+
+            // Page 1 entièrement nouvelle, page 2 lue aussi ; des kramails lus entre-temps faussent le total :
+            // la page 2 est relue en entier sans perdre les non lus de la page 1
+            server.receive(0, 6);
+            server.read(0, 5);
+            assertEquals(server.unreadIds(0), ids(adapter.scrape(ACCOUNT)));
+            assertEquals(1, server.logins());
+        }
+    }
+
+    @Test
+    void scrape_fragmentPolling_pollsOnlyTheCountersFragment_andFallsBackWhenItStopsWorking() throws Exception {
+        try (KralandStandInServer server = new KralandStandInServer(
+                new KralandStandInServer.Settings(11, 3, 100, 0, true, Duration.ZERO, 0))) {
+            server.serveCountersFragment();
+            ScrapingResult expected = adapter(server).scrape(ACCOUNT);
+            long fullTick = tickBytes(server, adapter(server));
+            KralandScrapingAdapter adapter = adapter(server, Map.of("scraping.fragmentPolling", true));
+            assertEquals(expected, adapter.scrape(ACCOUNT));
+
+            long fragmentTick = tickBytes(server, adapter);
+            assertTrue(fragmentTick * 4 < fullTick, fragmentTick + " bytes per tick vs " + fullTick);
+
+            // Token expiré (fragment vide) puis erreur 4xx : la page complète prend le relais et le fragment y est
+            // retrouvé pour les ticks suivants
+            server.expireCountersToken();
+            assertEquals(expected, adapter.scrape(ACCOUNT));
+            assertEquals(fragmentTick, tickBytes(server, adapter));
+
+            server.failCountersFragment(403);
+            assertEquals(expected, adapter.scrape(ACCOUNT));
+            server.failCountersFragment(200);
+            assertEquals(fragmentTick, tickBytes(server, adapter));
+            assertEquals(3, server.logins());
+        }
+    }
+
+    @Test
+    void scrape_fragmentPolling_looksForTheFragmentOncePerSession() throws Exception {
+        try (KralandStandInServer server = new KralandStandInServer(
+                new KralandStandInServer.Settings(13, 2, 50, 0, false, Duration.ZERO, 0))) {
+            KralandScrapingAdapter adapter = adapter(server, Map.of("scraping.fragmentPolling", true));
+            adapter.scrape(ACCOUNT);
+            long fullTick = tickBytes(server, adapter);
+
+            // Le fragment apparu en cours de session n'est repéré qu'après la connexion suivante
+            server.serveCountersFragment();
+            assertTrue(tickBytes(server, adapter) >= fullTick);
+            assertTrue(tickBytes(server, adapter) >= fullTick);
+            server.expireSessions();
+            adapter.scrape(ACCOUNT);
+            assertTrue(tickBytes(server, adapter) * 4 < fullTick);
+            assertEquals(2, server.logins());
+        }
+    }
+
+    @Test
+    void scrape_twoLoginsSharingAMailbox_keepTheirOwnUnreadKramails() throws Exception {
+        Account other = new Account("megakra", "secret");
+        for (Map<String, Object> mode : List.<Map<String, Object>>of(Map.of(), Map.of("scraping.streaming", true),
+                Map.of("scraping.incremental", true))) {
+            try (KralandStandInServer server = new KralandStandInServer(
+                    new KralandStandInServer.Settings(17, 2, 5, 0, false, Duration.ZERO, 0))) {
+                server.addSharedMailbox(10);
+                server.shareUnread(other.username(), 2);
+                KralandScrapingAdapter adapter = adapter(server, mode);
+
+                for (int tick = 0; tick < 2; tick++) {
+                    assertEquals(List.of(), sharedIds(adapter.scrape(ACCOUNT)), "mode " + mode);
+                    assertEquals(server.sharedUnreadIds(other.username()), sharedIds(adapter.scrape(other)),
+                            "mode " + mode);
+                }
+            }
+        }
+    }
+
+    @Test
+    void scrape_streamingPaths_failTheCharacterWhosePageExceedsMaxBodySize() throws Exception {
+        for (String mode : List.of("scraping.streaming", "scraping.incremental")) {
+            try (KralandStandInServer server = new KralandStandInServer(
+                    new KralandStandInServer.Settings(19, 3, 5, 0, false, Duration.ZERO, 0))) {
+                server.receive(1, 3000);
+                KralandScrapingAdapter adapter = adapter(server, Map.of(mode, true, "scraping.maxBodySize", new MemorySizeConverter().convert("64K")));
+
+                ScrapingResult result = adapter.scrape(ACCOUNT);
+
+                assertEquals(List.of("Personnage 1"), result.failedAccounts(), mode);
+            }
+        }
+    }
+
+    @Test
+    void scrape_skipsCharactersWhoseCounterStaysAtZero_butFetchesOnceWhenItDropsToZero() throws Exception {
+        try (KralandStandInServer server = new KralandStandInServer(
+                new KralandStandInServer.Settings(23, 3, 5, 0, false, Duration.ZERO, 0))) {
+            server.receive(1, 2);
+            KralandScrapingAdapter adapter = adapter(server);
+
+            adapter.scrape(ACCOUNT);
+            assertEquals(List.of(1, 1, 1), pageRequests(server));
+
+            // Compteur à 0 deux ticks de suite : page non demandée
+            adapter.scrape(ACCOUNT);
+            assertEquals(List.of(1, 2, 1), pageRequests(server));
+
+            // Compteur passé de 2 à 0 : la page est encore lue une fois, puis plus
+            server.read(1, 2);
+            assertTrue(adapter.scrape(ACCOUNT).kramails().isEmpty());
+            assertEquals(List.of(1, 3, 1), pageRequests(server));
+            adapter.scrape(ACCOUNT);
+            assertEquals(List.of(1, 3, 1), pageRequests(server));
+
+            // Nouveau kramail : le compteur repasse au-dessus de 0, la page est de nouveau lue
+            server.receive(1, 1);
+            assertEquals(1, adapter.scrape(ACCOUNT).kramails().size());
+            assertEquals(List.of(1, 4, 1), pageRequests(server));
+        }
+    }
+
+    @Test
+    void scrape_oneCharacterFailing_returnsTheOthersAndReportsIt() throws Exception {
+        try (KralandStandInServer server = new KralandStandInServer(
+                new KralandStandInServer.Settings(29, 3, 5, 0, false, Duration.ZERO, 0))) {
+            server.receive(0, 1);
+            server.receive(1, 2);
+            server.receive(2, 3);
+            server.failPages(1, 500);
+
+            ScrapingResult result = adapter(server).scrape(ACCOUNT);
+
+            assertEquals(List.of("Personnage 1"), result.failedAccounts());
+            assertEquals(4, result.kramails().size());
+            assertTrue(result.kramails().stream().noneMatch(kramail -> kramail.recipient().equals("Personnage 1")));
+        }
+    }
+
+    @Test
+    void scrape_tickDeadline_cancelsTheSlowCharacterAndReturnsTheOthers() throws Exception {
+        try (KralandStandInServer server = new KralandStandInServer(
+                new KralandStandInServer.Settings(31, 3, 5, 0, false, Duration.ZERO, 0))) {
+            server.receive(0, 1);
+            server.receive(1, 2);
+            server.receive(2, 3);
+            server.delayPages(2, Duration.ofSeconds(10));
+            KralandScrapingAdapter adapter = adapter(server, Map.of("scraping.tickDeadline", Duration.ofSeconds(1)));
+
+            long start = System.nanoTime();
+            ScrapingResult result = adapter.scrape(ACCOUNT);
+
+            assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(5)) < 0);
+            assertEquals(List.of("Personnage 2"), result.failedAccounts());
+            assertEquals(3, result.kramails().size());
+            assertTrue(result.kramails().stream().noneMatch(kramail -> kramail.recipient().equals("Personnage 2")));
+        }
+    }
+
+    @Test
+    void scrape_replayingARecordedSession_returnsTheSameResultsWithoutNetwork(@TempDir Path directory) throws Exception {
+        Path archive = directory.resolve("kraland-traffic.jsonl");
+        String baseUrl;
+        List<ScrapingResult> recorded = new ArrayList<>();
+        try (KralandStandInServer server = new KralandStandInServer(
+                new KralandStandInServer.Settings(37, 4, 12, 0.3, true, Duration.ZERO, 0))) {
+            baseUrl = server.baseUrl();
+            KralandScrapingAdapter recorder = adapter(baseUrl, Map.of(
+                    "traffic.mode", KralandConfig.Traffic.Mode.RECORD, "traffic.archive", archive));
+            recorded.add(recorder.scrape(ACCOUNT));
+            server.receive(2, 3);
+            recorded.add(recorder.scrape(ACCOUNT));
+        }
+
+        KralandScrapingAdapter replayer = adapter(baseUrl, Map.of(
+                "traffic.mode", KralandConfig.Traffic.Mode.REPLAY, "traffic.archive", archive));
+        List<ScrapingResult> replayed = List.of(replayer.scrape(ACCOUNT), replayer.scrape(ACCOUNT));
+
+        assertEquals(recorded, replayed);
+        assertFalse(replayed.getFirst().kramails().isEmpty());
+        assertTrue(replayed.getLast().failedAccounts().isEmpty());
+    }
+
+    @Test
+    void sleepIfAvailable_againstStandIn_submitsTheOrder() throws Exception {
+        try (KralandStandInServer server = new KralandStandInServer(
+                new KralandStandInServer.Settings(7, 1, 5, 0, false, Duration.ZERO, 0))) {
+            assertTrue(adapter(server).sleepIfAvailable(ACCOUNT));
+            assertEquals(1, server.sleepOrders());
+        }
+    }
+
+    @Test
+    void scrape_whenStandInFailsEveryRequest_throwsScrapingException() throws Exception {
+        try (KralandStandInServer server = new KralandStandInServer(
+                new KralandStandInServer.Settings(7, 2, 5, 0.5, false, Duration.ZERO, 1))) {
+            assertThrows(ScrapingException.class, () -> adapter(server).scrape(ACCOUNT));
+        }
+    }
+
+    private static KralandScrapingAdapter adapter(KralandStandInServer server) {
+        return adapter(server, Map.of());
+    }
+
+    private static KralandScrapingAdapter adapter(KralandStandInServer server, Map<String, Object> overrides) {
+        return adapter(server.baseUrl(), overrides);
+    }
+
+    private static KralandScrapingAdapter adapter(String baseUrl, Map<String, Object> overrides) {
+        Map<String, Object> settings = new HashMap<>(overrides);
+        settings.put("baseUrl", baseUrl);
+        settings.put("rateLimit.permitsPerSecond", 1000.0);
+        settings.put("rateLimit.burst", 1000);
+        KralandConfig config = TestKralandConfig.create(settings);
+        return new KralandScrapingAdapter(config, new KralandPageCache(), new KralandRateLimiter(config),
+                new KralandContentDecoder(), new KralandCharacteristicsHarvester(null, null, Runnable::run));
+    }
+
+    private static long tickBytes(KralandStandInServer server, KralandScrapingAdapter adapter) {
+        long before = server.bytesSent();
+        adapter.scrape(ACCOUNT);
+        return server.bytesSent() - before;
+    }
+
+    private static List<Integer> pageRequests(KralandStandInServer server) {
+        return List.of(server.pageRequests(0), server.pageRequests(1), server.pageRequests(2));
+    }
+
+    private static List<String> sharedIds(ScrapingResult result) {
+        return result.kramails().stream()
+                .filter(kramail -> kramail.recipient().equals("Communauté"))
+                .map(kramail -> kramail.id().value())
+                .toList();
+    }
+
+    private static List<String> ids(ScrapingResult result) {
+        return result.kramails().stream().map(kramail -> kramail.id().value()).toList();
+    }
+}
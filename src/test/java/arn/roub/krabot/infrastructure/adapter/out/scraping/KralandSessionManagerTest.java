@@ -0,0 +1,169 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.HttpCookie;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KralandSessionManagerTest {
+
+    private static final URI KRALAND_URI = URI.create("http://www.kraland.org/");
+    private static final Duration IDLE_TIMEOUT = Duration.ofMinutes(20);
+    private static final Duration REFRESH_AHEAD = Duration.ofMinutes(2);
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2026-10-18T10:00:00Z"));
+
+    @Test
+    void ensureSession_withoutSession_logsInBeforeRequest() throws Exception {
+        KralandSessionManager manager = new KralandSessionManager(null, null, null, IDLE_TIMEOUT, REFRESH_AHEAD, null, clock);
+        AtomicInteger logins = new AtomicInteger();
+
+        manager.ensureSession(loginAddingCookie(manager, logins));
+        manager.ensureSession(loginAddingCookie(manager, logins));
+
+        assertEquals(1, logins.get());
+    }
+
+    @Test
+    void ensureSession_afterIdleTimeout_logsInAgain() throws Exception {
+        KralandSessionManager manager = new KralandSessionManager(null, null, null, IDLE_TIMEOUT, REFRESH_AHEAD, null, clock);
+        AtomicInteger logins = new AtomicInteger();
+        manager.ensureSession(loginAddingCookie(manager, logins));
+
+        clock.advance(IDLE_TIMEOUT.plusSeconds(1));
+        manager.ensureSession(loginAddingCookie(manager, logins));
+
+        assertEquals(2, logins.get());
+    }
+
+    @Test
+    void ensureSession_nearExpiry_triesOneBackgroundRefreshPerWindow_andBacksOffAfterFailure() throws Exception {
+        KralandSessionManager manager = new KralandSessionManager(null, null, null, IDLE_TIMEOUT, REFRESH_AHEAD, null, clock);
+        manager.ensureSession(loginAddingCookie(manager, new AtomicInteger()));
+        AtomicInteger refreshes = new AtomicInteger();
+        CountDownLatch firstRefresh = new CountDownLatch(1);
+        KralandSessionManager.Login failingLogin = () -> {
+            refreshes.incrementAndGet();
+            firstRefresh.countDown();
+            throw new IllegalStateException("Kraland unavailable");
+        };
+
+        clock.advance(IDLE_TIMEOUT.minusSeconds(90));
+        manager.ensureSession(failingLogin);
+        assertTrue(firstRefresh.await(5, TimeUnit.SECONDS));
+        TimeUnit.MILLISECONDS.sleep(100);
+        for (int i = 0; i < 5; i++) {
+            manager.ensureSession(failingLogin);
+        }
+        manager.markSuccess();
+        clock.advance(IDLE_TIMEOUT.minusSeconds(90));
+        manager.ensureSession(failingLogin);
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        assertEquals(2, refreshes.get());
+    }
+
+    @Test
+    void reauthenticate_concurrentCallers_shareSingleLogin() throws Exception {
+        KralandSessionManager manager = new KralandSessionManager(null, null, null, IDLE_TIMEOUT, REFRESH_AHEAD, null, clock);
+        AtomicInteger logins = new AtomicInteger();
+        CountDownLatch loginStarted = new CountDownLatch(1);
+        CountDownLatch releaseLogin = new CountDownLatch(1);
+        KralandSessionManager.Login slowLogin = () -> {
+            logins.incrementAndGet();
+            loginStarted.countDown();
+            assertTrue(releaseLogin.await(5, TimeUnit.SECONDS));
+        };
+
+        long observed = manager.generation();
+        List<Future<?>> callers = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 8; i++) {
+                callers.add(executor.submit(() -> {
+                    manager.reauthenticate(observed, slowLogin);
+                    return null;
+                }));
+            }
+            assertTrue(loginStarted.await(5, TimeUnit.SECONDS));
+            releaseLogin.countDown();
+            for (Future<?> caller : callers) {
+                caller.get(5, TimeUnit.SECONDS);
+            }
+        }
+
+        assertEquals(1, logins.get());
+        manager.reauthenticate(observed, slowLogin);
+        assertEquals(1, logins.get());
+    }
+
+    @Test
+    void persist_restoresSessionAfterRestart(@TempDir Path dir) throws Exception {
+        Path cookieFile = dir.resolve("kraland-cookies.txt");
+        KralandSessionManager manager = new KralandSessionManager(null, null, null, IDLE_TIMEOUT, REFRESH_AHEAD, cookieFile, clock);
+        AtomicInteger logins = new AtomicInteger();
+        manager.ensureSession(loginAddingCookie(manager, logins));
+
+        KralandSessionManager restarted = new KralandSessionManager(null, null, null, IDLE_TIMEOUT, REFRESH_AHEAD, cookieFile, clock);
+        restarted.ensureSession(loginAddingCookie(restarted, logins));
+
+        assertEquals(1, logins.get());
+        List<HttpCookie> cookies = restarted.cookieManager().getCookieStore().get(KRALAND_URI);
+        assertEquals("PHPSESSID", cookies.getFirst().getName());
+        assertEquals("abc123", cookies.getFirst().getValue());
+    }
+
+    private static KralandSessionManager.Login loginAddingCookie(KralandSessionManager manager, AtomicInteger logins) {
+        return () -> {
+            logins.incrementAndGet();
+            HttpCookie cookie = new HttpCookie("PHPSESSID", "abc123");
+            cookie.setPath("/");
+            cookie.setVersion(0);
+            manager.cookieManager().getCookieStore().add(KRALAND_URI, cookie);
+        };
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,496 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serveur HTTP local qui se fait passer pour kraland.org, pour les tests de bout en bout et de charge de
+ * {@link KralandScrapingAdapter} (à brancher par {@code kraland.base-url}).
+ * <p>
+ * Les pages sont générées à partir d'un modèle tiré d'une graine : personnages, kramails (non lus en tête du
+ * tableau), badge de notification. Le serveur gère le login par {@code /accueil} et un cookie de session, renvoie
+ * la page de connexion sans ce cookie, et sert {@code /kramail}, les pages de personnages, paginées si demandé
+ * ({@code /kramail/<personnage>/<page>}), {@code /jouer/plateau} avec le bouton "Dormir" et les fragments
+ * {@code /ajx/} du formulaire d'ordre. Sur demande, la cloche et la sidebar de la page kramail sont placées dans
+ * un fragment {@code ajax-header} rafraîchi par updateAjax, servi seul par {@code /ajx/3-0-0-0-<horodatage>/<token>}.
+ * Chaque réponse peut être retardée et une part des requêtes peut échouer en 503. Entre deux ticks, un test peut
+ * faire arriver de nouveaux kramails ou en marquer comme lus, expirer les sessions, le token du fragment des
+ * compteurs ou faire échouer ce fragment.
+ * <p>
+ * Tous les logins voient les mêmes personnages, et sur demande une boîte partagée {@code /kramail/communaute}
+ * dont les kramails sont communs mais l'état lu/non lu propre à chaque login. Cette boîte annonce un
+ * {@code Last-Modified} qui ne dépend que de son contenu, commun à tous les logins, et répond 304 à un
+ * {@code If-Modified-Since} identique.
+ */
+final class KralandStandInServer implements AutoCloseable {
+
+    private static final String SESSION_COOKIE = "PHPSESSID";
+    private static final String COUNTERS_PARAM = "3-0-0-0";
+    private static final String SHARED_MAILBOX_SLUG = "communaute";
+
+    private static final String PLATEAU_PAGE = """
+            <!DOCTYPE html>
+            <html lang="fr"><head><meta charset="utf-8"><title>Kraland Interactif - Plateau</title></head><body>
+            <a class="btn btn-primary alert11 mini" href="#">Dormir</a>
+            <script>
+                $(document).on("click", ".alert11", function(e) {
+                    bootbox.confirm( "<div id=\\"ajax-order\\"></div>", function(confirmed) {
+                        if (confirmed) { document.post_msg.submit(); }
+                    });
+                    updateAjax( 'ajax-order', '2-1-100101-1', '7956839657' );
+                    return false;
+                });
+            </script>
+            </body></html>
+            """;
+
+    private static final String ORDER_FRAGMENT = """
+            <form name="post_msg" method="post" action="jouer/plateau">
+            <p>Vous pouvez dormir (une fois par jour) et récupérer 12h de CT, 2 PV et 2 PM.</p>
+            <input type="hidden" name="t" value="VlfLJ6JhU/LyYrPA/MkMcdx/KIrjB722qKhG/1LDD3s=">
+            <input type="hidden" name="a" value="1">
+            <input type="hidden" name="n[101]" value="100101">
+            </form>
+            """;
+
+    /**
+     * @param seed               graine du modèle et de l'injection d'erreurs
+     * @param accounts           nombre de personnages dans la sidebar
+     * @param kramailsPerAccount nombre de lignes du tableau de chaque personnage
+     * @param unreadRate         probabilité qu'un kramail soit non lu
+     * @param notification       le badge de notification est affiché
+     * @param latency            délai avant chaque réponse
+     * @param errorRate          probabilité qu'une requête échoue en 503
+     * @param pageSize           nombre de lignes par page du tableau des kramails, 0 pour une seule page
+     */
+    record Settings(long seed, int accounts, int kramailsPerAccount, double unreadRate, boolean notification,
+                    Duration latency, double errorRate, int pageSize) {
+
+        Settings(long seed, int accounts, int kramailsPerAccount, double unreadRate, boolean notification,
+                 Duration latency, double errorRate) {
+            this(seed, accounts, kramailsPerAccount, unreadRate, notification, latency, errorRate, 0);
+        }
+    }
+
+    record Character(String name, String slug, List<Integer> kramailIds, int unread) {}
+
+    private final Settings settings;
+    private final List<Character> characters = new CopyOnWriteArrayList<>();
+    private final AtomicInteger nextKramailId = new AtomicInteger(9_500_000);
+    private final Random errors;
+    /** Login de chaque cookie de session */
+    private final Map<String, String> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Integer> sharedUnread = new ConcurrentHashMap<>();
+    private volatile Character sharedMailbox;
+    private final AtomicInteger logins = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final Map<String, AtomicInteger> pageRequests = new ConcurrentHashMap<>();
+    private final Map<String, Integer> pageStatuses = new ConcurrentHashMap<>();
+    private final Map<String, Duration> pageDelays = new ConcurrentHashMap<>();
+    private final AtomicInteger sleepOrders = new AtomicInteger();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong countersToken = new AtomicLong(4_956_839_650L);
+    private volatile boolean countersFragment;
+    private volatile int countersFragmentStatus = 200;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpServer server;
+
+    KralandStandInServer(Settings settings) throws IOException {
+        this.settings = settings;
+        Random model = new Random(settings.seed());
+        int kramailId = 9_000_000;
+        for (int i = 0; i < settings.accounts(); i++) {
+            List<Integer> ids = new ArrayList<>();
+            int unread = 0;
+            for (int k = 0; k < settings.kramailsPerAccount(); k++) {
+                ids.add(kramailId--);
+                if (model.nextDouble() < settings.unreadRate()) {
+                    unread++;
+                }
+            }
+            characters.add(new Character("Personnage " + i, "personnage-" + i + "-2-" + (82000 + i), ids, unread));
+        }
+        this.errors = new Random(settings.seed() + 1);
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return l'URL de base à donner à {@code kraland.base-url}
+     */
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    List<Character> characters() {
+        return characters;
+    }
+
+    int totalUnread() {
+        return characters.stream().mapToInt(Character::unread).sum();
+    }
+
+    /**
+     * @return les identifiants des kramails non lus du personnage, dans l'ordre du tableau
+     */
+    List<String> unreadIds(int character) {
+        Character current = characters.get(character);
+        return current.kramailIds().subList(0, current.unread()).stream().map(String::valueOf).toList();
+    }
+
+    /**
+     * Fait arriver {@code count} nouveaux kramails non lus en tête du tableau du personnage.
+     */
+    void receive(int character, int count) {
+        Character current = characters.get(character);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.addFirst(nextKramailId.incrementAndGet());
+        }
+        ids.addAll(current.kramailIds());
+        characters.set(character, new Character(current.name(), current.slug(), ids, current.unread() + count));
+    }
+
+    /**
+     * Marque comme lus les {@code count} plus anciens kramails non lus du personnage.
+     */
+    void read(int character, int count) {
+        Character current = characters.get(character);
+        characters.set(character, new Character(current.name(), current.slug(), current.kramailIds(),
+                Math.max(0, current.unread() - count)));
+    }
+
+    /**
+     * Place la cloche et la sidebar de la page kramail dans le fragment AJAX des compteurs et sert ce fragment.
+     */
+    void serveCountersFragment() {
+        countersFragment = true;
+    }
+
+    /**
+     * Renouvelle le token du fragment des compteurs : l'ancien token ne renvoie plus qu'un fragment vide.
+     */
+    void expireCountersToken() {
+        countersToken.incrementAndGet();
+    }
+
+    /**
+     * Fait répondre le fragment des compteurs avec ce statut, 200 pour le rétablir.
+     */
+    void failCountersFragment(int status) {
+        countersFragmentStatus = status;
+    }
+
+    /**
+     * Fait répondre les pages du personnage avec ce statut, 200 pour le rétablir.
+     */
+    void failPages(int character, int status) {
+        pageStatuses.put(characters.get(character).slug(), status);
+    }
+
+    /**
+     * Retarde de {@code delay} les réponses aux pages du personnage, en plus de la latence globale.
+     */
+    void delayPages(int character, Duration delay) {
+        pageDelays.put(characters.get(character).slug(), delay);
+    }
+
+    /**
+     * Ajoute à la sidebar de tous les logins la boîte partagée {@code kramail/communaute}, avec {@code kramails}
+     * kramails, tous lus tant que {@link #shareUnread(String, int)} n'en décide pas autrement pour un login.
+     */
+    void addSharedMailbox(int kramails) {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < kramails; i++) {
+            ids.add(8_000_000 - i);
+        }
+        sharedMailbox = new Character("Communauté", SHARED_MAILBOX_SLUG, ids, 0);
+    }
+
+    /**
+     * Fixe le nombre de kramails non lus de la boîte partagée pour ce login, en tête du tableau.
+     */
+    void shareUnread(String login, int unread) {
+        sharedUnread.put(login, unread);
+    }
+
+    /**
+     * @return les identifiants des kramails de la boîte partagée non lus pour ce login
+     */
+    List<String> sharedUnreadIds(String login) {
+        return sharedMailbox.kramailIds().subList(0, sharedUnread.getOrDefault(login, 0)).stream()
+                .map(String::valueOf).toList();
+    }
+
+    /**
+     * Oublie toutes les sessions : la requête suivante reçoit la page de connexion.
+     */
+    void expireSessions() {
+        sessions.clear();
+    }
+
+    int logins() {
+        return logins.get();
+    }
+
+    int requests() {
+        return requests.get();
+    }
+
+    /**
+     * @return le nombre de requêtes reçues pour les pages du personnage ({@code /kramail/<personnage>...})
+     */
+    int pageRequests(int character) {
+        AtomicInteger count = pageRequests.get(characters.get(character).slug());
+        return count != null ? count.get() : 0;
+    }
+
+    int sleepOrders() {
+        return sleepOrders.get();
+    }
+
+    long bytesSent() {
+        return bytesSent.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            if (settings.latency().isPositive()) {
+                Thread.sleep(settings.latency());
+            }
+            if (injectError()) {
+                send(exchange, 503, "<html><body>Service indisponible</body></html>");
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+
+            if (path.equals("/accueil") && method.equals("POST")) {
+                login(exchange);
+            } else if (path.equals("/")) {
+                send(exchange, 200, "<html><body>Kraland Interactif</body></html>");
+            } else if (loginOf(exchange) == null) {
+                send(exchange, 200, LoginFormPageDetectorTest.LOGIN_PAGE);
+            } else if (path.equals("/kramail")) {
+                send(exchange, 200, kramailPage(characters.getFirst(), 1, loginOf(exchange)));
+            } else if (path.startsWith("/kramail/")) {
+                String[] segments = path.substring("/kramail/".length()).split("/");
+                Character character = characterOf(segments[0]);
+                int page = segments.length > 1 ? Integer.parseInt(segments[1]) : 1;
+                pageRequests.computeIfAbsent(segments[0], slug -> new AtomicInteger()).incrementAndGet();
+                Duration delay = pageDelays.getOrDefault(segments[0], Duration.ZERO);
+                if (delay.isPositive()) {
+                    Thread.sleep(delay);
+                }
+                int status = pageStatuses.getOrDefault(segments[0], 200);
+                if (status != 200) {
+                    send(exchange, status, "<html><body>Erreur</body></html>");
+                } else if (character != null && character == sharedMailbox && notModified(exchange, character)) {
+                    send(exchange, 304, "");
+                } else {
+                    send(exchange, character != null ? 200 : 404,
+                            character != null ? kramailPage(character, page, loginOf(exchange)) : "");
+                }
+            } else if (path.equals("/jouer/plateau") && method.equals("POST")) {
+                exchange.getRequestBody().readAllBytes();
+                sleepOrders.incrementAndGet();
+                send(exchange, 200, "<html><body>Ordre pris en compte</body></html>");
+            } else if (path.equals("/jouer/plateau")) {
+                send(exchange, 200, PLATEAU_PAGE);
+            } else if (path.startsWith("/ajx/" + COUNTERS_PARAM + "-")) {
+                countersFragment(exchange, path, loginOf(exchange));
+            } else if (path.startsWith("/ajx/")) {
+                send(exchange, 200, ORDER_FRAGMENT);
+            } else {
+                send(exchange, 404, "");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized boolean injectError() {
+        return settings.errorRate() > 0 && errors.nextDouble() < settings.errorRate();
+    }
+
+    private void login(HttpExchange exchange) throws IOException {
+        String form = URLDecoder.decode(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.ISO_8859_1),
+                StandardCharsets.ISO_8859_1);
+        if (!form.contains("c[1]=") || form.contains("c[1]=&")) {
+            send(exchange, 200, LoginFormPageDetectorTest.LOGIN_PAGE);
+            return;
+        }
+        String login = form.substring(form.indexOf("c[1]=") + "c[1]=".length()).split("&", 2)[0];
+        String session = "standin" + logins.incrementAndGet();
+        sessions.put(session, login);
+        exchange.getResponseHeaders().add("Set-Cookie", SESSION_COOKIE + "=" + session + "; Path=/");
+        exchange.getResponseHeaders().add("Location", "/");
+        exchange.sendResponseHeaders(302, -1);
+    }
+
+    /**
+     * @return le login de la session de la requête, ou null sans session valide
+     */
+    private String loginOf(HttpExchange exchange) {
+        for (String header : exchange.getRequestHeaders().getOrDefault("Cookie", List.of())) {
+            for (String cookie : header.split(";")) {
+                String[] pair = cookie.trim().split("=", 2);
+                String login = pair.length == 2 && pair[0].equals(SESSION_COOKIE) ? sessions.get(pair[1]) : null;
+                if (login != null) {
+                    return login;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * La date de la boîte partagée ne dépend que de son kramail le plus récent, pas de ce que chaque login a lu.
+     */
+    private boolean notModified(HttpExchange exchange, Character mailbox) {
+        String lastModified = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                Instant.ofEpochSecond(1_700_000_000L + mailbox.kramailIds().getFirst()).atOffset(ZoneOffset.UTC));
+        exchange.getResponseHeaders().add("Last-Modified", lastModified);
+        return lastModified.equals(exchange.getRequestHeaders().getFirst("If-Modified-Since"));
+    }
+
+    private int unread(Character character, String login) {
+        return character == sharedMailbox ? sharedUnread.getOrDefault(login, 0) : character.unread();
+    }
+
+    private void countersFragment(HttpExchange exchange, String path, String login) throws IOException {
+        if (!countersFragment) {
+            send(exchange, 404, "");
+        } else if (countersFragmentStatus != 200) {
+            send(exchange, countersFragmentStatus, "<html><body>Erreur</body></html>");
+        } else if (!path.endsWith("/" + countersToken.get())) {
+            send(exchange, 200, "");
+        } else {
+            StringBuilder html = new StringBuilder(2048);
+            appendCounters(html, characters.getFirst(), login);
+            send(exchange, 200, html.toString());
+        }
+    }
+
+    private Character characterOf(String slug) {
+        Character shared = sharedMailbox;
+        if (shared != null && shared.slug().equals(slug)) {
+            return shared;
+        }
+        for (Character character : characters) {
+            if (character.slug().equals(slug)) {
+                return character;
+            }
+        }
+        return null;
+    }
+
+    private String kramailPage(Character active, int page, String login) {
+        StringBuilder html = new StringBuilder(4096 + active.kramailIds().size() * 400);
+        html.append("<!DOCTYPE html>\n<html lang=\"fr\"><head><meta charset=\"utf-8\"><title>Kraland Interactif - Kramail</title></head><body>\n")
+                .append(countersFragment ? "<div id=\"ajax-header\">\n" : "");
+        appendCounters(html, active, login);
+        html.append(countersFragment ? "</div>\n" : "")
+                .append("<div id=\"content\" class=\"container\"><div class=\"row\">\n")
+                .append("<div id=\"col-right\" class=\"col-md-9\"><h1>").append(active.name())
+                .append(" <small>Kramails</small></h1>\n<table class=\"table table-striped table-hover\">\n")
+                .append("<thead><tr><th></th><th>Sujet</th><th>De</th><th>Date</th></tr></thead>\n<tbody>\n");
+        List<Integer> ids = active.kramailIds();
+        int pageSize = settings.pageSize() > 0 ? settings.pageSize() : Math.max(1, ids.size());
+        int pages = Math.max(1, (ids.size() + pageSize - 1) / pageSize);
+        for (int i = (page - 1) * pageSize; i < Math.min(ids.size(), page * pageSize); i++) {
+            int id = ids.get(i);
+            String link = "<a href=\"kramail/" + active.slug() + "/" + id + "\">Sujet " + id + "</a>";
+            html.append("<tr><td><input type=\"checkbox\" name=\"k[]\" value=\"").append(id).append("\"></td><td>")
+                    .append(i < unread(active, login) ? "<strong>" + link + "</strong>" : link)
+                    .append("<span class=\"invisible\">Sujet ").append(id).append("</span></td>")
+                    .append("<td><a href=\"communaute/membres/expediteur-2-").append(id % 1000).append("\">Expéditeur ")
+                    .append(id % 1000).append("</a></td><td>07 jan 20:04</td></tr>\n");
+        }
+        html.append("</tbody></table>\n");
+        if (pages > 1) {
+            html.append("<ul class=\"pagination\">");
+            for (int p = 1; p <= pages; p++) {
+                html.append(p == page ? "<li class=\"active\">" : "<li>").append("<a href=\"kramail/")
+                        .append(active.slug()).append('/').append(p).append("\">").append(p).append("</a></li>");
+            }
+            html.append("</ul>\n");
+        }
+        html.append("</div></div></div>\n");
+        if (countersFragment) {
+            html.append("<script>setInterval(function() { updateAjax( 'ajax-header', '").append(COUNTERS_PARAM)
+                    .append("', '").append(countersToken.get()).append("' ); }, 60000);</script>\n");
+        }
+        return html.append("</body></html>\n").toString();
+    }
+
+    /**
+     * Barre de navigation avec la cloche des notifications et sidebar des personnages avec leurs compteurs.
+     */
+    private void appendCounters(StringBuilder html, Character active, String login) {
+        html.append("<nav class=\"navbar\"><ul class=\"nav navbar-nav navbar-right\">\n")
+                .append("<li><a href=\"\" onclick=\"javascript:openReport();return false;\"><i class=\"fa fa-bell\"></i>")
+                .append(settings.notification() ? "<span class=\"badge badge-danger\">!</span>" : "")
+                .append("</a></li>\n<li><a href=\"kramail\"><i class=\"fa fa-envelope\"></i><span class=\"badge\" id=\"badge\"></span></a></li>\n")
+                .append("</ul></nav>\n")
+                .append("<div id=\"col-left\" class=\"col-md-3 sidebar\"><div class=\"list-group\">\n")
+                .append("<a href=\"kramail/post/nouveau\" class=\"list-group-item\"><i class=\"fa fa-pen\"></i> Nouveau kramail</a>\n");
+        List<Character> sidebar = new ArrayList<>(characters);
+        if (sharedMailbox != null) {
+            sidebar.add(sharedMailbox);
+        }
+        for (Character character : sidebar) {
+            int unread = unread(character, login);
+            html.append("<a href=\"kramail/").append(character.slug()).append("\" class=\"list-group-item")
+                    .append(character == active ? " active" : "").append("\">").append(character.name())
+                    .append(" <span class=\"badge\">").append(unread > 0 ? unread : "")
+                    .append("</span></a>\n");
+        }
+        html.append("</div></div>\n");
+    }
+
+    private void send(HttpExchange exchange, int status, String html) throws IOException {
+        byte[] body = html.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+        bytesSent.addAndGet(body.length);
+    }
+}
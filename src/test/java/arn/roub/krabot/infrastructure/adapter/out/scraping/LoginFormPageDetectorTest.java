@@ -0,0 +1,53 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginFormPageDetectorTest {
+
+    static final String LOGIN_PAGE = """
+            <!DOCTYPE html>
+            <html><head><title>Kraland Interactif</title></head><body>
+            <form method="post" action="accueil" class="navbar-form">
+                <input type="hidden" name="a" value="100">
+                <label>Identifiant</label><input type="text" name="c[1]" class="form-control">
+                <input type="password" name="c[2]" class="form-control">
+                <button type="submit">S'identifier</button>
+            </form>
+            </body></html>
+            """;
+
+    private final LoginPageDetector detector = new LoginFormPageDetector();
+
+    @Test
+    void isLoginPage_onLoginForm_returnsTrue() {
+        assertTrue(detector.isLoginPage(LOGIN_PAGE));
+        assertTrue(detector.isLoginPage("<INPUT TYPE=text NAME=c[1]>"));
+    }
+
+    @Test
+    void isLoginPage_onAuthenticatedFixtures_returnsFalse() throws IOException {
+        assertFalse(detector.isLoginPage(KralandHtmlParserTest.loadFixture("kraland_kramail_page.html")));
+        assertFalse(detector.isLoginPage(KralandHtmlParserTest.loadFixture("kraland_plateau_page.html")));
+        assertFalse(detector.isLoginPage(KralandHtmlParserTest.loadFixture("kraland_plateau_sample.html")));
+    }
+
+    @Test
+    void isLoginPage_whenMessageTitleMentionsLogin_returnsFalse() throws IOException {
+        String html = KralandHtmlParserTest.loadFixture("kraland_kramail_page.html")
+                .replace("Rendez-vous à la taverne", "Identifiant perdu, S'identifier avec c[1] ?");
+
+        assertTrue(new ContainsLoginPageDetector().isLoginPage(html));
+        assertFalse(detector.isLoginPage(html));
+    }
+
+    @Test
+    void isLoginPage_ignoresScriptsCommentsAndOtherAttributes() {
+        assertFalse(detector.isLoginPage("<script>var x = '<input name=\"c[1]\">';</script><p>ok</p>"));
+        assertFalse(detector.isLoginPage("<!-- <input name=\"c[1]\"> -->"));
+        assertFalse(detector.isLoginPage("<input name=\"k[]\" value=\"c[1]x\">"));
+    }
+}
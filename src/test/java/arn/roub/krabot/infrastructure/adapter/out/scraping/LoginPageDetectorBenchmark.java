@@ -0,0 +1,62 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare la détection historique de la page de connexion ({@link ContainsLoginPageDetector}) au parcours
+ * de balises de {@link LoginFormPageDetector}, sur les pages authentifiées des fixtures et sur une page de connexion.
+ * <p>
+ * Lancement : {@code ./mvnw test-compile} puis exécuter {@link #main(String[])} avec le classpath de test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoginPageDetectorBenchmark {
+
+    @Param({"kraland_kramail_page.html", "kraland_plateau_page.html", "login"})
+    public String page;
+
+    private final LoginPageDetector contains = new ContainsLoginPageDetector();
+    private final LoginPageDetector loginForm = new LoginFormPageDetector();
+    private String html;
+
+    @Setup
+    public void setUp() throws IOException {
+        html = "login".equals(page) ? LoginFormPageDetectorTest.LOGIN_PAGE : KralandHtmlParserTest.loadFixture(page);
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return contains.isLoginPage(html);
+    }
+
+    @Benchmark
+    public boolean loginForm() {
+        return loginForm.isLoginPage(html);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LoginPageDetectorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,82 @@
+package arn.roub.krabot.infrastructure.adapter.out.scraping;
+
+import arn.roub.krabot.infrastructure.config.KralandConfig;
+import io.quarkus.runtime.configuration.DurationConverter;
+import io.quarkus.runtime.configuration.MemorySizeConverter;
+import io.smallrye.config.WithDefault;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * {@link KralandConfig} hors Quarkus pour les tests : chaque propriété vaut sa surcharge (clé = chemin des
+ * méthodes, par exemple {@code scraping.concurrency}), à défaut son {@link WithDefault}, à défaut vide.
+ */
+final class TestKralandConfig {
+
+    private TestKralandConfig() {
+    }
+
+    static KralandConfig create(Map<String, Object> overrides) {
+        return proxy(KralandConfig.class, "", overrides);
+    }
+
+    private static <T> T proxy(Class<T> type, String prefix, Map<String, Object> overrides) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> type.getSimpleName();
+                };
+            }
+            return value(method, prefix + method.getName(), overrides);
+        }));
+    }
+
+    private static Object value(Method method, String key, Map<String, Object> overrides) {
+        Class<?> type = method.getReturnType();
+        Object override = overrides.get(key);
+        if (type.isInterface() && type.getEnclosingClass() == KralandConfig.class) {
+            return proxy(type, key + ".", overrides);
+        }
+        if (type == Optional.class) {
+            return Optional.ofNullable(override);
+        }
+        if (override != null) {
+            return override;
+        }
+        WithDefault withDefault = method.getAnnotation(WithDefault.class);
+        if (withDefault == null) {
+            throw new IllegalStateException("No value for " + key);
+        }
+        return convert(type, withDefault.value());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object convert(Class<?> type, String value) {
+        if (type == String.class) {
+            return value;
+        }
+        if (type == int.class) {
+            return Integer.parseInt(value);
+        }
+        if (type == double.class) {
+            return Double.parseDouble(value);
+        }
+        if (type == boolean.class) {
+            return Boolean.parseBoolean(value);
+        }
+        if (type == Duration.class) {
+            return DurationConverter.parseDuration(value);
+        }
+        if (type.isEnum()) {
+            return Enum.valueOf((Class) type, value.toUpperCase(Locale.ROOT));
+        }
+        return new MemorySizeConverter().convert(value);
+    }
+}